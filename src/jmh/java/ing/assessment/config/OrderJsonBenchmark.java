@@ -0,0 +1,117 @@
+package ing.assessment.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link Order} response body written by each converter into the same reused response buffer: Jackson, the
+ * pre-encoded JSON, and the pre-encoded JSON of an order that was written before. Add {@code -prof gc} for the
+ * bytes allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderJsonBenchmark {
+
+    @Param({"1", "10", "500"})
+    private int lines;
+
+    private TimedJacksonHttpMessageConverter jackson;
+    private OrderJsonHttpMessageConverter preEncoded;
+    private OrderJsonHttpMessageConverter cached;
+    private Order order;
+    private final ByteArrayOutputStream responseBuffer = new ByteArrayOutputStream(1 << 16);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        jackson = new TimedJacksonHttpMessageConverter(objectMapper, meterRegistry);
+        preEncoded = new OrderJsonHttpMessageConverter(objectMapper, meterRegistry, true, 0);
+        cached = new OrderJsonHttpMessageConverter(objectMapper, meterRegistry, true, 10);
+
+        List<OrderProduct> orderProducts = new ArrayList<>();
+        for (int productId = 1; productId <= lines; productId++) {
+            orderProducts.add(new OrderProduct(productId, 2, "Product " + productId, 39_998, Location.MUNICH));
+        }
+        order = new Order(1, new Date(), orderProducts, 39_998L * lines, 0, 0, 2, null, null);
+    }
+
+    @Benchmark
+    public int jackson() throws Exception {
+        return write(body -> jackson.write(order, MediaType.APPLICATION_JSON, body));
+    }
+
+    @Benchmark
+    public int preEncoded() throws Exception {
+        return write(body -> preEncoded.write(order, MediaType.APPLICATION_JSON, body));
+    }
+
+    @Benchmark
+    public int cached() throws Exception {
+        return write(body -> cached.write(order, MediaType.APPLICATION_JSON, body));
+    }
+
+    private int write(Write write) throws Exception {
+        responseBuffer.reset();
+        write.to(new Response(responseBuffer));
+        return responseBuffer.size();
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void to(HttpOutputMessage body) throws Exception;
+    }
+
+    private static final class Response implements HttpOutputMessage {
+
+        private final OutputStream body;
+        private final HttpHeaders headers = new HttpHeaders();
+
+        Response(OutputStream body) {
+            this.body = body;
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
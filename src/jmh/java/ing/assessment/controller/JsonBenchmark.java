@@ -0,0 +1,74 @@
+package ing.assessment.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.model.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// the request body of /orders/place and the Order response, with the ObjectMapper defaults Spring Boot uses
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"1", "10", "40"})
+    private int basketSize;
+
+    private ObjectReader basketReader;
+    private ObjectWriter orderWriter;
+    private byte[] basketJson;
+    private Order order;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        basketReader = objectMapper.readerFor(new TypeReference<Map<Integer, Integer>>() {});
+        orderWriter = objectMapper.writerFor(Order.class);
+
+        Map<Integer, Integer> basket = new LinkedHashMap<>();
+        List<OrderProduct> lines = new ArrayList<>();
+        for (int productId = 1; productId <= basketSize; productId++) {
+            basket.put(productId, 2);
+            lines.add(new OrderProduct(productId, 2, "Product " + productId, 20_000, Location.MUNICH));
+        }
+        basketJson = objectMapper.writeValueAsBytes(basket);
+
+        order = new Order(1, new Date(), lines, 20_000L * basketSize, 0, 0, 2, null, null);
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> deserializeBasket() throws Exception {
+        return basketReader.readValue(basketJson);
+    }
+
+    @Benchmark
+    public byte[] serializeOrder() throws Exception {
+        return orderWriter.writeValueAsBytes(order);
+    }
+}
@@ -0,0 +1,76 @@
+package ing.assessment.service.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planning latency of each {@link AllocationStrategy} as locations and basket products grow. Every product is
+ * stocked at a random half of the locations with less than a basket needs in each, so a plan has to combine
+ * several locations and the exact search cannot stop at single locations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationStrategyBenchmark {
+
+    @Param({AllocationStrategy.LOCATION_ORDER, AllocationStrategy.GREEDY, AllocationStrategy.EXACT})
+    private String strategyName;
+
+    @Param({"3", "8", "16"})
+    private int locations;
+
+    @Param({"1", "10", "40"})
+    private int products;
+
+    private AllocationStrategy strategy;
+    private int[][] stock;
+    private int[] demand;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        strategy = switch (strategyName) {
+            case AllocationStrategy.LOCATION_ORDER -> new LocationOrderAllocationStrategy();
+            case AllocationStrategy.GREEDY -> new GreedyAllocationStrategy();
+            default -> new ExactAllocationStrategy();
+        };
+
+        Random random = new Random(42);
+        stock = new int[products][locations];
+        demand = new int[products];
+        for (int i = 0; i < products; i++) {
+            int total = 0;
+            for (int l = 0; l < locations; l++) {
+                if (random.nextBoolean()) {
+                    stock[i][l] = 1 + random.nextInt(10);
+                    total += stock[i][l];
+                }
+            }
+            if (total == 0) {
+                stock[i][0] = 10;
+                total = 10;
+            }
+            demand[i] = Math.max(1, total / 2);
+        }
+    }
+
+    @Benchmark
+    public int chooseLocations() {
+        return strategy.chooseLocations(stock, demand);
+    }
+}
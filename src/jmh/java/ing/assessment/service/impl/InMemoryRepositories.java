@@ -0,0 +1,143 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Map-backed stand-ins for the repositories, implementing only the methods the order path calls, so benchmarks
+ * measure the service code rather than JPA and H2.
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {}
+
+    static Map<ProductCK, Product> catalogue(int products, int quantityPerLocation) {
+        Map<ProductCK, Product> catalogue = new ConcurrentHashMap<>();
+        for (int id = 1; id <= products; id++) {
+            for (Location location : Location.values()) {
+                ProductCK productCk = new ProductCK(id, location);
+                catalogue.put(productCk, new Product(productCk, "Product " + id, 1_000L * id, quantityPerLocation));
+            }
+        }
+        return catalogue;
+    }
+
+    // the production service wired against the stand-ins, with every optional feature switched off
+    static OrderServiceImpl orderService(Map<ProductCK, Product> catalogue) {
+        return orderService(catalogue, false);
+    }
+
+    static OrderServiceImpl orderService(Map<ProductCK, Product> catalogue, boolean sharded) {
+        ProductRepository productRepository = productRepository(catalogue);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PlatformTransactionManager transactionManager = transactionManager();
+        InventoryCache inventoryCache = new InventoryCache(productRepository, meterRegistry, 0);
+
+        return new OrderServiceImpl(
+                orderRepository(),
+                productRepository,
+                new StockReservationEngine(transactionManager, 64),
+                inventoryCache,
+                new OrderWriteBehind(null, transactionManager, null, meterRegistry, false, 1, 1, 0, false),
+                new OrderAnalytics(60),
+                new OrderPlacementMetrics(meterRegistry),
+                new ExactAllocationStrategy(),
+                new OrderIdempotency(null, null, meterRegistry, 0, Duration.ofHours(24)),
+                new InventoryLedger(productRepository, null, transactionManager, meterRegistry, false, Path.of("ledger"), 100_000, false),
+                new PricingEngine(meterRegistry, new ClassPathResource("pricing-rules.json"), 0),
+                new OrderReadModel(Optional.empty(), meterRegistry, 500, 1000),
+                new LocationShards(inventoryCache, meterRegistry, sharded, 3),
+                500,
+                false
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    static ProductRepository productRepository(Map<ProductCK, Product> catalogue) {
+        return (ProductRepository) Proxy.newProxyInstance(
+                ProductRepository.class.getClassLoader(),
+                new Class<?>[]{ProductRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> sorted(catalogue.values());
+                    case "findByProductCk_Id" -> sorted(catalogue.values().stream()
+                            .filter(product -> product.getProductCk().getId().equals(args[0]))
+                            .toList());
+                    case "findAllByIdsOrderByLocation" -> sorted(catalogue.values().stream()
+                            .filter(product -> ((Collection<Integer>) args[0]).contains(product.getProductCk().getId()))
+                            .toList());
+                    case "decrementQuantity" -> decrement(catalogue, new ProductCK((Integer) args[0], (Location) args[1]), (Integer) args[2]);
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryProductRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static OrderRepository orderRepository() {
+        AtomicInteger ids = new AtomicInteger();
+        return (OrderRepository) Proxy.newProxyInstance(
+                OrderRepository.class.getClassLoader(),
+                new Class<?>[]{OrderRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> {
+                        Order order = (Order) args[0];
+                        order.setId(ids.incrementAndGet());
+                        yield order;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryOrderRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {}
+
+            @Override
+            public void rollback(TransactionStatus status) {}
+        };
+    }
+
+    private static int decrement(Map<ProductCK, Product> catalogue, ProductCK productCk, int quantity) {
+        Product product = catalogue.get(productCk);
+        if (product == null || product.getQuantity() < quantity) return 0;
+
+        product.setQuantity(product.getQuantity() - quantity);
+        return 1;
+    }
+
+    private static List<Product> sorted(Collection<Product> products) {
+        List<Product> sorted = new ArrayList<>(products);
+        sorted.sort(Comparator.comparing((Product product) -> product.getProductCk().getId())
+                .thenComparing(product -> product.getProductCk().getLocation()));
+        return sorted;
+    }
+}
@@ -0,0 +1,60 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code placeOrder} against map-backed repositories: stripes, inventory cache, allocation and pricing without
+ * JPA. Run multi-threaded with {@code -Djmh.args="-t 8"}; threads share the catalogue and contend on its stripes,
+ * or on the warehouse shards with {@code sharded}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderPlacementBenchmark {
+
+    private static final int PRODUCTS = 40;
+    private static final int STOCK_PER_LOCATION = 100_000_000;
+
+    @Param({"1", "10", "40"})
+    private int basketSize;
+
+    @Param({"false", "true"})
+    private boolean sharded;
+
+    private OrderServiceImpl orderService;
+    private Map<Integer, Integer> basket;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderService = InMemoryRepositories.orderService(InMemoryRepositories.catalogue(PRODUCTS, STOCK_PER_LOCATION), sharded);
+
+        basket = new HashMap<>();
+        for (int productId = 1; productId <= basketSize; productId++) {
+            basket.put(productId, 1);
+        }
+    }
+
+    @Benchmark
+    public Order placeOrder() throws Exception {
+        return orderService.placeOrder(basket);
+    }
+}
@@ -0,0 +1,106 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.INGAssessment;
+import ing.assessment.db.order.Order;
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code placeOrder} through the real Spring context against in-memory H2, i.e. including JPA, the conditional
+ * stock updates and the order inserts. {@link #placeRandomBasket} spreads threads over the catalogue like
+ * concurrent shoppers do; compare {@code -t 1} with {@code -t 4} for how throughput scales across lock stripes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderPlacementH2Benchmark {
+
+    private static final int FIRST_PRODUCT_ID = 1000;
+    private static final int PRODUCTS = 40;
+    private static final int STOCK_PER_LOCATION = 100_000_000;
+
+    @Param({"1", "10", "40"})
+    private int basketSize;
+
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    private ConfigurableApplicationContext context;
+    private OrderServiceImpl orderService;
+    private Map<Integer, Integer> basket;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(INGAssessment.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "spring.h2.console.enabled=false",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.org.hibernate.SQL=WARN",
+                        "orders.write-behind.enabled=" + writeBehind
+                )
+                .run();
+        orderService = context.getBean(OrderServiceImpl.class);
+
+        List<Product> products = new ArrayList<>();
+        basket = new HashMap<>();
+        for (int id = FIRST_PRODUCT_ID; id < FIRST_PRODUCT_ID + PRODUCTS; id++) {
+            for (Location location : Location.values()) {
+                products.add(new Product(new ProductCK(id, location), "Product " + id, 1000, STOCK_PER_LOCATION));
+            }
+            if (basket.size() < basketSize) basket.put(id, 1);
+        }
+        context.getBean(ProductRepository.class).saveAll(products);
+        context.getBean(InventoryCache.class).evictAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Order placeOrder() throws Exception {
+        return orderService.placeOrder(basket);
+    }
+
+    // 1 to 3 distinct products, mostly unrelated to what the other threads are buying
+    @Benchmark
+    public Order placeRandomBasket() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Integer, Integer> randomBasket = new HashMap<>();
+        int lines = random.nextInt(1, 4);
+        while (randomBasket.size() < lines) {
+            randomBasket.put(FIRST_PRODUCT_ID + random.nextInt(PRODUCTS), random.nextInt(1, 4));
+        }
+        return orderService.placeOrder(randomBasket);
+    }
+}
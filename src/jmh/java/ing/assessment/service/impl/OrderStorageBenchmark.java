@@ -0,0 +1,156 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.INGAssessment;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.dto.BulkOrderResultDTO;
+import ing.assessment.model.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Row vs compact ({@code orders.storage.compact-lines}) order line layout against a file based H2 database.
+ * <p>
+ * The setup places {@value #ORDERS} orders and logs the disk space they take per order, projected to 10M orders.
+ * The benchmark reads one order with its lines the way a request does, run it with {@code -prof gc} for the bytes
+ * allocated per {@code getOrderById}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderStorageBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderStorageBenchmark.class);
+
+    private static final int FIRST_PRODUCT_ID = 1000;
+    private static final int PRODUCTS = 40;
+    private static final int STOCK_PER_LOCATION = 100_000_000;
+    private static final int ORDERS = 20_000;
+    private static final int BULK_SIZE = 1_000;
+    private static final long PROJECTED_ORDERS = 10_000_000L;
+
+    @Param({"1", "10", "40"})
+    private int basketSize;
+
+    @Param({"false", "true"})
+    private boolean compactLines;
+
+    private Path databaseDirectory;
+    private ConfigurableApplicationContext context;
+    private OrderServiceImpl orderService;
+    private TransactionTemplate transactionTemplate;
+    private int[] orderIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        databaseDirectory = Files.createTempDirectory("order-storage");
+        context = new SpringApplicationBuilder(INGAssessment.class)
+                .web(WebApplicationType.NONE)
+                // arguments rather than default properties, which application.properties would override
+                .run(
+                        "--spring.datasource.url=jdbc:h2:file:" + databaseDirectory.resolve("orders"),
+                        "--spring.h2.console.enabled=false",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--analytics.rebuild-on-startup=false",
+                        "--orders.storage.compact-lines=" + compactLines
+                );
+        orderService = context.getBean(OrderServiceImpl.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        List<Product> products = new ArrayList<>();
+        for (int id = FIRST_PRODUCT_ID; id < FIRST_PRODUCT_ID + PRODUCTS; id++) {
+            for (Location location : Location.values()) {
+                products.add(new Product(new ProductCK(id, location), "Product " + id, 1000, STOCK_PER_LOCATION));
+            }
+        }
+        context.getBean(ProductRepository.class).saveAll(products);
+        context.getBean(InventoryCache.class).evictAll();
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        long bytesBefore = orderTablesSize(jdbcTemplate);
+
+        List<Integer> placed = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (placed.size() < ORDERS) {
+            List<Map<Integer, Integer>> baskets = new ArrayList<>();
+            for (int i = 0; i < BULK_SIZE; i++) {
+                Map<Integer, Integer> basket = new HashMap<>();
+                while (basket.size() < basketSize) {
+                    basket.put(FIRST_PRODUCT_ID + random.nextInt(PRODUCTS), random.nextInt(1, 10));
+                }
+                baskets.add(basket);
+            }
+            for (BulkOrderResultDTO result : orderService.placeOrders(baskets)) {
+                placed.add(result.order().getId());
+            }
+        }
+        orderIds = placed.stream().mapToInt(Integer::intValue).toArray();
+
+        long bytesPerOrder = (orderTablesSize(jdbcTemplate) - bytesBefore) / ORDERS;
+        log.info("compactLines={} basketSize={}: {} bytes per order on disk, {} GB for {} orders",
+                compactLines, basketSize, bytesPerOrder, String.format("%.2f", bytesPerOrder * PROJECTED_ORDERS / 1e9), PROJECTED_ORDERS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(databaseDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // inside a transaction like a request with open-in-view, so the row layout can load its lazy lines
+    @Benchmark
+    public List<OrderProduct> getOrderById() {
+        int orderId = orderIds[ThreadLocalRandom.current().nextInt(orderIds.length)];
+        return transactionTemplate.execute(status -> {
+            List<OrderProduct> lines = orderService.getOrderById(orderId).orElseThrow().getOrderProducts();
+            lines.size();
+            return lines;
+        });
+    }
+
+    private static long orderTablesSize(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("checkpoint sync");
+        return jdbcTemplate.queryForObject(
+                "select disk_space_used('ORDERS') + disk_space_used('ORDER_ORDER_PRODUCTS')", Long.class);
+    }
+}
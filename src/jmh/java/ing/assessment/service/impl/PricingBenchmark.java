@@ -0,0 +1,131 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-order pricing step and the per-product location ordering: the stream sort the allocation loop used to do
+ * on every lookup against the ordinal-indexed {@link InventoryEntry} that replaced it.
+ * <p>
+ * {@code pricingHardCoded} is the pricing as it was before {@link PricingRules} (in doubles), {@code pricingRules} the same basket
+ * priced by compiled rules: the shipped defaults ({@code ruleCount=2}) or 123 tiers, promotions and location fees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    @Param({"1", "10", "40"})
+    private int basketSize;
+
+    @Param({"2", "120"})
+    private int ruleCount;
+
+    private OrderServiceImpl orderService;
+    private List<StockDecrement> decrements;
+    private List<Product> productRows;
+    private double orderCost;
+    private PricingRules rules;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderService = InMemoryRepositories.orderService(Map.of());
+
+        Location[] locations = Location.values();
+        decrements = new ArrayList<>();
+        for (int i = 0; i < basketSize; i++) {
+            decrements.add(new StockDecrement(i, locations[i % locations.length], 1));
+        }
+        orderCost = 100.0 * basketSize;
+        rules = ruleCount == 2
+                ? new PricingEngine(new SimpleMeterRegistry(), new ClassPathResource("pricing-rules.json"), 0).rules()
+                : PricingRules.compile(manyRules());
+
+        productRows = new ArrayList<>();
+        for (Location location : locations) {
+            productRows.add(new Product(new ProductCK(1, location), "Product", 1000, 50));
+        }
+        Collections.reverse(productRows);
+    }
+
+    @Benchmark
+    public void pricingHardCoded(Blackhole blackhole) {
+        double cost = 0;
+        for (StockDecrement decrement : decrements) {
+            cost += 100.0 * decrement.quantity();
+        }
+        blackhole.consume(cost <= 500 ? 30 : 0);
+        blackhole.consume(cost > 1000 ? cost * 0.9 : cost);
+        blackhole.consume(orderService.computeDeliveryTime(decrements));
+    }
+
+    @Benchmark
+    public void pricingRules(Blackhole blackhole) {
+        long cents = 0;
+        long lineDiscounts = 0;
+        int locationMask = 0;
+        for (StockDecrement decrement : decrements) {
+            long lineCents = 10_000L * decrement.quantity();
+            cents += lineCents;
+            lineDiscounts += rules.lineDiscount(decrement.productId(), decrement.quantity(), lineCents);
+            locationMask |= 1 << decrement.location().ordinal();
+        }
+        blackhole.consume(rules.deliveryCost(cents, locationMask));
+        blackhole.consume(rules.finalCost(cents, cents - lineDiscounts));
+        blackhole.consume(orderService.computeDeliveryTime(decrements));
+    }
+
+    // every other product of the basket promoted, among 100 promotions in total
+    private static PricingRulesConfig manyRules() {
+        List<PricingRulesConfig.DiscountTier> discountTiers = new ArrayList<>();
+        List<PricingRulesConfig.DeliveryTier> deliveryTiers = new ArrayList<>();
+        List<PricingRulesConfig.ProductPromotion> promotions = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            discountTiers.add(new PricingRulesConfig.DiscountTier(i * 500, i));
+            deliveryTiers.add(new PricingRulesConfig.DeliveryTier(i * 100, 50 - i * 2));
+        }
+        for (int i = 0; i < 100; i++) {
+            promotions.add(new PricingRulesConfig.ProductPromotion(i * 2, 1, 5));
+        }
+        return new PricingRulesConfig(discountTiers, deliveryTiers, promotions,
+                Map.of(Location.MUNICH, 1, Location.COLOGNE, 2, Location.FRANKFURT, 3));
+    }
+
+    @Benchmark
+    public List<Product> locationSortStream() {
+        return productRows.stream()
+                .sorted(Comparator.comparing(p -> p.getProductCk().getLocation()))
+                .toList();
+    }
+
+    @Benchmark
+    public InventoryEntry locationIndexedEntry() {
+        return InventoryEntry.from(productRows);
+    }
+}
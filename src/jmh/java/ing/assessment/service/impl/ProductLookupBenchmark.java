@@ -0,0 +1,95 @@
+package ing.assessment.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ing.assessment.dto.CatalogueJsonDTO;
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code getProductJson} of one hot product by every thread while orders keep changing stock: its JSON is never
+ * current, and as an order of it is always in flight the inventory cache cannot keep the product either, so each
+ * load is a database query of {@code queryMicros}. Reports the queries per ms next to the lookups; run with
+ * {@code -Djmh.args="-t 1"}, {@code "-t 8"} and {@code "-t 32"} to compare how both grow with the readers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductLookupBenchmark {
+
+    private static final int HOT_PRODUCT = 1;
+    private static final List<StockDecrement> OTHER_SALE = List.of(new StockDecrement(2, Location.MUNICH, 1));
+    private static final ThreadLocal<Queries> QUERIES = new ThreadLocal<>();
+
+    @Param({"false", "true"})
+    private boolean singleFlight;
+
+    @Param({"200"})
+    private int queryMicros;
+
+    private InventoryCache inventoryCache;
+    private ProductServiceImpl productService;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Queries {
+
+        public long queries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            queries = 0;
+            QUERIES.set(this);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ProductRepository products = InMemoryRepositories.productRepository(InMemoryRepositories.catalogue(1, 1_000));
+        ProductRepository database = (ProductRepository) Proxy.newProxyInstance(
+                ProductRepository.class.getClassLoader(),
+                new Class<?>[]{ProductRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findAllByIdsOrderByLocation")) {
+                        Queries queries = QUERIES.get();
+                        if (queries != null) queries.queries++;
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(queryMicros));
+                    }
+                    return method.invoke(products, args);
+                });
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        inventoryCache = new InventoryCache(database, meterRegistry, 0);
+        // never ended: the product's stock is always being written, as during a flash sale
+        inventoryCache.beginWrites(List.of(HOT_PRODUCT));
+
+        productService = new ProductServiceImpl(inventoryCache, new ObjectMapper(), meterRegistry, singleFlight, 0);
+    }
+
+    @Benchmark
+    public Optional<CatalogueJsonDTO> getProductJson(Queries queries) {
+        inventoryCache.applyCommitted(OTHER_SALE);
+        return productService.getProductJson(HOT_PRODUCT);
+    }
+}
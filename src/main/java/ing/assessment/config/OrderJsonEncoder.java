@@ -0,0 +1,306 @@
+package ing.assessment.config;
+
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Writes an {@link Order} as exactly the JSON Jackson produces for it with Spring Boot's defaults, without
+ * reflection and without intermediate strings or boxed numbers: ids, amounts and the timestamp are written as
+ * digits straight into a per-thread buffer, which is then copied to the response in one write.
+ */
+public final class OrderJsonEncoder {
+
+    private static final byte[] ID = ascii("{\"id\":");
+    private static final byte[] TIMESTAMP = ascii(",\"timestamp\":");
+    private static final byte[] ORDER_PRODUCTS = ascii(",\"orderProducts\":");
+    private static final byte[] ORDER_COST = ascii(",\"orderCost\":");
+    private static final byte[] DISCOUNT = ascii(",\"discount\":");
+    private static final byte[] DELIVERY_COST = ascii(",\"deliveryCost\":");
+    private static final byte[] DELIVERY_TIME = ascii(",\"deliveryTime\":");
+    private static final byte[] PRODUCT_ID = ascii("{\"productId\":");
+    private static final byte[] QUANTITY = ascii(",\"quantity\":");
+    private static final byte[] NAME = ascii(",\"name\":");
+    private static final byte[] TOTAL_COST = ascii(",\"totalCost\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] UTC_OFFSET = ascii("+00:00\"");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // from 10^7 on Double.toString switches to E notation, so larger amounts take the slow path
+    private static final long PLAIN_AMOUNT_LIMIT_CENTS = 1_000_000_000L;
+    // a buffer grown beyond this by a very large order is not kept for the thread's next order
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    private OrderJsonEncoder() {
+    }
+
+    public static byte[] encode(Order order) {
+        Buffer buffer = encodeInto(order);
+        byte[] json = Arrays.copyOf(buffer.bytes, buffer.size);
+        release(buffer);
+        return json;
+    }
+
+    public static void write(Order order, OutputStream out) throws IOException {
+        Buffer buffer = encodeInto(order);
+        try {
+            out.write(buffer.bytes, 0, buffer.size);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private static Buffer encodeInto(Order order) {
+        Buffer buffer = BUFFERS.get();
+        buffer.size = 0;
+
+        buffer.write(ID);
+        buffer.writeInteger(order.getId());
+        buffer.write(TIMESTAMP);
+        buffer.writeDate(order.getTimestamp());
+        buffer.write(ORDER_PRODUCTS);
+        writeLines(buffer, order.getOrderProducts());
+        buffer.write(ORDER_COST);
+        buffer.writeAmount(order.getOrderCostCents());
+        buffer.write(DISCOUNT);
+        buffer.writeAmount(order.getDiscountCents());
+        buffer.write(DELIVERY_COST);
+        buffer.writeInteger(order.getDeliveryCost());
+        buffer.write(DELIVERY_TIME);
+        buffer.writeInteger(order.getDeliveryTime());
+        buffer.write('}');
+
+        return buffer;
+    }
+
+    private static void writeLines(Buffer buffer, List<OrderProduct> lines) {
+        if (lines == null) {
+            buffer.write(NULL);
+            return;
+        }
+
+        buffer.write('[');
+        for (int i = 0; i < lines.size(); i++) {
+            OrderProduct line = lines.get(i);
+            if (i > 0) buffer.write(',');
+
+            buffer.write(PRODUCT_ID);
+            buffer.writeInteger(line.getProductId());
+            buffer.write(QUANTITY);
+            buffer.writeInteger(line.getQuantity());
+            buffer.write(NAME);
+            buffer.writeString(line.getName());
+            buffer.write(TOTAL_COST);
+            buffer.writeAmount(line.getTotalCostCents());
+            buffer.write('}');
+        }
+        buffer.write(']');
+    }
+
+    private static void release(Buffer buffer) {
+        if (buffer.bytes.length > MAX_RETAINED_BUFFER) BUFFERS.remove();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class Buffer {
+
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        void write(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] chunk) {
+            ensure(chunk.length);
+            System.arraycopy(chunk, 0, bytes, size, chunk.length);
+            size += chunk.length;
+        }
+
+        void writeInteger(Integer value) {
+            if (value == null) {
+                write(NULL);
+            } else {
+                writeLong(value);
+            }
+        }
+
+        void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                write(ascii(Long.toString(value)));
+                return;
+            }
+            if (value < 0) {
+                write('-');
+                value = -value;
+            }
+            writeDigits(value, digits(value));
+        }
+
+        // the same text as Double.toString(cents / 100.0): at least one decimal, trailing zeros dropped
+        void writeAmount(long cents) {
+            if (cents <= -PLAIN_AMOUNT_LIMIT_CENTS || cents >= PLAIN_AMOUNT_LIMIT_CENTS) {
+                write(ascii(Double.toString(cents / 100.0)));
+                return;
+            }
+            if (cents < 0) {
+                write('-');
+                cents = -cents;
+            }
+
+            long whole = cents / 100;
+            int fraction = (int) (cents % 100);
+            writeDigits(whole, digits(whole));
+            write('.');
+            if (fraction % 10 == 0) {
+                write('0' + fraction / 10);
+            } else {
+                write('0' + fraction / 10);
+                write('0' + fraction % 10);
+            }
+        }
+
+        // StdDateFormat in UTC, e.g. "2024-03-01T09:30:00.000+00:00"
+        void writeDate(Date date) {
+            if (date == null) {
+                write(NULL);
+                return;
+            }
+
+            long millis = date.getTime();
+            long days = Math.floorDiv(millis, MILLIS_PER_DAY);
+            int millisOfDay = (int) Math.floorMod(millis, MILLIS_PER_DAY);
+
+            // civil date of a day count since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+            long shifted = days + 719_468;
+            long era = Math.floorDiv(shifted, 146_097);
+            long dayOfEra = shifted - era * 146_097;
+            long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+            long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            long monthIndex = (5 * dayOfYear + 2) / 153;
+            int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+            int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+            long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+            if (year < 0 || year > 9999) {
+                StdDateFormat format = new StdDateFormat().withTimeZone(TimeZone.getTimeZone("UTC"));
+                writeString(format.format(date));
+                return;
+            }
+
+            write('"');
+            writeDigits(year, 4);
+            write('-');
+            writeDigits(month, 2);
+            write('-');
+            writeDigits(day, 2);
+            write('T');
+            writeDigits(millisOfDay / 3_600_000, 2);
+            write(':');
+            writeDigits(millisOfDay / 60_000 % 60, 2);
+            write(':');
+            writeDigits(millisOfDay / 1000 % 60, 2);
+            write('.');
+            writeDigits(millisOfDay % 1000, 3);
+            write(UTC_OFFSET);
+        }
+
+        // UTF-8 with Jackson's escapes; lone surrogates, which Jackson refuses to write, become '?'
+        void writeString(String text) {
+            if (text == null) {
+                write(NULL);
+                return;
+            }
+
+            ensure(text.length() * 6 + 2);
+            bytes[size++] = '"';
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    writeAscii(c);
+                } else if (c < 0x800) {
+                    bytes[size++] = (byte) (0xC0 | c >> 6);
+                    bytes[size++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    bytes[size++] = (byte) (0xF0 | codePoint >> 18);
+                    bytes[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    bytes[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    bytes[size++] = (byte) (0x80 | codePoint & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    bytes[size++] = '?';
+                } else {
+                    bytes[size++] = (byte) (0xE0 | c >> 12);
+                    bytes[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    bytes[size++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            bytes[size++] = '"';
+        }
+
+        // room is ensured by writeString
+        private void writeAscii(char c) {
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                bytes[size++] = (byte) c;
+                return;
+            }
+
+            bytes[size++] = '\\';
+            switch (c) {
+                case '"', '\\' -> bytes[size++] = (byte) c;
+                case '\b' -> bytes[size++] = 'b';
+                case '\t' -> bytes[size++] = 't';
+                case '\n' -> bytes[size++] = 'n';
+                case '\f' -> bytes[size++] = 'f';
+                case '\r' -> bytes[size++] = 'r';
+                default -> {
+                    bytes[size++] = 'u';
+                    bytes[size++] = '0';
+                    bytes[size++] = '0';
+                    bytes[size++] = HEX[c >> 4];
+                    bytes[size++] = HEX[c & 0xF];
+                }
+            }
+        }
+
+        // value must not be negative; left-padded with zeros to width digits
+        private void writeDigits(long value, int width) {
+            ensure(width);
+            for (int i = size + width - 1; i >= size; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += width;
+        }
+
+        private static int digits(long value) {
+            int digits = 1;
+            while (value >= 10) {
+                value /= 10;
+                digits++;
+            }
+            return digits;
+        }
+
+        private void ensure(int needed) {
+            if (size + needed > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + needed));
+            }
+        }
+    }
+}
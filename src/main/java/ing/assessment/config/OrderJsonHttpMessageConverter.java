@@ -0,0 +1,130 @@
+package ing.assessment.config;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+import ing.assessment.db.order.Order;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@link Order} response bodies ({@code /orders/{id}}, {@code /orders/place}) with {@link OrderJsonEncoder}
+ * instead of Jackson. Orders never change once placed, so the bytes of the last {@code orders.json.cache-entries}
+ * orders are kept and written again as they are when the same order is asked for once more.
+ * <p>
+ * The encoder reproduces Jackson's output for the default ObjectMapper settings only. If {@code spring.jackson.*}
+ * changes how dates or nulls are written, or {@code orders.json.pre-encoded} is off, orders are left to Jackson.
+ */
+@Component
+public class OrderJsonHttpMessageConverter extends AbstractHttpMessageConverter<Order> {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderJsonHttpMessageConverter.class);
+
+    private final boolean enabled;
+    private final int cacheEntries;
+
+    private final Map<Integer, byte[]> encoded = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Integer> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final Timer serialization;
+    private final Counter hits;
+    private final Counter misses;
+
+    public OrderJsonHttpMessageConverter(ObjectMapper objectMapper,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${orders.json.pre-encoded:true}") boolean preEncoded,
+                                         @Value("${orders.json.cache-entries:10000}") int cacheEntries) {
+        super(MediaType.APPLICATION_JSON);
+
+        boolean defaults = hasDefaultSerialization(objectMapper);
+        if (preEncoded && !defaults) {
+            log.info("Orders are serialized by Jackson, its date or null handling differs from the pre-encoded JSON");
+        }
+
+        this.enabled = preEncoded && defaults;
+        this.cacheEntries = cacheEntries;
+        this.serialization = TimedJacksonHttpMessageConverter.serializationTimer(Order.class).register(meterRegistry);
+        this.hits = meterRegistry.counter("orders.json.cache.hits");
+        this.misses = meterRegistry.counter("orders.json.cache.misses");
+        Gauge.builder("orders.json.cache.size", encoded, Map::size).register(meterRegistry);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return enabled && Order.class.isAssignableFrom(clazz);
+    }
+
+    // response bodies only, order requests are baskets and read by Jackson
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Order readInternal(Class<? extends Order> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Orders are not read from JSON", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Order order, HttpOutputMessage outputMessage) throws IOException {
+        long start = System.nanoTime();
+        try {
+            byte[] json = order.getId() == null ? null : encoded.get(order.getId());
+            if (json != null) {
+                hits.increment();
+                outputMessage.getBody().write(json);
+            } else if (order.getId() == null || cacheEntries <= 0) {
+                OrderJsonEncoder.write(order, outputMessage.getBody());
+            } else {
+                misses.increment();
+                json = OrderJsonEncoder.encode(order);
+                remember(order.getId(), json);
+                outputMessage.getBody().write(json);
+            }
+        } finally {
+            serialization.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void remember(Integer orderId, byte[] json) {
+        if (encoded.putIfAbsent(orderId, json) != null) return;
+
+        insertionOrder.add(orderId);
+        while (encoded.size() > cacheEntries) {
+            Integer oldest = insertionOrder.poll();
+            if (oldest == null) break;
+            encoded.remove(oldest);
+        }
+    }
+
+    private static boolean hasDefaultSerialization(ObjectMapper objectMapper) {
+        SerializationConfig config = objectMapper.getSerializationConfig();
+        JsonInclude.Include inclusion = config.getDefaultPropertyInclusion().getValueInclusion();
+
+        return !config.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                && config.getDateFormat() instanceof StdDateFormat
+                && TimeZone.getTimeZone("UTC").hasSameRules(config.getTimeZone())
+                && (inclusion == JsonInclude.Include.ALWAYS || inclusion == JsonInclude.Include.USE_DEFAULTS)
+                && !config.isEnabled(SerializationFeature.INDENT_OUTPUT);
+    }
+}
@@ -0,0 +1,68 @@
+package ing.assessment.controller;
+
+import ing.assessment.dto.LineTotalsDTO;
+import ing.assessment.dto.OrderTotalsDTO;
+import ing.assessment.dto.StockOutForecastDTO;
+import ing.assessment.model.Location;
+import ing.assessment.service.AnalyticsService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/analytics")
+public class AnalyticsController {
+
+    private final AnalyticsService analyticsService;
+
+    public AnalyticsController(AnalyticsService analyticsService) {
+        this.analyticsService = analyticsService;
+    }
+
+    @GetMapping
+    public ResponseEntity<OrderTotalsDTO> getTotals(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        return ResponseEntity.ok(analyticsService.getTotals(from, to));
+    }
+
+    @GetMapping("/buckets")
+    public ResponseEntity<Map<Date, OrderTotalsDTO>> getTotalsByBucket(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        return ResponseEntity.ok(analyticsService.getTotalsByBucket(from, to));
+    }
+
+    @GetMapping("/products")
+    public ResponseEntity<Map<Integer, LineTotalsDTO>> getTotalsByProduct(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        return ResponseEntity.ok(analyticsService.getTotalsByProduct(from, to));
+    }
+
+    @GetMapping("/locations")
+    public ResponseEntity<Map<Location, LineTotalsDTO>> getTotalsByLocation(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        return ResponseEntity.ok(analyticsService.getTotalsByLocation(from, to));
+    }
+
+    // days until each product location runs out at its recent demand, soonest first
+    @GetMapping("/stock-out")
+    public ResponseEntity<List<StockOutForecastDTO>> getStockOutForecast(
+            @RequestParam(value = "productId", required = false) Integer productId) {
+        return ResponseEntity.ok(analyticsService.getStockOutForecast(productId));
+    }
+
+    // recomputes every aggregate from the stored orders, e.g. after orders were imported directly into the database
+    @PostMapping("/rebuild")
+    public ResponseEntity<OrderTotalsDTO> rebuild() {
+        analyticsService.rebuild();
+
+        return ResponseEntity.ok(analyticsService.getTotals(null, null));
+    }
+}
@@ -1,15 +1,33 @@
 package ing.assessment.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import ing.assessment.db.order.Order;
+import ing.assessment.dto.BulkOrderResultDTO;
+import ing.assessment.dto.OrderPageDTO;
 import ing.assessment.exception.InvalidOrderException;
 import ing.assessment.exception.OrderNotFoundException;
 import ing.assessment.exception.OutOfStockException;
 import ing.assessment.exception.ProductNotFoundException;
+import ing.assessment.model.ReadConsistency;
 import ing.assessment.service.OrderService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -18,25 +36,72 @@ import java.util.Optional;
 @RequestMapping("/orders")
 public class OrderController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BULK_SIZE = 10_000;
+    private static final TypeReference<Map<Integer, Integer>> BASKET = new TypeReference<>() {};
+    private static final byte[] NEW_LINE = {'\n'};
+    private static final String READ_CONSISTENCY = "Read-Consistency";
+    // the NDJSON stream is sent in pieces of about this size instead of flushing after every order
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+    // a full export runs as long as the table is large, unlike every other request it never times out
+    private static final long NO_TIMEOUT = -1;
+
     private final OrderService orderService;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor streamExecutor;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, ObjectMapper objectMapper,
+                           @Qualifier("applicationTaskExecutor") TaskExecutor streamExecutor) {
         this.orderService = orderService;
+        this.objectMapper = objectMapper;
+        this.streamExecutor = streamExecutor;
     }
 
+    // a retry with the same Idempotency-Key returns the order of the first attempt instead of placing another one
     @PostMapping("/place")
-    public ResponseEntity<?> placeOrder(@RequestBody Map<Integer, Integer> productIdsToQuantity) throws Exception {
-        if (productIdsToQuantity.isEmpty() || productIdsToQuantity.values().stream().anyMatch(qty -> qty <= 0)) {
-            throw new InvalidOrderException("Invalid request, must provide productIds and positive quantities");
-        }
+    public ResponseEntity<?> placeOrder(@RequestBody Map<Integer, Integer> productIdsToQuantity,
+                                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey)
+            throws Exception {
+        validateBasket(productIdsToQuantity);
 
-        Order order = orderService.placeOrder(productIdsToQuantity);
+        Order order = orderService.placeOrder(productIdsToQuantity, idempotencyKey);
         return ResponseEntity.ok(order);
     }
 
+    // every order succeeds or fails on its own, failures are reported per order instead of failing the request
+    @PostMapping("/place/bulk")
+    public ResponseEntity<List<BulkOrderResultDTO>> placeOrders(@RequestBody List<Map<Integer, Integer>> baskets)
+            throws InvalidOrderException {
+        validateBulkSize(baskets.size());
+
+        return ResponseEntity.ok(orderService.placeOrders(baskets));
+    }
+
+    // same as above with one order per line, so partners can stream a batch without building one large array
+    @PostMapping(value = "/place/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BulkOrderResultDTO>> placeOrdersStream(InputStream body)
+            throws IOException, InvalidOrderException {
+        List<Map<Integer, Integer>> baskets = new ArrayList<>();
+
+        try (MappingIterator<Map<Integer, Integer>> lines = objectMapper.readerFor(BASKET).readValues(body)) {
+            while (lines.hasNextValue()) {
+                baskets.add(lines.nextValue());
+                validateBulkSize(baskets.size());
+            }
+        } catch (JsonProcessingException e) {
+            throw new InvalidOrderException("Invalid request, malformed order: " + e.getOriginalMessage());
+        }
+        validateBulkSize(baskets.size());
+
+        return ResponseEntity.ok(orderService.placeOrders(baskets));
+    }
+
+    // queries may be answered by the read model; Read-Consistency: read-your-writes also sees orders placed just before
     @GetMapping("/{id}")
-    public ResponseEntity<?> getOrder(@PathVariable("id") Integer id) throws OrderNotFoundException {
-        Optional<Order> order = orderService.getOrderById(id);
+    public ResponseEntity<?> getOrder(@PathVariable("id") Integer id,
+                                      @RequestHeader(value = READ_CONSISTENCY, required = false) String consistency)
+            throws OrderNotFoundException, InvalidOrderException {
+        Optional<Order> order = orderService.getOrderById(id, readConsistency(consistency));
 
         if (order.isEmpty()) {
             throw new OrderNotFoundException("Order with id: " + id + " not found");
@@ -46,9 +111,83 @@ public class OrderController {
     }
 
     @GetMapping("/all")
-    public ResponseEntity<List<Order>> getAllOrders() {
-        List<Order> orders = orderService.getAllOrders();
+    public ResponseEntity<List<Order>> getAllOrders(
+            @RequestHeader(value = READ_CONSISTENCY, required = false) String consistency) throws InvalidOrderException {
+        List<Order> orders = orderService.getAllOrders(readConsistency(consistency));
 
         return ResponseEntity.ok(orders);
     }
+
+    @GetMapping(value = "/all", params = "limit")
+    public ResponseEntity<OrderPageDTO> getOrdersPage(
+            @RequestParam("limit") int limit,
+            @RequestParam(value = "after", required = false) Integer after,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+            @RequestHeader(value = READ_CONSISTENCY, required = false) String consistency)
+            throws InvalidOrderException {
+        validatePageSize(limit);
+
+        return ResponseEntity.ok(orderService.getOrders(after, from, to, limit, readConsistency(consistency)));
+    }
+
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamAllOrders(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(NO_TIMEOUT);
+        streamExecutor.execute(() -> {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(STREAM_BUFFER_BYTES);
+            try {
+                orderService.forEachOrder(from, to, order -> {
+                    try {
+                        buffer.write(objectMapper.writeValueAsBytes(order));
+                        buffer.write(NEW_LINE);
+                        if (buffer.size() >= STREAM_BUFFER_BYTES) sendAndReset(emitter, buffer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                sendAndReset(emitter, buffer);
+                emitter.complete();
+            } catch (IOException | RuntimeException e) {
+                emitter.completeWithError(e);
+            }
+        });
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(emitter);
+    }
+
+    static void validateBasket(Map<Integer, Integer> productIdsToQuantity) throws InvalidOrderException {
+        if (productIdsToQuantity.isEmpty() || productIdsToQuantity.values().stream().anyMatch(qty -> qty <= 0)) {
+            throw new InvalidOrderException("Invalid request, must provide productIds and positive quantities");
+        }
+    }
+
+    static ReadConsistency readConsistency(String header) throws InvalidOrderException {
+        if (header == null || header.equalsIgnoreCase("eventual")) return ReadConsistency.EVENTUAL;
+        if (header.equalsIgnoreCase("read-your-writes")) return ReadConsistency.READ_YOUR_WRITES;
+
+        throw new InvalidOrderException("Invalid request, " + READ_CONSISTENCY + " must be eventual or read-your-writes");
+    }
+
+    static void validatePageSize(int limit) throws InvalidOrderException {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidOrderException("Invalid request, limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    private static void validateBulkSize(int size) throws InvalidOrderException {
+        if (size == 0 || size > MAX_BULK_SIZE) {
+            throw new InvalidOrderException("Invalid request, must provide between 1 and " + MAX_BULK_SIZE + " orders");
+        }
+    }
+
+    private static void sendAndReset(ResponseBodyEmitter emitter, ByteArrayOutputStream buffer) throws IOException {
+        if (buffer.size() == 0) return;
+        emitter.send(buffer.toByteArray(), MediaType.APPLICATION_NDJSON);
+        buffer.reset();
+    }
 }
\ No newline at end of file
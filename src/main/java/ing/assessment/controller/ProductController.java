@@ -1,36 +1,58 @@
 package ing.assessment.controller;
 
-import ing.assessment.db.product.Product;
+import ing.assessment.dto.CatalogueJsonDTO;
 import ing.assessment.exception.ProductNotFoundException;
 import ing.assessment.service.ProductService;
+import ing.assessment.service.StockFeedService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/products")
 public class ProductController {
 
     private final ProductService productService;
+    private final StockFeedService stockFeedService;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, StockFeedService stockFeedService) {
         this.productService = productService;
+        this.stockFeedService = stockFeedService;
     }
 
+    // pollers sending the ETag of their last response get a 304 until an order changes stock
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
-        List<Product> products = productService.getAllProducts();
+    public ResponseEntity<byte[]> getAllProducts(WebRequest request) {
+        if (request.checkNotModified(productService.getCatalogueETag())) return null;
 
-        return ResponseEntity.ok(products);
+        return json(productService.getAllProductsJson());
     }
 
+    // an unknown id is a 404 whatever ETag is sent, the ETag is that of the catalogue version the product was read at
     @GetMapping("/{id}")
-    public ResponseEntity<List<Product>> getProduct(@PathVariable("id") Integer id) throws ProductNotFoundException {
-        List<Product> product = productService.getProductsById(id);
+    public ResponseEntity<byte[]> getProduct(@PathVariable("id") Integer id, WebRequest request) throws ProductNotFoundException {
+        CatalogueJsonDTO product = productService.getProductJson(id)
+                .orElseThrow(() -> new ProductNotFoundException("Product with ID: " + id + " was not found."));
+        if (request.checkNotModified(product.eTag())) return null;
+
+        return json(product);
+    }
 
-        if (product.isEmpty()) throw new ProductNotFoundException("Product with ID: " + id + " was not found.");
+    // a snapshot of all stock, then the stock changes as orders commit them
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stockFeed() {
+        return stockFeedService.subscribe();
+    }
 
-        return ResponseEntity.ok(product);
+    // no-cache: clients may keep the body but have to revalidate it before every use
+    static ResponseEntity<byte[]> json(CatalogueJsonDTO catalogue) {
+        return ResponseEntity.ok()
+                .eTag(catalogue.eTag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalogue.json());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package ing.assessment.controller;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.dto.OrderPageDTO;
+import ing.assessment.exception.InvalidOrderException;
+import ing.assessment.exception.OrderNotFoundException;
+import ing.assessment.model.ReadConsistency;
+import ing.assessment.service.ReactiveOrderService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * The order endpoints of {@link OrderController} under {@code /reactive/orders}. The request thread is released as
+ * soon as the call is handed to the {@link ReactiveOrderService}; validation and error responses are the same.
+ */
+@RestController
+@RequestMapping("/reactive/orders")
+public class ReactiveOrderController {
+
+    private static final String READ_CONSISTENCY = "Read-Consistency";
+
+    private final ReactiveOrderService reactiveOrderService;
+
+    public ReactiveOrderController(ReactiveOrderService reactiveOrderService) {
+        this.reactiveOrderService = reactiveOrderService;
+    }
+
+    @PostMapping("/place")
+    public Mono<ResponseEntity<Order>> placeOrder(@RequestBody Map<Integer, Integer> productIdsToQuantity,
+                                                  @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey)
+            throws InvalidOrderException {
+        OrderController.validateBasket(productIdsToQuantity);
+
+        return reactiveOrderService.placeOrder(productIdsToQuantity, idempotencyKey).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Order>> getOrder(@PathVariable("id") Integer id,
+                                                @RequestHeader(value = READ_CONSISTENCY, required = false) String consistency)
+            throws InvalidOrderException {
+        return reactiveOrderService.getOrderById(id, OrderController.readConsistency(consistency))
+                .switchIfEmpty(Mono.error(() -> new OrderNotFoundException("Order with id: " + id + " not found")))
+                .map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/all")
+    public Flux<Order> getAllOrders(@RequestHeader(value = READ_CONSISTENCY, required = false) String consistency)
+            throws InvalidOrderException {
+        return reactiveOrderService.getAllOrders(OrderController.readConsistency(consistency));
+    }
+
+    @GetMapping(value = "/all", params = "limit")
+    public Mono<ResponseEntity<OrderPageDTO>> getOrdersPage(
+            @RequestParam("limit") int limit,
+            @RequestParam(value = "after", required = false) Integer after,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+            @RequestHeader(value = READ_CONSISTENCY, required = false) String consistency)
+            throws InvalidOrderException {
+        OrderController.validatePageSize(limit);
+        ReadConsistency readConsistency = OrderController.readConsistency(consistency);
+
+        return reactiveOrderService.getOrders(after, from, to, limit, readConsistency).map(ResponseEntity::ok);
+    }
+}
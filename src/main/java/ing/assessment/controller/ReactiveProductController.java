@@ -0,0 +1,34 @@
+package ing.assessment.controller;
+
+import ing.assessment.exception.ProductNotFoundException;
+import ing.assessment.service.ReactiveProductService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import reactor.core.publisher.Mono;
+
+// the product endpoints of ProductController under /reactive/products, with the same ETags and error responses
+@RestController
+@RequestMapping("/reactive/products")
+public class ReactiveProductController {
+
+    private final ReactiveProductService reactiveProductService;
+
+    public ReactiveProductController(ReactiveProductService reactiveProductService) {
+        this.reactiveProductService = reactiveProductService;
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<byte[]>> getAllProducts(WebRequest request) {
+        if (request.checkNotModified(reactiveProductService.getCatalogueETag())) return Mono.empty();
+
+        return reactiveProductService.getAllProductsJson().map(ProductController::json);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<byte[]>> getProduct(@PathVariable("id") Integer id, WebRequest request) {
+        return reactiveProductService.getProductJson(id)
+                .switchIfEmpty(Mono.error(() -> new ProductNotFoundException("Product with ID: " + id + " was not found.")))
+                .flatMap(product -> request.checkNotModified(product.eTag()) ? Mono.empty() : Mono.just(ProductController.json(product)));
+    }
+}
@@ -1,5 +1,8 @@
 package ing.assessment.db.order;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import ing.assessment.model.Money;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -13,16 +16,51 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(name = "orders")
+@JsonPropertyOrder({"id", "timestamp", "orderProducts", "orderCost", "discount", "deliveryCost", "deliveryTime"})
 public class Order {
 
+    public static final int ID_BLOCK_SIZE = 50;
+
+    // pooled sequence instead of IDENTITY so inserts can be batched; see OrderWriteBehind for the shared block size
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = ID_BLOCK_SIZE)
     private Integer id;
     private Date timestamp;
     @ElementCollection
+    @CollectionTable(name = "order_order_products", joinColumns = @JoinColumn(name = "order_id"))
     private List<OrderProduct> orderProducts;
-    private Double orderCost;
-    private Double discount;
+    // in cents, the JSON shows them as amounts
+    @JsonIgnore
+    @Column(name = "order_cost_cents")
+    private long orderCostCents;
+    @JsonIgnore
+    @Column(name = "discount_cents")
+    private long discountCents;
     private Integer deliveryCost = 30; // Default cost of the order
     private Integer deliveryTime = 2;  // Default delivery time for the order
+
+    // compact layout (orders.storage.compact-lines): every line packed into this one column by OrderLineCodec
+    // instead of one order_order_products row each, null for orders stored with line rows
+    @JsonIgnore
+    @Column(name = "encoded_lines", length = 65_535)
+    private byte[] encodedLines;
+
+    // the lines of a compact order once decoded, never persisted
+    @JsonIgnore
+    @Transient
+    private List<OrderProduct> decodedLines;
+
+    // entity fields are mapped by field access, so this only decides what callers and the JSON see
+    public List<OrderProduct> getOrderProducts() {
+        return decodedLines != null ? decodedLines : orderProducts;
+    }
+
+    public double getOrderCost() {
+        return Money.toAmount(orderCostCents);
+    }
+
+    public double getDiscount() {
+        return Money.toAmount(discountCents);
+    }
 }
\ No newline at end of file
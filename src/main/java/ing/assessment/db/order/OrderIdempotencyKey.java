@@ -0,0 +1,25 @@
+package ing.assessment.db.order;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "order_idempotency_keys")
+public class OrderIdempotencyKey {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+    private Integer orderId;
+    // SHA-256 of the basket the key was first used with, see OrderIdempotency.basketDigest; a retry must send the same basket
+    @Column(length = 64)
+    private String basketDigest;
+    private Date createdAt;
+}
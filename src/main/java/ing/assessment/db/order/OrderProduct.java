@@ -1,5 +1,10 @@
 package ing.assessment.db.order;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import ing.assessment.model.Location;
+import ing.assessment.model.Money;
+import jakarta.persistence.Column;
 import jakarta.persistence.Embeddable;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,10 +14,21 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Embeddable
+@JsonPropertyOrder({"productId", "quantity", "name", "totalCost"})
 public class OrderProduct {
 
     private Integer productId;
     private Integer quantity;
     private String name;
-    private Double totalCost;
-}
\ No newline at end of file
+    @JsonIgnore
+    @Column(name = "total_cost_cents")
+    private long totalCostCents;
+
+    // the location the units were allocated from, null for lines placed before it was recorded
+    @JsonIgnore
+    private Location location;
+
+    public double getTotalCost() {
+        return Money.toAmount(totalCostCents);
+    }
+}
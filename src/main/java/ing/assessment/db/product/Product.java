@@ -1,5 +1,8 @@
 package ing.assessment.db.product;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import ing.assessment.model.Money;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,12 +12,19 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonPropertyOrder({"productCk", "name", "price", "quantity"})
 public class Product {
 
     @EmbeddedId
     private ProductCK productCk;
 
     private String name;
-    private Double price;
+    @JsonIgnore
+    @Column(name = "price_cents")
+    private long priceCents;
     private Integer quantity;
-}
\ No newline at end of file
+
+    public double getPrice() {
+        return Money.toAmount(priceCents);
+    }
+}
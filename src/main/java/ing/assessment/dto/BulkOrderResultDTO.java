@@ -0,0 +1,21 @@
+package ing.assessment.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import ing.assessment.db.order.Order;
+
+// outcome of the order at position "index" of a bulk request, exactly one of order and error is set
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkOrderResultDTO(
+        int index,
+        Order order,
+        ErrorResponseDTO error
+) {
+
+    public static BulkOrderResultDTO placed(int index, Order order) {
+        return new BulkOrderResultDTO(index, order, null);
+    }
+
+    public static BulkOrderResultDTO failed(int index, Exception ex) {
+        return new BulkOrderResultDTO(index, null, ErrorResponseDTO.from(ex));
+    }
+}
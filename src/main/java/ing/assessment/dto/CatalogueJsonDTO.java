@@ -0,0 +1,7 @@
+package ing.assessment.dto;
+
+// already serialized products together with the ETag of the catalogue version they were read at
+public record CatalogueJsonDTO(
+        String eTag,
+        byte[] json
+) {}
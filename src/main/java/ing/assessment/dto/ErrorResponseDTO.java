@@ -1,6 +1,12 @@
 package ing.assessment.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import ing.assessment.exception.BridgeOverloadedException;
+import ing.assessment.exception.InvalidOrderException;
+import ing.assessment.exception.OrderNotFoundException;
+import ing.assessment.exception.OutOfStockException;
+import ing.assessment.exception.ProductNotFoundException;
+import org.springframework.http.HttpStatus;
 
 import java.time.LocalDateTime;
 
@@ -8,4 +14,25 @@ public record ErrorResponseDTO(
         int status,
         String error,
         String message
-) {}
+) {
+
+    // the single mapping of domain exceptions to error bodies, shared by the exception handler and partial results
+    public static ErrorResponseDTO from(Exception ex) {
+        if (ex instanceof ProductNotFoundException) {
+            return new ErrorResponseDTO(HttpStatus.NOT_FOUND.value(), "Product not found", ex.getMessage());
+        }
+        if (ex instanceof OrderNotFoundException) {
+            return new ErrorResponseDTO(HttpStatus.NOT_FOUND.value(), "Order not found", ex.getMessage());
+        }
+        if (ex instanceof InvalidOrderException) {
+            return new ErrorResponseDTO(HttpStatus.BAD_REQUEST.value(), "Invalid order", ex.getMessage());
+        }
+        if (ex instanceof OutOfStockException) {
+            return new ErrorResponseDTO(HttpStatus.GONE.value(), "Out of stock", ex.getMessage());
+        }
+        if (ex instanceof BridgeOverloadedException) {
+            return new ErrorResponseDTO(HttpStatus.SERVICE_UNAVAILABLE.value(), "Overloaded", ex.getMessage());
+        }
+        return new ErrorResponseDTO(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Internal error", ex.getMessage());
+    }
+}
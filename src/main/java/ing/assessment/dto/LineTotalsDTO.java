@@ -0,0 +1,6 @@
+package ing.assessment.dto;
+
+public record LineTotalsDTO(
+        long units,
+        double revenue
+) {}
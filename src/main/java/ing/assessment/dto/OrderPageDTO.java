@@ -0,0 +1,11 @@
+package ing.assessment.dto;
+
+import ing.assessment.db.order.Order;
+
+import java.util.List;
+
+// nextCursor is the id to pass as "after" for the following page, null once the last page was returned
+public record OrderPageDTO(
+        List<Order> orders,
+        Integer nextCursor
+) {}
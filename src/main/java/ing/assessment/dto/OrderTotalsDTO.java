@@ -0,0 +1,9 @@
+package ing.assessment.dto;
+
+// revenue is the sum of the order lines before discounts, discount and deliveryCost are summed per order
+public record OrderTotalsDTO(
+        long orders,
+        double revenue,
+        double discount,
+        double deliveryCost
+) {}
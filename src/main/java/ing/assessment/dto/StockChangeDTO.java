@@ -0,0 +1,11 @@
+package ing.assessment.dto;
+
+import ing.assessment.model.Location;
+
+// delta is the stock taken since the previous event (0 in snapshots), quantity the stock left afterwards
+public record StockChangeDTO(
+        int productId,
+        Location location,
+        int delta,
+        int quantity
+) {}
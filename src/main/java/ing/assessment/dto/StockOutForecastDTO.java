@@ -0,0 +1,12 @@
+package ing.assessment.dto;
+
+import ing.assessment.model.Location;
+
+// dailyDemand is the recent demand in units per day, daysUntilStockOut is null while there is no demand
+public record StockOutForecastDTO(
+        int productId,
+        Location location,
+        int quantity,
+        double dailyDemand,
+        Double daysUntilStockOut
+) {}
@@ -0,0 +1,12 @@
+package ing.assessment.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// the blocking bridge of the reactive endpoints has no thread or queue slot left for another call
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class BridgeOverloadedException extends RuntimeException {
+    public BridgeOverloadedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,6 +1,7 @@
 package ing.assessment.handler;
 
 import ing.assessment.dto.ErrorResponseDTO;
+import ing.assessment.exception.BridgeOverloadedException;
 import ing.assessment.exception.InvalidOrderException;
 import ing.assessment.exception.OrderNotFoundException;
 import ing.assessment.exception.OutOfStockException;
@@ -16,41 +17,27 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(ProductNotFoundException.class)
     public ResponseEntity<ErrorResponseDTO> handleProductNotFound(ProductNotFoundException ex) {
-        ErrorResponseDTO error = new ErrorResponseDTO(
-                HttpStatus.NOT_FOUND.value(),
-                "Product not found",
-                ex.getMessage()
-        );
-        return new ResponseEntity<>(error, HttpStatus.NOT_FOUND);
+        return new ResponseEntity<>(ErrorResponseDTO.from(ex), HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler(OrderNotFoundException.class)
     public ResponseEntity<ErrorResponseDTO> handleOrderNotFound(OrderNotFoundException ex) {
-        ErrorResponseDTO error = new ErrorResponseDTO(
-                HttpStatus.NOT_FOUND.value(),
-                "Order not found",
-                ex.getMessage()
-        );
-        return new ResponseEntity<>(error, HttpStatus.NOT_FOUND);
+        return new ResponseEntity<>(ErrorResponseDTO.from(ex), HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler(InvalidOrderException.class)
     public ResponseEntity<ErrorResponseDTO> handleInvalidOrder(InvalidOrderException ex) {
-        ErrorResponseDTO error = new ErrorResponseDTO(
-                HttpStatus.BAD_REQUEST.value(),
-                "Invalid order",
-                ex.getMessage()
-        );
-        return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(ErrorResponseDTO.from(ex), HttpStatus.BAD_REQUEST);
     }
 
     @ExceptionHandler(OutOfStockException.class)
     public ResponseEntity<ErrorResponseDTO> handleOutOfStock(OutOfStockException ex) {
-        ErrorResponseDTO error = new ErrorResponseDTO(
-                HttpStatus.GONE.value(),
-                "Out of stock",
-                ex.getMessage()
-        );
-        return new ResponseEntity<>(error, HttpStatus.GONE);
+        return new ResponseEntity<>(ErrorResponseDTO.from(ex), HttpStatus.GONE);
     }
-}
\ No newline at end of file
+
+    // the blocking bridge of the reactive endpoints is full, the client may retry later
+    @ExceptionHandler(BridgeOverloadedException.class)
+    public ResponseEntity<ErrorResponseDTO> handleBridgeOverloaded(BridgeOverloadedException ex) {
+        return new ResponseEntity<>(ErrorResponseDTO.from(ex), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
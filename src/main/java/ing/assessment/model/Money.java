@@ -0,0 +1,25 @@
+package ing.assessment.model;
+
+/**
+ * Amounts are kept as {@code long} cents everywhere: exact to add up, and no boxing. Doubles only appear at the
+ * edges, where amounts are read from configuration or written to JSON.
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static double toAmount(long cents) {
+        return cents / 100.0;
+    }
+
+    // basisPoints / 10_000 of cents, half a cent rounded away from zero
+    public static long fraction(long cents, long basisPoints) {
+        long product = cents * basisPoints;
+        return (product + (product >= 0 ? 5_000 : -5_000)) / 10_000;
+    }
+}
@@ -0,0 +1,9 @@
+package ing.assessment.model;
+
+// how fresh an order query has to be when orders are read from the read model (orders.read-model.store)
+public enum ReadConsistency {
+    // whatever the read model has projected so far, which trails the latest placements by the projection lag
+    EVENTUAL,
+    // every order placed before the query started, e.g. the caller's own placements
+    READ_YOUR_WRITES
+}
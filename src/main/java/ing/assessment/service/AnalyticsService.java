@@ -0,0 +1,19 @@
+package ing.assessment.service;
+
+import ing.assessment.dto.LineTotalsDTO;
+import ing.assessment.dto.OrderTotalsDTO;
+import ing.assessment.dto.StockOutForecastDTO;
+import ing.assessment.model.Location;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+public interface AnalyticsService {
+    OrderTotalsDTO getTotals(Date from, Date to);
+    Map<Date, OrderTotalsDTO> getTotalsByBucket(Date from, Date to);
+    Map<Integer, LineTotalsDTO> getTotalsByProduct(Date from, Date to);
+    Map<Location, LineTotalsDTO> getTotalsByLocation(Date from, Date to);
+    List<StockOutForecastDTO> getStockOutForecast(Integer productId);
+    long rebuild();
+}
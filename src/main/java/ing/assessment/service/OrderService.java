@@ -1,12 +1,26 @@
 package ing.assessment.service;
 
 import ing.assessment.db.order.Order;
+import ing.assessment.dto.BulkOrderResultDTO;
+import ing.assessment.dto.OrderPageDTO;
+import ing.assessment.model.ReadConsistency;
+
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface OrderService {
     Order placeOrder(Map<Integer, Integer> productIds) throws Exception;
+    Order placeOrder(Map<Integer, Integer> productIds, String idempotencyKey) throws Exception;
+    List<BulkOrderResultDTO> placeOrders(List<Map<Integer, Integer>> baskets);
     List<Order> getAllOrders();
+    List<Order> getAllOrders(ReadConsistency consistency);
     Optional<Order> getOrderById(Integer orderId);
-}
\ No newline at end of file
+    Optional<Order> getOrderById(Integer orderId, ReadConsistency consistency);
+    OrderPageDTO getOrders(Integer afterId, Date from, Date to, int limit);
+    OrderPageDTO getOrders(Integer afterId, Date from, Date to, int limit, ReadConsistency consistency);
+    void forEachOrder(Date from, Date to, Consumer<Order> consumer);
+    List<Order> getPersistedOrdersAfter(Integer afterId, Date from, int limit);
+}
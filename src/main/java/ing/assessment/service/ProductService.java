@@ -1,9 +1,19 @@
 package ing.assessment.service;
 
 import ing.assessment.db.product.Product;
+import ing.assessment.dto.CatalogueJsonDTO;
+
 import java.util.List;
+import java.util.Optional;
 
 public interface ProductService {
     List<Product> getAllProducts();
     List<Product> getProductsById(Integer id);
-}
\ No newline at end of file
+
+    // changes whenever any product's stock may have changed, without reading the products
+    String getCatalogueETag();
+    CatalogueJsonDTO getAllProductsJson();
+    Optional<CatalogueJsonDTO> getProductJson(Integer id);
+    // only JSON that is already serialized, empty if answering would have to load the product
+    Optional<CatalogueJsonDTO> getCachedProductJson(Integer id);
+}
@@ -0,0 +1,18 @@
+package ing.assessment.service;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.dto.OrderPageDTO;
+import ing.assessment.model.ReadConsistency;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.Map;
+
+// the OrderService without blocking the caller's thread; failures are the same exceptions, signalled as errors
+public interface ReactiveOrderService {
+    Mono<Order> placeOrder(Map<Integer, Integer> productIds, String idempotencyKey);
+    Flux<Order> getAllOrders(ReadConsistency consistency);
+    Mono<Order> getOrderById(Integer orderId, ReadConsistency consistency);
+    Mono<OrderPageDTO> getOrders(Integer afterId, Date from, Date to, int limit, ReadConsistency consistency);
+}
@@ -0,0 +1,16 @@
+package ing.assessment.service;
+
+import ing.assessment.db.product.Product;
+import ing.assessment.dto.CatalogueJsonDTO;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// the ProductService without blocking the caller's thread
+public interface ReactiveProductService {
+    Flux<Product> getAllProducts();
+    Flux<Product> getProductsById(Integer id);
+
+    String getCatalogueETag();
+    Mono<CatalogueJsonDTO> getAllProductsJson();
+    Mono<CatalogueJsonDTO> getProductJson(Integer id);
+}
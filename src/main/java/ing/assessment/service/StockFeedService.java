@@ -0,0 +1,7 @@
+package ing.assessment.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface StockFeedService {
+    SseEmitter subscribe();
+}
@@ -0,0 +1,67 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.model.Location;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which locations a basket is shipped from. Every distinct location adds to the delivery time, so
+ * strategies differ in how hard they try to keep that set small; selected with {@code orders.allocation.strategy}.
+ * <p>
+ * Strategies work on plain arrays so they do not depend on the {@link Location} enum: {@code stock[i][l]} is the
+ * quantity of the i-th basket product at location {@code l} and {@code demand[i]} what the basket asks of it.
+ */
+public interface AllocationStrategy {
+
+    String LOCATION_ORDER = "location-order";
+    String GREEDY = "greedy";
+    String EXACT = "exact";
+
+    /**
+     * Returns the bitmask of the locations to ship from, which together must hold enough stock for every demand.
+     * Only called when every product has enough stock over all locations.
+     */
+    int chooseLocations(int[][] stock, int[] demand);
+
+    // within the chosen locations each product is taken from the lowest location first
+    default List<StockDecrement> allocate(Map<Integer, Integer> basket, Map<Integer, InventoryEntry> inventory) {
+        Location[] locations = Location.values();
+        int[] productIds = new int[basket.size()];
+        int[] demand = new int[basket.size()];
+        int[][] stock = new int[basket.size()][locations.length];
+
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : basket.entrySet()) {
+            InventoryEntry available = inventory.get(entry.getKey());
+            productIds[i] = entry.getKey();
+            demand[i] = entry.getValue();
+            for (Location location : locations) {
+                stock[i][location.ordinal()] = available.quantityAt(location);
+            }
+            i++;
+        }
+
+        int chosen = chooseLocations(stock, demand);
+
+        List<StockDecrement> decrements = new ArrayList<>();
+        for (i = 0; i < productIds.length; i++) {
+            int remaining = demand[i];
+            for (int l = 0; l < locations.length && remaining > 0; l++) {
+                if ((chosen & (1 << l)) == 0) continue;
+
+                int allocated = Math.min(remaining, stock[i][l]);
+                if (allocated > 0) {
+                    decrements.add(new StockDecrement(productIds[i], locations[l], allocated));
+                    remaining -= allocated;
+                }
+            }
+        }
+        return decrements;
+    }
+
+    static int allLocations(int locations) {
+        return (1 << locations) - 1;
+    }
+}
@@ -0,0 +1,82 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.dto.LineTotalsDTO;
+import ing.assessment.dto.OrderTotalsDTO;
+import ing.assessment.dto.StockOutForecastDTO;
+import ing.assessment.model.Location;
+import ing.assessment.service.AnalyticsService;
+import ing.assessment.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class AnalyticsServiceImpl implements AnalyticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsServiceImpl.class);
+
+    private final OrderAnalytics orderAnalytics;
+    private final OrderService orderService;
+    private final StockForecaster stockForecaster;
+    private final OrderWriteBehind orderWriteBehind;
+    private final boolean rebuildOnStartup;
+
+    public AnalyticsServiceImpl(OrderAnalytics orderAnalytics,
+                                OrderService orderService,
+                                StockForecaster stockForecaster,
+                                OrderWriteBehind orderWriteBehind,
+                                @Value("${analytics.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.orderAnalytics = orderAnalytics;
+        this.orderService = orderService;
+        this.stockForecaster = stockForecaster;
+        this.orderWriteBehind = orderWriteBehind;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    // the aggregates live in memory, so they start out from the persisted order history
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup) {
+            long orders = rebuild();
+            log.info("Rebuilt order analytics from {} orders", orders);
+        }
+    }
+
+    @Override
+    public OrderTotalsDTO getTotals(Date from, Date to) {
+        return orderAnalytics.totals(from, to);
+    }
+
+    @Override
+    public Map<Date, OrderTotalsDTO> getTotalsByBucket(Date from, Date to) {
+        return orderAnalytics.totalsByBucket(from, to);
+    }
+
+    @Override
+    public Map<Integer, LineTotalsDTO> getTotalsByProduct(Date from, Date to) {
+        return orderAnalytics.totalsByProduct(from, to);
+    }
+
+    @Override
+    public Map<Location, LineTotalsDTO> getTotalsByLocation(Date from, Date to) {
+        return orderAnalytics.totalsByLocation(from, to);
+    }
+
+    @Override
+    public List<StockOutForecastDTO> getStockOutForecast(Integer productId) {
+        return stockForecaster.forecast(productId);
+    }
+
+    @Override
+    public long rebuild() {
+        // orders still queued for write-behind have no rows yet, they would be missing from the scanned history
+        return orderAnalytics.rebuild(consumer -> orderService.forEachOrder(null, null, consumer), orderWriteBehind::unwrittenOrders);
+    }
+}
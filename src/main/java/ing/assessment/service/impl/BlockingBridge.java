@@ -0,0 +1,75 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.exception.BridgeOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the blocking services (JPA, JDBC, lock waits) for the reactive API on a pool of its own. The pool holds at
+ * most {@code reactive.bridge.threads} threads and each queues at most {@code reactive.bridge.queue-per-thread}
+ * calls; beyond that a call fails at once with a {@link BridgeOverloadedException} instead of waiting, so the
+ * latency of the calls that were admitted stays bounded by the queue length.
+ */
+@Component
+public class BlockingBridge {
+
+    private final Scheduler scheduler;
+    private final AtomicInteger active = new AtomicInteger();
+    private final Counter rejected;
+
+    public BlockingBridge(MeterRegistry meterRegistry,
+                          @Value("${reactive.bridge.threads:8}") int threads,
+                          @Value("${reactive.bridge.queue-per-thread:100}") int queuePerThread) {
+        if (threads <= 0 || queuePerThread <= 0) {
+            throw new IllegalArgumentException("reactive.bridge.threads and queue-per-thread must be positive");
+        }
+
+        this.scheduler = Schedulers.newBoundedElastic(threads, queuePerThread, "blocking-bridge", 60, true);
+        this.rejected = meterRegistry.counter("reactive.bridge.rejected");
+        Gauge.builder("reactive.bridge.active", active, AtomicInteger::get).register(meterRegistry);
+    }
+
+    // nothing runs until the Mono is subscribed, an empty Mono if the call returns null
+    public <T> Mono<T> call(Callable<T> blocking) {
+        return Mono.defer(() -> {
+            // only a rejection before the call started means the bridge is full, the call may throw one itself
+            AtomicBoolean started = new AtomicBoolean();
+            return Mono.fromCallable(() -> {
+                        started.set(true);
+                        active.incrementAndGet();
+                        try {
+                            return blocking.call();
+                        } finally {
+                            active.decrementAndGet();
+                        }
+                    })
+                    .subscribeOn(scheduler)
+                    .onErrorMap(e -> e instanceof RejectedExecutionException && !started.get(), e -> {
+                        rejected.increment();
+                        return new BridgeOverloadedException("Too many requests waiting for a blocking call, retry later", e);
+                    });
+        });
+    }
+
+    // calls running right now, never more than reactive.bridge.threads
+    int active() {
+        return active.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,157 @@
+package ing.assessment.service.impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds the smallest set of locations that can fill the basket with a branch-and-bound search over location
+ * bitmasks. The greedy plan is the starting bound; each step branches on the product with the fewest locations
+ * left that could still cover it, and a branch is cut as soon as it cannot beat the best plan found so far.
+ * <p>
+ * The search is bounded to about {@link #MAX_WORK} product-location checks so planning stays in the microseconds:
+ * small instances, such as the three current locations, are always solved exactly, larger ones return the best
+ * plan found within the budget, which is never worse than the greedy one.
+ */
+@Component
+@ConditionalOnProperty(name = "orders.allocation.strategy", havingValue = AllocationStrategy.EXACT, matchIfMissing = true)
+public class ExactAllocationStrategy implements AllocationStrategy {
+
+    static final int MAX_LOCATIONS = 24;
+    static final int MAX_WORK = 20_000;
+
+    private final GreedyAllocationStrategy greedy = new GreedyAllocationStrategy();
+
+    @Override
+    public int chooseLocations(int[][] stock, int[] demand) {
+        if (demand.length == 0) return 0;
+
+        int greedyPlan = greedy.chooseLocations(stock, demand);
+        if (stock[0].length > MAX_LOCATIONS || Integer.bitCount(greedyPlan) <= 1) return greedyPlan;
+
+        Search search = new Search(stock, demand, greedyPlan);
+        search.branch(0, 0, 0);
+        return search.bestPlan;
+    }
+
+    private static final class Search {
+        private final int[][] stock;
+        private final int[] demand;
+        private final int[] covered;
+        private final int locations;
+        private int bestPlan;
+        private int bestSize;
+        private int workLeft = MAX_WORK;
+
+        private Search(int[][] stock, int[] demand, int initialPlan) {
+            this.stock = stock;
+            this.demand = demand;
+            this.covered = new int[demand.length];
+            this.locations = stock[0].length;
+            this.bestPlan = initialPlan;
+            this.bestSize = Integer.bitCount(initialPlan);
+        }
+
+        private void branch(int chosen, int excluded, int size) {
+            if (workLeft < 0) return;
+
+            int open = ~(chosen | excluded) & AllocationStrategy.allLocations(locations);
+
+            // the uncovered product with the fewest candidate locations, and a bound on the locations still needed
+            int pick = -1;
+            int pickCandidates = Integer.MAX_VALUE;
+            int stillNeeded = 0;
+            for (int i = 0; i < demand.length; i++) {
+                int deficit = demand[i] - covered[i];
+                if (deficit <= 0) continue;
+
+                int candidates = 0;
+                int reachable = 0;
+                workLeft -= Integer.bitCount(open);
+                for (int mask = open; mask != 0; mask &= mask - 1) {
+                    int quantity = stock[i][Integer.numberOfTrailingZeros(mask)];
+                    if (quantity > 0) {
+                        candidates++;
+                        reachable += quantity;
+                    }
+                }
+                if (reachable < deficit) return;
+
+                stillNeeded = Math.max(stillNeeded, locationsToCover(i, deficit, open));
+                if (size + stillNeeded >= bestSize) return;
+                if (candidates < pickCandidates) {
+                    pick = i;
+                    pickCandidates = candidates;
+                }
+            }
+
+            if (pick < 0) {
+                bestPlan = chosen;
+                bestSize = size;
+                return;
+            }
+
+            // every plan in this branch adds one of pick's locations, tried in order of how much of the missing
+            // stock they cover so good plans tighten the bound early; later branches exclude the earlier ones
+            int candidates = 0;
+            for (int mask = open; mask != 0; mask &= mask - 1) {
+                if (stock[pick][Integer.numberOfTrailingZeros(mask)] > 0) candidates |= mask & -mask;
+            }
+            while (candidates != 0 && workLeft >= 0) {
+                int location = mostCovering(candidates);
+                candidates &= ~(1 << location);
+
+                add(location, 1);
+                branch(chosen | (1 << location), excluded, size + 1);
+                add(location, -1);
+
+                excluded |= 1 << location;
+                if (size + 1 >= bestSize) return;
+            }
+        }
+
+        private int mostCovering(int candidates) {
+            int best = 0;
+            long bestCovered = -1;
+            for (int mask = candidates; mask != 0; mask &= mask - 1) {
+                int location = Integer.numberOfTrailingZeros(mask);
+                long coveredByLocation = 0;
+                for (int i = 0; i < demand.length; i++) {
+                    coveredByLocation += Math.min(Math.max(demand[i] - covered[i], 0), stock[i][location]);
+                }
+                workLeft -= demand.length;
+                if (coveredByLocation > bestCovered) {
+                    best = location;
+                    bestCovered = coveredByLocation;
+                }
+            }
+            return best;
+        }
+
+        // fewest open locations that cover the deficit, taking the largest stocks first
+        private int locationsToCover(int product, int deficit, int open) {
+            int needed = 0;
+            while (deficit > 0) {
+                workLeft -= Integer.bitCount(open);
+                int largest = 0;
+                int largestLocation = 0;
+                for (int mask = open; mask != 0; mask &= mask - 1) {
+                    int location = Integer.numberOfTrailingZeros(mask);
+                    if (stock[product][location] > largest) {
+                        largest = stock[product][location];
+                        largestLocation = location;
+                    }
+                }
+                deficit -= largest;
+                open &= ~(1 << largestLocation);
+                needed++;
+            }
+            return needed;
+        }
+
+        private void add(int location, int sign) {
+            for (int i = 0; i < covered.length; i++) {
+                covered[i] += sign * stock[i][location];
+            }
+        }
+    }
+}
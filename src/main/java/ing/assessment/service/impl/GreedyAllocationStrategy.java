@@ -0,0 +1,51 @@
+package ing.assessment.service.impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Greedy set cover: keeps adding the location that covers the most still-missing units until the basket is
+ * filled. Runs in O(locations^2 * products) but can use more locations than necessary.
+ */
+@Component
+@ConditionalOnProperty(name = "orders.allocation.strategy", havingValue = AllocationStrategy.GREEDY)
+public class GreedyAllocationStrategy implements AllocationStrategy {
+
+    @Override
+    public int chooseLocations(int[][] stock, int[] demand) {
+        int[] missing = demand.clone();
+        int locations = demand.length == 0 ? 0 : stock[0].length;
+        int chosen = 0;
+
+        while (hasMissing(missing)) {
+            int best = -1;
+            long bestCovered = 0;
+            for (int l = 0; l < locations; l++) {
+                if ((chosen & (1 << l)) != 0) continue;
+
+                long covered = 0;
+                for (int i = 0; i < missing.length; i++) {
+                    covered += Math.min(missing[i], stock[i][l]);
+                }
+                if (covered > bestCovered) {
+                    best = l;
+                    bestCovered = covered;
+                }
+            }
+            if (best < 0) break;
+
+            chosen |= 1 << best;
+            for (int i = 0; i < missing.length; i++) {
+                missing[i] -= Math.min(missing[i], stock[i][best]);
+            }
+        }
+        return chosen;
+    }
+
+    private static boolean hasMissing(int[] missing) {
+        for (int quantity : missing) {
+            if (quantity > 0) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// the projection on the heap of this instance, rebuilt from the order history on every start
+@Component
+@ConditionalOnProperty(name = "orders.read-model.store", havingValue = OrderReadStore.MEMORY)
+public class InMemoryOrderReadStore implements OrderReadStore {
+
+    private final ConcurrentSkipListMap<Integer, Order> orders = new ConcurrentSkipListMap<>();
+
+    @Override
+    public void upsertAll(List<Order> orders) {
+        for (Order order : orders) this.orders.put(order.getId(), order);
+    }
+
+    @Override
+    public Optional<Order> findById(int orderId) {
+        return Optional.ofNullable(orders.get(orderId));
+    }
+
+    @Override
+    public List<Order> findAll() {
+        return new ArrayList<>(orders.values());
+    }
+
+    @Override
+    public List<Order> findAfter(int afterId, Date from, Date to, int limit) {
+        List<Order> page = new ArrayList<>(Math.min(limit, 1024));
+
+        for (Order order : orders.tailMap(afterId, false).values()) {
+            if (order.getTimestamp().before(from) || !order.getTimestamp().before(to)) continue;
+
+            page.add(order);
+            if (page.size() == limit) break;
+        }
+        return page;
+    }
+
+    @Override
+    public long count() {
+        return orders.size();
+    }
+}
@@ -0,0 +1,291 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process view of the product table keyed by product id.
+ * <p>
+ * The database stays the source of truth: writers decrement stock there inside their reservation transaction
+ * and only apply the same decrements here once it has committed. Writers announce themselves with
+ * {@link #beginWrites} / {@link #endWrites}, and a load is only cached if no write to the same products was in
+ * flight or finished while it ran, so a stale database read can never overwrite a newer decrement.
+ * <p>
+ * With {@code inventory.cache.max-entries} set to a positive value the cache holds at most that many products and
+ * evicts the oldest ones first; {@link #getAllProducts()} then always reads through to the database.
+ */
+@Component
+public class InventoryCache {
+
+    private static final int WRITE_SLOTS = 1024;
+
+    /** Notified on the writer's thread after the cache has changed, so implementations must not block. */
+    public interface Listener {
+        void committed(List<StockDecrement> decrements);
+
+        // productId is null when every product was evicted
+        void evicted(Integer productId);
+    }
+
+    private final ProductRepository productRepository;
+    private final int maxEntries;
+
+    private final Map<Integer, InventoryEntry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Integer> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicIntegerArray pendingWrites = new AtomicIntegerArray(WRITE_SLOTS);
+    private final AtomicLongArray writeStamps = new AtomicLongArray(WRITE_SLOTS);
+    private final AtomicInteger pendingWritesTotal = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+    private volatile boolean catalogueLoaded;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public InventoryCache(ProductRepository productRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${inventory.cache.max-entries:0}") int maxEntries) {
+        this.productRepository = productRepository;
+        this.maxEntries = maxEntries;
+
+        this.hits = meterRegistry.counter("inventory.cache.hits");
+        this.misses = meterRegistry.counter("inventory.cache.misses");
+        this.evictions = meterRegistry.counter("inventory.cache.evictions");
+        Gauge.builder("inventory.cache.size", entries, Map::size).register(meterRegistry);
+    }
+
+    public List<Product> getAllProducts() {
+        if (catalogueLoaded) {
+            hits.increment();
+            List<Product> products = new ArrayList<>();
+            entries.values().stream()
+                    .sorted(Comparator.comparingInt(InventoryEntry::productId))
+                    .forEach(entry -> products.addAll(entry.toProducts()));
+            return products;
+        }
+
+        misses.increment();
+        long versionBefore = version.get();
+        List<Product> products = productRepository.findAll();
+
+        if (!isBounded() && isQuiet(versionBefore)) {
+            Map<Integer, InventoryEntry> loaded = new HashMap<>();
+            groupById(products).forEach((id, productRows) -> loaded.put(id, InventoryEntry.from(productRows)));
+            loaded.forEach(entries::putIfAbsent);
+
+            // set before the version is checked again: an eviction seen here is undone below, any later one bumps
+            // the version before it removes its entry and clears the flag after that
+            catalogueLoaded = true;
+            if (!isQuiet(versionBefore)) {
+                catalogueLoaded = false;
+                loaded.forEach((id, entry) -> entries.remove(id, entry));
+            }
+        }
+
+        return products;
+    }
+
+    public Optional<InventoryEntry> get(Integer productId) {
+        return Optional.ofNullable(getAll(List.of(productId)).get(productId));
+    }
+
+    // ids that do not exist in the database are simply absent from the result
+    public Map<Integer, InventoryEntry> getAll(Collection<Integer> productIds) {
+        return getAll(productIds, false);
+    }
+
+    /**
+     * Same as {@link #getAll(Collection)} for a caller that holds the reservation stripes of these products and has
+     * registered its writes: no other writer can touch them, so whatever it loads can be cached straight away.
+     */
+    public Map<Integer, InventoryEntry> getAllForReservation(Collection<Integer> productIds) {
+        return getAll(productIds, true);
+    }
+
+    private Map<Integer, InventoryEntry> getAll(Collection<Integer> productIds, boolean reserved) {
+        Map<Integer, InventoryEntry> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+
+        for (Integer productId : productIds) {
+            InventoryEntry entry = entries.get(productId);
+            if (entry != null) {
+                found.put(productId, entry);
+            } else {
+                missing.add(productId);
+            }
+        }
+
+        if (!found.isEmpty()) hits.increment(found.size());
+        if (missing.isEmpty()) return found;
+        misses.increment(missing.size());
+
+        long[] stamps = new long[missing.size()];
+        for (int i = 0; i < stamps.length; i++) {
+            stamps[i] = writeStamps.get(slotOf(missing.get(i)));
+        }
+
+        Map<Integer, List<Product>> loaded = groupById(productRepository.findAllByIdsOrderByLocation(missing));
+
+        for (int i = 0; i < missing.size(); i++) {
+            Integer productId = missing.get(i);
+            List<Product> productRows = loaded.get(productId);
+            if (productRows == null) continue;
+
+            InventoryEntry entry = InventoryEntry.from(productRows);
+            found.put(productId, entry);
+            if (reserved) {
+                cache(productId, entry);
+            } else {
+                cacheIfQuiet(productId, entry, stamps[i]);
+            }
+        }
+
+        return found;
+    }
+
+    public void beginWrites(Collection<Integer> productIds) {
+        pendingWritesTotal.incrementAndGet();
+        for (Integer productId : productIds) {
+            pendingWrites.incrementAndGet(slotOf(productId));
+        }
+    }
+
+    // must only be called after the transaction that wrote the decrements has committed
+    public void applyCommitted(List<StockDecrement> decrements) {
+        for (StockDecrement decrement : decrements) {
+            entries.computeIfPresent(decrement.productId(),
+                    (id, entry) -> entry.withDecrement(decrement.location(), decrement.quantity()));
+        }
+        if (decrements.isEmpty()) return;
+        changes.incrementAndGet();
+        listeners.forEach(listener -> listener.committed(decrements));
+    }
+
+    // called once the writer's transaction has ended, whether it committed or rolled back
+    public void endWrites(Collection<Integer> productIds) {
+        version.incrementAndGet();
+        for (Integer productId : productIds) {
+            int slot = slotOf(productId);
+            writeStamps.incrementAndGet(slot);
+            pendingWrites.decrementAndGet(slot);
+        }
+        pendingWritesTotal.decrementAndGet();
+    }
+
+    public void evict(Integer productId) {
+        int slot = slotOf(productId);
+        writeStamps.incrementAndGet(slot);
+        version.incrementAndGet();
+        if (entries.remove(productId) != null && isBounded()) {
+            // otherwise its old position would evict it early once it is cached again
+            insertionOrder.remove(productId);
+        }
+        catalogueLoaded = false;
+        changes.incrementAndGet();
+        listeners.forEach(listener -> listener.evicted(productId));
+    }
+
+    // for when the product table was rewritten outside of the order path
+    public void evictAll() {
+        for (int slot = 0; slot < WRITE_SLOTS; slot++) {
+            writeStamps.incrementAndGet(slot);
+        }
+        version.incrementAndGet();
+        entries.clear();
+        insertionOrder.clear();
+        catalogueLoaded = false;
+        changes.incrementAndGet();
+        listeners.forEach(listener -> listener.evicted(null));
+    }
+
+    // 0 when the cache is unbounded
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    // bumped whenever stock may have changed
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Bumped after committed stock changes and evictions only, not for placements that were rolled back. Bumped
+     * after the new stock is visible, so whatever is read after reading this value is at least as new.
+     */
+    public long changeCount() {
+        return changes.get();
+    }
+
+    private void cacheIfQuiet(Integer productId, InventoryEntry entry, long stamp) {
+        int slot = slotOf(productId);
+        if (pendingWrites.get(slot) != 0 || writeStamps.get(slot) != stamp) return;
+        if (!cache(productId, entry)) return;
+
+        // a writer may have started between the check and the put, in which case it may have missed this entry
+        if (pendingWrites.get(slot) != 0 || writeStamps.get(slot) != stamp) {
+            entries.remove(productId, entry);
+        }
+    }
+
+    private boolean cache(Integer productId, InventoryEntry entry) {
+        if (entries.putIfAbsent(productId, entry) != null) return false;
+
+        if (isBounded()) {
+            insertionOrder.add(productId);
+            while (entries.size() > maxEntries) {
+                Integer oldest = insertionOrder.poll();
+                if (oldest == null) break;
+                if (entries.remove(oldest) != null) evictions.increment();
+            }
+        }
+        return true;
+    }
+
+    private boolean isQuiet(long versionBefore) {
+        return pendingWritesTotal.get() == 0 && version.get() == versionBefore;
+    }
+
+    private boolean isBounded() {
+        return maxEntries > 0;
+    }
+
+    private static int slotOf(int productId) {
+        return Math.floorMod(productId, WRITE_SLOTS);
+    }
+
+    private static Map<Integer, List<Product>> groupById(List<Product> products) {
+        Map<Integer, List<Product>> productsById = new LinkedHashMap<>();
+
+        for (Product product : products) {
+            productsById.computeIfAbsent(product.getProductCk().getId(), id -> new ArrayList<>()).add(product);
+        }
+
+        return productsById;
+    }
+}
@@ -0,0 +1,66 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable stock view of one product across all locations. {@code quantities} is indexed by
+ * {@link Location#ordinal()} and holds {@link #NOT_STOCKED} for locations that have no product row.
+ */
+public record InventoryEntry(int productId, String name, long priceCents, int[] quantities) {
+
+    public static final int NOT_STOCKED = -1;
+
+    private static final Location[] LOCATIONS = Location.values();
+
+    public static InventoryEntry from(List<Product> products) {
+        Product first = products.get(0);
+        int[] quantities = new int[LOCATIONS.length];
+        Arrays.fill(quantities, NOT_STOCKED);
+
+        for (Product product : products) {
+            quantities[product.getProductCk().getLocation().ordinal()] = product.getQuantity();
+        }
+
+        return new InventoryEntry(first.getProductCk().getId(), first.getName(), first.getPriceCents(), quantities);
+    }
+
+    public boolean isStockedAt(Location location) {
+        return quantities[location.ordinal()] != NOT_STOCKED;
+    }
+
+    public int quantityAt(Location location) {
+        return Math.max(quantities[location.ordinal()], 0);
+    }
+
+    public int totalQuantity() {
+        int total = 0;
+        for (int quantity : quantities) {
+            if (quantity > 0) total += quantity;
+        }
+        return total;
+    }
+
+    public InventoryEntry withDecrement(Location location, int quantity) {
+        int[] decremented = quantities.clone();
+        decremented[location.ordinal()] -= quantity;
+        return new InventoryEntry(productId, name, priceCents, decremented);
+    }
+
+    public List<Product> toProducts() {
+        List<Product> products = new ArrayList<>(LOCATIONS.length);
+
+        for (Location location : LOCATIONS) {
+            if (isStockedAt(location)) {
+                products.add(new Product(new ProductCK(productId, location), name, priceCents, quantities[location.ordinal()]));
+            }
+        }
+
+        return products;
+    }
+}
@@ -0,0 +1,268 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Opt-in ({@code inventory.ledger.enabled}) append-only history of stock changes made by order placement.
+ * <p>
+ * Every placement appends one {@link LedgerEvent.Type#RESERVED} event per requested product, placed or not, and
+ * once its stock has committed one {@link LedgerEvent.Type#DECREMENTED} event per product location it took stock
+ * from. All events of a placement go to the current segment in one sequential write while the basket's stripes
+ * are still held, so per product location the ledger has the same order as the database.
+ * <p>
+ * Every {@code inventory.ledger.snapshot-every} events the per-location quantities are written to a snapshot and a
+ * new segment is started. On startup the latest snapshot plus the decrements after it are written back to the
+ * product table; on the very first start the product table itself is the initial snapshot. Stock changed outside
+ * of order placement is not recorded.
+ */
+@Component
+public class InventoryLedger implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryLedger.class);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int snapshotEvery;
+    private final boolean forceWrites;
+
+    private final ProductRepository productRepository;
+    private final InventoryCache inventoryCache;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<ProductCK, Integer> quantities = new HashMap<>();
+    private FileChannel segment;
+    private long lastSequence;
+    private int eventsSinceSnapshot;
+
+    private final Counter events;
+    private final Counter snapshots;
+    private final Counter writeFailures;
+
+    public InventoryLedger(ProductRepository productRepository,
+                           InventoryCache inventoryCache,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${inventory.ledger.enabled:false}") boolean enabled,
+                           @Value("${inventory.ledger.directory:ledger}") Path directory,
+                           @Value("${inventory.ledger.snapshot-every:100000}") int snapshotEvery,
+                           @Value("${inventory.ledger.force-writes:false}") boolean forceWrites) {
+        this.productRepository = productRepository;
+        this.inventoryCache = inventoryCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.directory = directory;
+        this.snapshotEvery = snapshotEvery;
+        this.forceWrites = forceWrites;
+
+        this.events = meterRegistry.counter("inventory.ledger.events");
+        this.snapshots = meterRegistry.counter("inventory.ledger.snapshots");
+        this.writeFailures = meterRegistry.counter("inventory.ledger.write.failures");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // runs once every singleton, including the data.sql initializer, is ready and before the web server starts
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) return;
+
+        try {
+            restore();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not restore the inventory ledger from " + directory.toAbsolutePath(), e);
+        }
+    }
+
+    public void record(Map<Integer, Integer> basket, List<StockDecrement> decrements) {
+        record(List.of(basket), decrements);
+    }
+
+    // must be called after the decrements have committed and while their stripes are still held
+    public void record(List<Map<Integer, Integer>> baskets, List<StockDecrement> decrements) {
+        if (!enabled) return;
+
+        int count = decrements.size();
+        for (Map<Integer, Integer> basket : baskets) count += basket.size();
+        ByteBuffer buffer = ByteBuffer.allocate(count * LedgerEvent.SIZE);
+        long now = System.currentTimeMillis();
+
+        lock.lock();
+        try {
+            for (Map<Integer, Integer> basket : baskets) {
+                long basketId = lastSequence + 1;
+                for (Map.Entry<Integer, Integer> line : basket.entrySet()) {
+                    new LedgerEvent(++lastSequence, now, LedgerEvent.Type.RESERVED, basketId, line.getKey(), null, line.getValue())
+                            .writeTo(buffer);
+                }
+            }
+            for (StockDecrement decrement : decrements) {
+                new LedgerEvent(++lastSequence, now, LedgerEvent.Type.DECREMENTED, 0, decrement.productId(), decrement.location(), decrement.quantity())
+                        .writeTo(buffer);
+                quantities.merge(new ProductCK(decrement.productId(), decrement.location()), -decrement.quantity(), Integer::sum);
+            }
+
+            buffer.flip();
+            write(buffer);
+            events.increment(count);
+
+            eventsSinceSnapshot += count;
+            if (eventsSinceSnapshot >= snapshotEvery) {
+                snapshot();
+                // the snapshot covers everything so far, new events go to a new segment
+                rollSegment();
+            }
+        } catch (IOException e) {
+            // the stock has already committed, so the placement stands; the next snapshot still has its quantities
+            writeFailures.increment();
+            log.error("Failed to append {} events to the inventory ledger", count, e);
+            rollSegmentAfterFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the current per-location quantities as the ledger sees them
+    public Map<ProductCK, Integer> quantities() {
+        lock.lock();
+        try {
+            return Map.copyOf(quantities);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled) return;
+
+        lock.lock();
+        try {
+            if (eventsSinceSnapshot > 0) snapshot();
+            if (segment != null) segment.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void restore() throws IOException {
+        lock.lock();
+        try {
+            Files.createDirectories(directory);
+            Optional<LedgerFiles.Snapshot> snapshot = LedgerFiles.latestSnapshot(directory);
+
+            List<Product> products = productRepository.findAll();
+
+            if (snapshot.isEmpty()) {
+                if (!LedgerFiles.segments(directory).isEmpty()) {
+                    throw new IllegalStateException("Inventory ledger " + directory.toAbsolutePath() + " has segments but no readable snapshot");
+                }
+                products.forEach(product -> quantities.put(product.getProductCk(), product.getQuantity()));
+                LedgerFiles.writeSnapshot(directory, new LedgerFiles.Snapshot(0, quantities));
+                log.info("Started inventory ledger in {} from {} product locations", directory.toAbsolutePath(), quantities.size());
+            } else {
+                quantities.putAll(snapshot.get().quantities());
+                lastSequence = snapshot.get().sequence();
+                int replayed = replayTail(snapshot.get().sequence());
+                // products added to the catalogue since then start out with their stock from the table
+                products.forEach(product -> quantities.putIfAbsent(product.getProductCk(), product.getQuantity()));
+                writeQuantities();
+                log.info("Restored {} product locations from inventory ledger snapshot {} and {} later events",
+                        quantities.size(), snapshot.get().sequence(), replayed);
+            }
+
+            // every start gets its own segment, so nothing is ever appended behind a torn record
+            rollSegment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int replayTail(long snapshotSequence) throws IOException {
+        int replayed = 0;
+
+        for (Path file : LedgerFiles.segments(directory)) {
+            int[] applied = new int[1];
+            LedgerFiles.SegmentRead read = LedgerFiles.readSegment(file, snapshotSequence, event -> {
+                if (event.type() == LedgerEvent.Type.DECREMENTED) {
+                    quantities.merge(event.productCk(), -event.quantity(), Integer::sum);
+                }
+                applied[0]++;
+            });
+            lastSequence = Math.max(lastSequence, read.lastSequence());
+            replayed += applied[0];
+
+            if (read.validBytes() < Files.size(file)) {
+                log.warn("Dropping {} bytes of incomplete events at the end of {}", Files.size(file) - read.validBytes(), file);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(read.validBytes());
+                }
+            }
+        }
+
+        return replayed;
+    }
+
+    private void writeQuantities() {
+        transactionTemplate.executeWithoutResult(status -> quantities.forEach((productCk, quantity) ->
+                productRepository.updateQuantity(productCk.getId(), productCk.getLocation(), quantity)));
+        inventoryCache.evictAll();
+    }
+
+    private void snapshot() throws IOException {
+        LedgerFiles.writeSnapshot(directory, new LedgerFiles.Snapshot(lastSequence, quantities));
+        snapshots.increment();
+        eventsSinceSnapshot = 0;
+    }
+
+    // a segment named after the next sequence can only exist without any intact event in it, so it is reused
+    private void rollSegment() throws IOException {
+        if (segment != null) segment.close();
+        segment = FileChannel.open(LedgerFiles.segment(directory, lastSequence + 1),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // a partial write would hide every later event of the segment from readers, so continue in a new one
+    private void rollSegmentAfterFailure() {
+        try {
+            rollSegment();
+        } catch (IOException e) {
+            log.error("Failed to start a new inventory ledger segment", e);
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        if (forceWrites) {
+            segment.force(false);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+/**
+ * The projection as one {@code order_view} row per order: the totals, the lines packed by {@link OrderLineCodec}
+ * and the product names of the lines as they were when the order was placed, so a read is a single-table lookup.
+ * <p>
+ * The table lives in the database of {@code orders.read-model.jdbc.url}, e.g. a replica or a database of its own,
+ * and is created there if missing. Without a url it is kept next to the write side tables.
+ */
+@Component
+@ConditionalOnProperty(name = "orders.read-model.store", havingValue = OrderReadStore.JDBC)
+public class JdbcOrderReadStore implements OrderReadStore {
+
+    private static final String CREATE_TABLE =
+            "create table if not exists order_view (id int primary key, placed_at timestamp not null, "
+                    + "order_cost_cents bigint not null, discount_cents bigint not null, delivery_cost int, delivery_time int, "
+                    + "lines varbinary(65535) not null, line_names varchar(65535) not null)";
+    private static final String UPSERT =
+            "merge into order_view (id, placed_at, order_cost_cents, discount_cents, delivery_cost, delivery_time, lines, line_names) "
+                    + "key (id) values (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String COLUMNS =
+            "select id, placed_at, order_cost_cents, discount_cents, delivery_cost, delivery_time, lines, line_names from order_view";
+
+    // names are joined with the ASCII unit separator, which product names do not contain
+    private static final String NAME_SEPARATOR = "\u001F";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource ownDataSource;
+
+    public JdbcOrderReadStore(JdbcTemplate primary,
+                              @Value("${orders.read-model.jdbc.url:}") String url,
+                              @Value("${orders.read-model.jdbc.username:sa}") String username,
+                              @Value("${orders.read-model.jdbc.password:}") String password) {
+        if (url.isBlank()) {
+            this.ownDataSource = null;
+            this.jdbcTemplate = primary;
+        } else {
+            this.ownDataSource = DataSourceBuilder.create().url(url).username(username).password(password).build();
+            this.jdbcTemplate = new JdbcTemplate(ownDataSource);
+        }
+
+        jdbcTemplate.execute(CREATE_TABLE);
+    }
+
+    @Override
+    public void upsertAll(List<Order> orders) {
+        List<Object[]> rows = new ArrayList<>(orders.size());
+
+        for (Order order : orders) {
+            StringJoiner names = new StringJoiner(NAME_SEPARATOR);
+            for (OrderProduct line : order.getOrderProducts()) names.add(line.getName() == null ? "" : line.getName());
+
+            rows.add(new Object[]{
+                    order.getId(),
+                    new Timestamp(order.getTimestamp().getTime()),
+                    order.getOrderCostCents(),
+                    order.getDiscountCents(),
+                    order.getDeliveryCost(),
+                    order.getDeliveryTime(),
+                    OrderLineCodec.encode(order.getOrderProducts()),
+                    names.toString()
+            });
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT, rows);
+    }
+
+    @Override
+    public Optional<Order> findById(int orderId) {
+        return jdbcTemplate.query(COLUMNS + " where id = ?", VIEW, orderId).stream().findFirst();
+    }
+
+    @Override
+    public List<Order> findAll() {
+        return jdbcTemplate.query(COLUMNS + " order by id", VIEW);
+    }
+
+    @Override
+    public List<Order> findAfter(int afterId, Date from, Date to, int limit) {
+        return jdbcTemplate.query(
+                COLUMNS + " where id > ? and placed_at >= ? and placed_at < ? order by id limit ?",
+                VIEW,
+                afterId, new Timestamp(from.getTime()), new Timestamp(to.getTime()), limit
+        );
+    }
+
+    @Override
+    public long count() {
+        Long count = jdbcTemplate.queryForObject("select count(*) from order_view", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (ownDataSource instanceof Closeable closeable) closeable.close();
+    }
+
+    private static final RowMapper<Order> VIEW = (rs, rowNum) -> {
+        List<OrderProduct> lines = OrderLineCodec.decode(rs.getBytes("lines"), productId -> null);
+        String[] names = rs.getString("line_names").split(NAME_SEPARATOR, -1);
+        for (int i = 0; i < lines.size(); i++) {
+            lines.get(i).setName(names[i].isEmpty() ? null : names[i]);
+        }
+
+        return new Order(
+                rs.getInt("id"),
+                new Date(rs.getTimestamp("placed_at").getTime()),
+                lines,
+                rs.getLong("order_cost_cents"),
+                rs.getLong("discount_cents"),
+                rs.getInt("delivery_cost"),
+                rs.getInt("delivery_time"),
+                null,
+                null
+        );
+    };
+}
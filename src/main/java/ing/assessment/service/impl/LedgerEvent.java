@@ -0,0 +1,70 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * One record of the {@link InventoryLedger}. A {@link Type#RESERVED} event is one line of a requested basket, all
+ * lines of a basket share its {@code basketId} and have no location. A {@link Type#DECREMENTED} event is stock that
+ * was taken from one product location.
+ * <p>
+ * Stored as a fixed-size record with a trailing CRC32, so a torn write at the end of a segment is detected and
+ * dropped on read.
+ */
+public record LedgerEvent(long sequence, long timestamp, Type type, long basketId, int productId, Location location, int quantity) {
+
+    public enum Type { RESERVED, DECREMENTED }
+
+    // sequence, timestamp, type, basketId, productId, location, quantity, crc
+    public static final int SIZE = 8 + 8 + 1 + 8 + 4 + 1 + 4 + 4;
+
+    private static final Type[] TYPES = Type.values();
+    private static final Location[] LOCATIONS = Location.values();
+
+    public ProductCK productCk() {
+        return new ProductCK(productId, location);
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putLong(sequence)
+                .putLong(timestamp)
+                .put((byte) type.ordinal())
+                .putLong(basketId)
+                .putInt(productId)
+                .put((byte) (location == null ? -1 : location.ordinal()))
+                .putInt(quantity);
+        buffer.putInt(checksum(buffer, start));
+    }
+
+    // null if the record at the buffer's position is incomplete or does not match its checksum
+    static LedgerEvent readFrom(ByteBuffer buffer) {
+        if (buffer.remaining() < SIZE) return null;
+
+        int start = buffer.position();
+        long sequence = buffer.getLong();
+        long timestamp = buffer.getLong();
+        int type = buffer.get();
+        long basketId = buffer.getLong();
+        int productId = buffer.getInt();
+        int location = buffer.get();
+        int quantity = buffer.getInt();
+        int expected = checksum(buffer, start);
+        if (buffer.getInt() != expected || type < 0 || type >= TYPES.length || location >= LOCATIONS.length) {
+            buffer.position(start);
+            return null;
+        }
+
+        return new LedgerEvent(sequence, timestamp, TYPES[type], basketId, productId,
+                location < 0 ? null : LOCATIONS[location], quantity);
+    }
+
+    private static int checksum(ByteBuffer buffer, int start) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start).limit(buffer.position()));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,176 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * File layout of an {@link InventoryLedger} directory, without any Spring dependency so that tools can read a
+ * ledger offline. Events live in segments named {@code segment-<first sequence>.log}, quantities in snapshots named
+ * {@code snapshot-<last sequence applied>.bin}.
+ */
+public final class LedgerFiles {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    private static final int READ_BUFFER_EVENTS = 4096;
+    // productId, location, quantity
+    private static final int SNAPSHOT_ENTRY_SIZE = 4 + 1 + 4;
+    private static final Location[] LOCATIONS = Location.values();
+
+    private LedgerFiles() {
+    }
+
+    public record Snapshot(long sequence, Map<ProductCK, Integer> quantities) {}
+
+    public static Path segment(Path directory, long firstSequence) {
+        return directory.resolve(SEGMENT_PREFIX + firstSequence + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Reads every intact event with a sequence above {@code afterSequence}, oldest first, and returns the highest
+     * sequence read or {@code afterSequence} if there was none.
+     */
+    public static long readEvents(Path directory, long afterSequence, Consumer<LedgerEvent> consumer) throws IOException {
+        long last = afterSequence;
+        for (Path segment : segments(directory)) {
+            last = Math.max(last, readSegment(segment, afterSequence, consumer).lastSequence());
+        }
+        return last;
+    }
+
+    // validBytes is the length of the intact prefix, anything after it is a torn or corrupt write
+    record SegmentRead(long validBytes, long lastSequence) {}
+
+    static SegmentRead readSegment(Path segment, long afterSequence, Consumer<LedgerEvent> consumer) throws IOException {
+        long validBytes = 0;
+        long lastSequence = afterSequence;
+        ByteBuffer buffer = ByteBuffer.allocate(LedgerEvent.SIZE * READ_BUFFER_EVENTS);
+
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                buffer.flip();
+                LedgerEvent event;
+                while ((event = LedgerEvent.readFrom(buffer)) != null) {
+                    validBytes += LedgerEvent.SIZE;
+                    if (event.sequence() > afterSequence) {
+                        consumer.accept(event);
+                        lastSequence = event.sequence();
+                    }
+                }
+                // a full record that did not verify ends the segment, a partial one may still be completed
+                if (buffer.remaining() >= LedgerEvent.SIZE || channel.position() == channel.size()) break;
+                buffer.compact();
+            }
+        }
+
+        return new SegmentRead(validBytes, lastSequence);
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        return files(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    }
+
+    public static Optional<Snapshot> latestSnapshot(Path directory) throws IOException {
+        List<Path> snapshots = files(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Optional<Snapshot> snapshot = readSnapshot(snapshots.get(i));
+            if (snapshot.isPresent()) return snapshot;
+        }
+        return Optional.empty();
+    }
+
+    // written to a temporary file first, so a crash never leaves a half written snapshot behind
+    static void writeSnapshot(Path directory, Snapshot snapshot) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + snapshot.quantities().size() * SNAPSHOT_ENTRY_SIZE + 4);
+        buffer.putLong(snapshot.sequence()).putInt(snapshot.quantities().size());
+        snapshot.quantities().forEach((productCk, quantity) -> buffer
+                .putInt(productCk.getId())
+                .put((byte) productCk.getLocation().ordinal())
+                .putInt(quantity));
+        buffer.putInt(checksum(buffer.array(), buffer.position()));
+        buffer.flip();
+
+        Path target = directory.resolve(SNAPSHOT_PREFIX + snapshot.sequence() + SNAPSHOT_SUFFIX);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        List<Path> snapshots = files(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = 0; i < snapshots.size() - SNAPSHOTS_KEPT; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+
+    private static Optional<Snapshot> readSnapshot(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 8 + 4 + 4) return Optional.empty();
+
+        long sequence = buffer.getLong();
+        int entries = buffer.getInt();
+        if (entries < 0 || buffer.remaining() != entries * SNAPSHOT_ENTRY_SIZE + 4) return Optional.empty();
+
+        Map<ProductCK, Integer> quantities = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            int productId = buffer.getInt();
+            int location = buffer.get();
+            int quantity = buffer.getInt();
+            if (location < 0 || location >= LOCATIONS.length) return Optional.empty();
+            quantities.put(new ProductCK(productId, LOCATIONS[location]), quantity);
+        }
+
+        int expected = checksum(buffer.array(), buffer.position());
+        return buffer.getInt() == expected ? Optional.of(new Snapshot(sequence, quantities)) : Optional.empty();
+    }
+
+    // sorted by the sequence in their name
+    private static List<Path> files(Path directory, String prefix, String suffix) throws IOException {
+        if (!Files.isDirectory(directory)) return List.of();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> matching = new ArrayList<>(files
+                    .filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .toList());
+            matching.sort(Comparator.comparingLong(file -> sequenceOf(file, prefix, suffix)));
+            return matching;
+        }
+    }
+
+    private static long sequenceOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,15 @@
+package ing.assessment.service.impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// fills every product from the first location onwards, however many locations that ends up using
+@Component
+@ConditionalOnProperty(name = "orders.allocation.strategy", havingValue = AllocationStrategy.LOCATION_ORDER)
+public class LocationOrderAllocationStrategy implements AllocationStrategy {
+
+    @Override
+    public int chooseLocations(int[][] stock, int[] demand) {
+        return demand.length == 0 ? 0 : AllocationStrategy.allLocations(stock[0].length);
+    }
+}
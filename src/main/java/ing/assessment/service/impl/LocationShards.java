@@ -0,0 +1,193 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.exception.OutOfStockException;
+import ing.assessment.exception.ProductNotFoundException;
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in ({@code inventory.sharding.enabled}) partitioning of the available stock by {@link Location}. Every
+ * warehouse is a {@link WarehouseShard} that owns the stock of its location and only changes it on its own writer
+ * thread, so orders shipping from different warehouses never wait for each other and nothing is locked.
+ * <p>
+ * Orders are reserved in two phases. {@link #reserve} allocates the basket against the stock the shards have
+ * available and asks every shard it ships from to hold its lines, a shard refuses if it no longer has them. After a
+ * refusal the holds that were granted are released and the basket is allocated again, at most
+ * {@code inventory.sharding.max-attempts} times. With every hold granted the caller writes the order and its stock
+ * decrements to the database, then {@link #commit}s the holds, or {@link #abort}s them if that failed. Held units
+ * are not available to other orders, so no unit is granted twice.
+ * <p>
+ * The product table stays the source of truth and its conditional decrements the final check. A shard is seeded
+ * with a product's stock from the inventory cache when it is first asked for it, and forgets the product whenever
+ * the cache evicts it.
+ */
+@Component
+public class LocationShards implements InventoryCache.Listener {
+
+    private static final Location[] LOCATIONS = Location.values();
+
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final WarehouseShard[] shards = new WarehouseShard[LOCATIONS.length];
+    private final AtomicLong reservationIds = new AtomicLong();
+
+    private final Counter refusals;
+    private final Counter aborts;
+
+    public LocationShards(InventoryCache inventoryCache,
+                          MeterRegistry meterRegistry,
+                          @Value("${inventory.sharding.enabled:false}") boolean enabled,
+                          @Value("${inventory.sharding.max-attempts:3}") int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("inventory.sharding.max-attempts must be positive, was: " + maxAttempts);
+        }
+
+        this.enabled = enabled;
+        this.maxAttempts = maxAttempts;
+        this.refusals = meterRegistry.counter("inventory.shards.refusals");
+        this.aborts = meterRegistry.counter("inventory.shards.aborts");
+
+        if (enabled) {
+            for (Location location : LOCATIONS) {
+                WarehouseShard shard = new WarehouseShard(location);
+                shards[location.ordinal()] = shard;
+                Gauge.builder("inventory.shards.queued", shard, WarehouseShard::queued)
+                        .tag("location", location.name())
+                        .register(meterRegistry);
+            }
+            inventoryCache.addListener(this);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Phase one: holds the stock of a basket. {@code catalogue} holds the cached entry of every basket product, for
+     * names, prices and the stock of products a shard has not seen yet; {@code allocation} picks the locations from
+     * the available stock it is given and throws if the basket cannot be served.
+     */
+    public ShardReservation reserve(Map<Integer, InventoryEntry> catalogue, Allocation allocation)
+            throws ProductNotFoundException, OutOfStockException {
+        for (int attempt = 1; ; attempt++) {
+            List<StockDecrement> decrements = allocation.allocate(available(catalogue));
+
+            ShardReservation reservation = prepare(decrements, catalogue);
+            if (reservation != null) return reservation;
+
+            refusals.increment();
+            if (attempt == maxAttempts) {
+                throw new OutOfStockException("There is not enough stock of the requested products, stock changed while placing the order");
+            }
+        }
+    }
+
+    // phase two once the decrements have been committed to the database
+    public void commit(ShardReservation reservation) {
+        for (Location location : reservation.locations()) {
+            shards[location.ordinal()].commit(reservation.id());
+        }
+    }
+
+    // hands the held units back; returns once every shard has them available again
+    public void abort(ShardReservation reservation) {
+        aborts.increment();
+        release(reservation.id(), reservation.locations());
+    }
+
+    @Override
+    public void committed(List<StockDecrement> decrements) {
+        // the shards took these units when they were held
+    }
+
+    @Override
+    public void evicted(Integer productId) {
+        for (WarehouseShard shard : shards) shard.forget(productId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) return;
+        for (WarehouseShard shard : shards) shard.shutdown();
+    }
+
+    // the cached entries with the stock of every location replaced by what its shard has available
+    Map<Integer, InventoryEntry> available(Map<Integer, InventoryEntry> catalogue) {
+        Map<Integer, InventoryEntry> available = new HashMap<>();
+
+        catalogue.forEach((productId, entry) -> {
+            int[] quantities = entry.quantities().clone();
+            for (Location location : LOCATIONS) {
+                if (!entry.isStockedAt(location)) continue;
+
+                Integer held = shards[location.ordinal()].available(productId);
+                if (held != null) quantities[location.ordinal()] = held;
+            }
+            available.put(productId, new InventoryEntry(productId, entry.name(), entry.priceCents(), quantities));
+        });
+
+        return available;
+    }
+
+    // null if any shard refused, in which case no shard holds anything
+    private ShardReservation prepare(List<StockDecrement> decrements, Map<Integer, InventoryEntry> catalogue) {
+        Map<Location, List<StockDecrement>> linesByShard = new EnumMap<>(Location.class);
+        for (StockDecrement decrement : decrements) {
+            linesByShard.computeIfAbsent(decrement.location(), location -> new ArrayList<>()).add(decrement);
+        }
+
+        long id = reservationIds.incrementAndGet();
+        Map<Location, CompletableFuture<Boolean>> votes = new EnumMap<>(Location.class);
+        linesByShard.forEach((location, lines) -> {
+            int[] seeds = new int[lines.size()];
+            for (int i = 0; i < seeds.length; i++) {
+                seeds[i] = catalogue.get(lines.get(i).productId()).quantityAt(location);
+            }
+            votes.put(location, shards[location.ordinal()].prepare(id, lines, seeds));
+        });
+
+        List<Location> granted = new ArrayList<>();
+        boolean refused = false;
+        for (Map.Entry<Location, CompletableFuture<Boolean>> vote : votes.entrySet()) {
+            if (vote.getValue().join()) {
+                granted.add(vote.getKey());
+            } else {
+                refused = true;
+            }
+        }
+
+        if (!refused) return new ShardReservation(id, decrements, List.copyOf(linesByShard.keySet()));
+        release(id, granted);
+        return null;
+    }
+
+    private void release(long id, List<Location> locations) {
+        CompletableFuture<?>[] released = new CompletableFuture<?>[locations.size()];
+        for (int i = 0; i < released.length; i++) {
+            released[i] = shards[locations.get(i).ordinal()].abort(id);
+        }
+        CompletableFuture.allOf(released).join();
+    }
+
+    @FunctionalInterface
+    public interface Allocation {
+        List<StockDecrement> allocate(Map<Integer, InventoryEntry> available) throws ProductNotFoundException, OutOfStockException;
+    }
+
+    /** The stock held for one basket across the shards it ships from. */
+    public record ShardReservation(long id, List<StockDecrement> decrements, List<Location> locations) {}
+}
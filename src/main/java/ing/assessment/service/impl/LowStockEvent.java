@@ -0,0 +1,11 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.ProductCK;
+
+/**
+ * Published by the {@link StockForecaster} when a product location is forecast to run out within
+ * {@code inventory.forecast.low-stock-days}. It is published once, and again only after the forecast has
+ * recovered in between.
+ */
+public record LowStockEvent(ProductCK productCk, int quantity, double dailyDemand, double daysUntilStockOut) {
+}
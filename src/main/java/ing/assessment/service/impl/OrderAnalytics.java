@@ -0,0 +1,251 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.dto.LineTotalsDTO;
+import ing.assessment.dto.OrderTotalsDTO;
+import ing.assessment.model.Location;
+import ing.assessment.model.Money;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Running order totals per time bucket, and within each bucket per product and per location.
+ * <p>
+ * Every placed order is added once its transaction has committed, so a report folds the buckets of its range
+ * instead of reading orders. {@link #rebuild} recomputes all buckets from the order history, e.g. after a restart
+ * or a backfill; orders placed while it runs are counted exactly once.
+ */
+@Component
+public class OrderAnalytics {
+
+    private static final Location[] LOCATIONS = Location.values();
+
+    private final long bucketMillis;
+
+    private volatile NavigableMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+    private volatile Map<Integer, Order> recordedDuringRebuild;
+
+    // record() shares this lock, a rebuild takes it exclusively only to swap in the rebuilt buckets
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    public OrderAnalytics(@Value("${analytics.bucket-minutes:60}") int bucketMinutes) {
+        if (bucketMinutes <= 0) {
+            throw new IllegalArgumentException("analytics.bucket-minutes must be positive, was: " + bucketMinutes);
+        }
+
+        this.bucketMillis = TimeUnit.MINUTES.toMillis(bucketMinutes);
+    }
+
+    // must only be called once the order's stock has been committed
+    public void record(Order order) {
+        swapLock.readLock().lock();
+        try {
+            Map<Integer, Order> pending = recordedDuringRebuild;
+            if (pending != null) pending.put(order.getId(), order);
+
+            add(buckets, order);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    public void recordAll(Collection<Order> orders) {
+        orders.forEach(this::record);
+    }
+
+    public long rebuild(Consumer<Consumer<Order>> history) {
+        return rebuild(history, List::of);
+    }
+
+    /**
+     * Replaces all buckets with totals computed from {@code history}, which must feed every persisted order to
+     * the consumer it is given, and from {@code unpersisted}, the recorded orders whose rows may not be written yet.
+     * Reports keep being served from the previous buckets until the scan has finished.
+     */
+    public long rebuild(Consumer<Consumer<Order>> history, Supplier<Collection<Order>> unpersisted) {
+        rebuildLock.lock();
+        try {
+            Map<Integer, Order> pending = new ConcurrentHashMap<>();
+            recordedDuringRebuild = pending;
+            // taken once orders are collected in pending and before the scan: an order recorded earlier is either
+            // still unpersisted here or already has its row for the scan to find
+            unpersisted.get().forEach(order -> pending.put(order.getId(), order));
+
+            NavigableMap<Long, Bucket> rebuilt = new ConcurrentSkipListMap<>();
+            BitSet scannedIds = new BitSet();
+            long[] scanned = {0};
+
+            try {
+                history.accept(order -> {
+                    add(rebuilt, order);
+                    scannedIds.set(order.getId());
+                    scanned[0]++;
+                });
+            } catch (RuntimeException e) {
+                recordedDuringRebuild = null;
+                throw e;
+            }
+
+            swapLock.writeLock().lock();
+            try {
+                // orders placed during the scan, unless the scan already saw their rows
+                for (Order order : pending.values()) {
+                    if (!scannedIds.get(order.getId())) {
+                        add(rebuilt, order);
+                        scanned[0]++;
+                    }
+                }
+                buckets = rebuilt;
+                recordedDuringRebuild = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            return scanned[0];
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    public OrderTotalsDTO totals(Date from, Date to) {
+        OrderTotals totals = new OrderTotals();
+        range(from, to).values().forEach(bucket -> totals.add(bucket.totals));
+        return totals.toDTO();
+    }
+
+    // keyed by the start of each bucket, in time order, empty buckets are left out
+    public Map<Date, OrderTotalsDTO> totalsByBucket(Date from, Date to) {
+        Map<Date, OrderTotalsDTO> totals = new LinkedHashMap<>();
+        range(from, to).forEach((start, bucket) -> totals.put(new Date(start), bucket.totals.toDTO()));
+        return totals;
+    }
+
+    public Map<Integer, LineTotalsDTO> totalsByProduct(Date from, Date to) {
+        Map<Integer, LineTotals> totals = new TreeMap<>();
+        range(from, to).values().forEach(bucket -> bucket.byProduct.forEach(
+                (productId, lines) -> totals.computeIfAbsent(productId, id -> new LineTotals()).add(lines)));
+
+        Map<Integer, LineTotalsDTO> result = new LinkedHashMap<>();
+        totals.forEach((productId, lines) -> result.put(productId, lines.toDTO()));
+        return result;
+    }
+
+    public Map<Location, LineTotalsDTO> totalsByLocation(Date from, Date to) {
+        LineTotals[] totals = new LineTotals[LOCATIONS.length];
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = new LineTotals();
+        }
+        range(from, to).values().forEach(bucket -> {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i].add(bucket.byLocation[i]);
+            }
+        });
+
+        Map<Location, LineTotalsDTO> result = new EnumMap<>(Location.class);
+        for (Location location : LOCATIONS) {
+            result.put(location, totals[location.ordinal()].toDTO());
+        }
+        return result;
+    }
+
+    // buckets starting in [from, to), the bucket holding "from" included
+    private NavigableMap<Long, Bucket> range(Date from, Date to) {
+        long fromBucket = from == null ? Long.MIN_VALUE : bucketOf(from.getTime());
+        long toMillis = to == null ? Long.MAX_VALUE : to.getTime();
+        if (fromBucket >= toMillis) return new TreeMap<>();
+
+        return buckets.subMap(fromBucket, true, toMillis, false);
+    }
+
+    private void add(NavigableMap<Long, Bucket> target, Order order) {
+        Bucket bucket = target.computeIfAbsent(bucketOf(order.getTimestamp().getTime()), start -> new Bucket());
+        long revenueCents = 0;
+
+        for (OrderProduct line : order.getOrderProducts()) {
+            bucket.byProduct.computeIfAbsent(line.getProductId(), id -> new LineTotals()).add(line);
+            if (line.getLocation() != null) {
+                bucket.byLocation[line.getLocation().ordinal()].add(line);
+            }
+            revenueCents += line.getTotalCostCents();
+        }
+
+        bucket.totals.orders.increment();
+        bucket.totals.revenueCents.add(revenueCents);
+        bucket.totals.discountCents.add(order.getDiscountCents());
+        bucket.totals.deliveryCost.add(order.getDeliveryCost());
+    }
+
+    private long bucketOf(long millis) {
+        return Math.floorDiv(millis, bucketMillis) * bucketMillis;
+    }
+
+    private static final class Bucket {
+        private final OrderTotals totals = new OrderTotals();
+        private final Map<Integer, LineTotals> byProduct = new ConcurrentHashMap<>();
+        private final LineTotals[] byLocation = new LineTotals[LOCATIONS.length];
+
+        private Bucket() {
+            for (int i = 0; i < byLocation.length; i++) {
+                byLocation[i] = new LineTotals();
+            }
+        }
+    }
+
+    private static final class OrderTotals {
+        private final LongAdder orders = new LongAdder();
+        private final LongAdder revenueCents = new LongAdder();
+        private final LongAdder discountCents = new LongAdder();
+        // delivery costs are whole amounts
+        private final LongAdder deliveryCost = new LongAdder();
+
+        private void add(OrderTotals other) {
+            orders.add(other.orders.sum());
+            revenueCents.add(other.revenueCents.sum());
+            discountCents.add(other.discountCents.sum());
+            deliveryCost.add(other.deliveryCost.sum());
+        }
+
+        private OrderTotalsDTO toDTO() {
+            return new OrderTotalsDTO(orders.sum(), Money.toAmount(revenueCents.sum()), Money.toAmount(discountCents.sum()), deliveryCost.sum());
+        }
+    }
+
+    private static final class LineTotals {
+        private final LongAdder units = new LongAdder();
+        private final LongAdder revenueCents = new LongAdder();
+
+        private void add(OrderProduct line) {
+            units.add(line.getQuantity());
+            revenueCents.add(line.getTotalCostCents());
+        }
+
+        private void add(LineTotals other) {
+            units.add(other.units.sum());
+            revenueCents.add(other.revenueCents.sum());
+        }
+
+        private LineTotalsDTO toDTO() {
+            return new LineTotalsDTO(units.sum(), Money.toAmount(revenueCents.sum()));
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderIdempotencyKey;
+import ing.assessment.exception.InvalidOrderException;
+import ing.assessment.exception.OutOfStockException;
+import ing.assessment.exception.ProductNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Deduplicates order placements by the client's {@code Idempotency-Key}.
+ * <p>
+ * Recently used keys are kept in memory together with the order they produced, at most
+ * {@code orders.idempotency.max-entries} of them and each for {@code orders.idempotency.ttl}. Every key is also
+ * inserted into {@code order_idempotency_keys} by the transaction that places its order, so a retry whose key has
+ * already left the memory, or that reaches another instance, still gets the original order back. Requests that
+ * arrive with the same key while it is being placed wait for that placement instead of running their own.
+ */
+@Component
+public class OrderIdempotency {
+
+    static final int MAX_KEY_LENGTH = 255;
+    private static final int PURGE_EVERY = 1000;
+
+    private static final String INSERT_KEY =
+            "insert into order_idempotency_keys (idempotency_key, order_id, basket_digest, created_at) values (?, ?, ?, ?)";
+    private static final String DELETE_EXPIRED_KEY =
+            "delete from order_idempotency_keys where idempotency_key = ? and created_at < ?";
+    private static final String DELETE_EXPIRED =
+            "delete from order_idempotency_keys where created_at < ?";
+
+    private final OrderIdempotencyKeyRepository keyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxEntries;
+    private final Duration ttl;
+
+    private final Map<String, PlacedOrder> recent = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final Map<String, CompletableFuture<PlacedOrder>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger placedSincePurge = new AtomicInteger();
+
+    private final Counter cacheHits;
+    private final Counter inFlightHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+
+    public OrderIdempotency(OrderIdempotencyKeyRepository keyRepository,
+                            JdbcTemplate jdbcTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${orders.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${orders.idempotency.ttl:24h}") Duration ttl) {
+        this.keyRepository = keyRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+
+        this.cacheHits = meterRegistry.counter("orders.idempotency.hits", "source", "cache");
+        this.inFlightHits = meterRegistry.counter("orders.idempotency.hits", "source", "in-flight");
+        this.databaseHits = meterRegistry.counter("orders.idempotency.hits", "source", "database");
+        this.misses = meterRegistry.counter("orders.idempotency.misses");
+        Gauge.builder("orders.idempotency.cache.size", recent, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns the order placed earlier with this key, or runs the placement if there is none. The placement has
+     * to {@link #record} the key in the transaction that places the order.
+     */
+    public Order placeOnce(String key,
+                           Map<Integer, Integer> basket,
+                           Placement placement,
+                           Function<Integer, Optional<Order>> orderLoader)
+            throws ProductNotFoundException, OutOfStockException, InvalidOrderException {
+        validate(key);
+        String basketDigest = basketDigest(basket);
+
+        PlacedOrder cached = cached(key);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached.orderFor(basketDigest);
+        }
+
+        CompletableFuture<PlacedOrder> placing = new CompletableFuture<>();
+        CompletableFuture<PlacedOrder> running = inFlight.putIfAbsent(key, placing);
+        if (running != null) {
+            inFlightHits.increment();
+            return await(running).orderFor(basketDigest);
+        }
+
+        try {
+            // the previous owner of the key caches its order before it leaves inFlight, so look once more
+            PlacedOrder placed = cached(key);
+            if (placed == null) {
+                placed = placeOrLoad(key, basketDigest, placement, orderLoader);
+                remember(key, placed);
+            } else {
+                cacheHits.increment();
+            }
+            placing.complete(placed);
+            return placed.orderFor(basketDigest);
+        } catch (ProductNotFoundException | OutOfStockException | InvalidOrderException | RuntimeException e) {
+            placing.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, placing);
+        }
+    }
+
+    // must run inside the transaction that places the order, so the key and the order commit or roll back together
+    public void record(String key, Map<Integer, Integer> basket, Integer orderId) {
+        jdbcTemplate.update(INSERT_KEY, key, orderId, basketDigest(basket), new Timestamp(System.currentTimeMillis()));
+    }
+
+    private PlacedOrder placeOrLoad(String key, String basketDigest, Placement placement, Function<Integer, Optional<Order>> orderLoader)
+            throws ProductNotFoundException, OutOfStockException {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - ttl.toMillis());
+
+        Optional<OrderIdempotencyKey> stored = keyRepository.findById(key);
+        if (stored.isPresent() && !stored.get().getCreatedAt().before(cutoff)) {
+            databaseHits.increment();
+            return load(stored.get(), orderLoader);
+        }
+        if (stored.isPresent()) {
+            jdbcTemplate.update(DELETE_EXPIRED_KEY, key, cutoff);
+        }
+
+        misses.increment();
+        Order order;
+        try {
+            order = placement.place();
+        } catch (DuplicateKeyException e) {
+            // another instance placed an order with this key in the meantime, the placement here was rolled back
+            OrderIdempotencyKey winner = keyRepository.findById(key).orElseThrow(() -> e);
+            databaseHits.increment();
+            return load(winner, orderLoader);
+        }
+
+        if (placedSincePurge.incrementAndGet() >= PURGE_EVERY) {
+            placedSincePurge.set(0);
+            jdbcTemplate.update(DELETE_EXPIRED, cutoff);
+        }
+        return new PlacedOrder(order, basketDigest, System.nanoTime() + ttl.toNanos());
+    }
+
+    private PlacedOrder load(OrderIdempotencyKey stored, Function<Integer, Optional<Order>> orderLoader) {
+        // with write-behind the key is committed before its order row, the loader also looks at the queued orders
+        Order order = orderLoader.apply(stored.getOrderId())
+                .orElseThrow(() -> new IllegalStateException("Order " + stored.getOrderId() + " of Idempotency-Key " + stored.getKey() + " is not stored yet"));
+        long remainingMillis = stored.getCreatedAt().getTime() + ttl.toMillis() - System.currentTimeMillis();
+
+        return new PlacedOrder(order, stored.getBasketDigest(), System.nanoTime() + Duration.ofMillis(remainingMillis).toNanos());
+    }
+
+    private PlacedOrder cached(String key) {
+        PlacedOrder placed = recent.get(key);
+        if (placed == null) return null;
+        if (placed.isExpired()) {
+            recent.remove(key, placed);
+            return null;
+        }
+        return placed;
+    }
+
+    private void remember(String key, PlacedOrder placed) {
+        if (maxEntries <= 0) return;
+        recent.put(key, placed);
+        insertionOrder.add(key);
+
+        // every key lives for the same ttl, so the oldest insertion is always the first to expire
+        String oldest;
+        while ((oldest = insertionOrder.peek()) != null) {
+            PlacedOrder entry = recent.get(oldest);
+            boolean expired = entry == null || entry.isExpired();
+            if (!expired && recent.size() <= maxEntries) break;
+
+            if (insertionOrder.poll() == null) break;
+            if (entry != null) recent.remove(oldest, entry);
+        }
+    }
+
+    /**
+     * SHA-256 of the basket's entries sorted by product id, e.g. {@code 1:2,3:1,}. Unlike {@link Map#hashCode()},
+     * which sums {@code productId ^ quantity}, two different baskets practically never share a digest.
+     */
+    static String basketDigest(Map<Integer, Integer> basket) {
+        StringBuilder canonical = new StringBuilder();
+        new TreeMap<>(basket).forEach((productId, quantity) -> canonical.append(productId).append(':').append(quantity).append(','));
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void validate(String key) throws InvalidOrderException {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidOrderException("Invalid request, Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    private static PlacedOrder await(CompletableFuture<PlacedOrder> running)
+            throws ProductNotFoundException, OutOfStockException, InvalidOrderException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an order with the same Idempotency-Key", e);
+        } catch (ExecutionException e) {
+            // the same outcome as the request that placed it
+            Throwable cause = e.getCause();
+            if (cause instanceof ProductNotFoundException notFound) throw notFound;
+            if (cause instanceof OutOfStockException outOfStock) throw outOfStock;
+            if (cause instanceof InvalidOrderException invalid) throw invalid;
+            throw (RuntimeException) cause;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Placement {
+        Order place() throws ProductNotFoundException, OutOfStockException;
+    }
+
+    private record PlacedOrder(Order order, String basketDigest, long expiresAtNanos) {
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos >= 0;
+        }
+
+        Order orderFor(String requestedBasketDigest) throws InvalidOrderException {
+            if (!requestedBasketDigest.equals(basketDigest)) {
+                throw new InvalidOrderException("Invalid request, Idempotency-Key was already used for a different order");
+            }
+            return order;
+        }
+    }
+}
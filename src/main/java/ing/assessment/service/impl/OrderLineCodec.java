@@ -0,0 +1,121 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.model.Location;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Compact line layout of an order ({@code orders.storage.compact-lines}): all lines of an order packed into one
+ * binary value instead of one {@code order_order_products} row per line.
+ * <p>
+ * The payload is a format version and the line count followed by one column per field, product ids, quantities,
+ * total costs in cents and location ordinals, each value a varint. Product names are not stored, they are resolved
+ * from the product catalogue when the lines are decoded.
+ */
+public final class OrderLineCodec {
+
+    static final byte VERSION = 1;
+
+    private static final Location[] LOCATIONS = Location.values();
+
+    private OrderLineCodec() {
+    }
+
+    public static byte[] encode(List<OrderProduct> lines) {
+        // ~2 bytes per id and quantity, ~3 per cost and 1 per location covers typical baskets without regrowing
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + lines.size() * 8);
+        out.write(VERSION);
+        writeVarLong(out, lines.size());
+
+        for (OrderProduct line : lines) writeVarLong(out, line.getProductId());
+        for (OrderProduct line : lines) writeVarLong(out, line.getQuantity());
+        for (OrderProduct line : lines) writeVarLong(out, requireNonNegative(line.getTotalCostCents()));
+        // 0 for a line without a location, the ordinal + 1 otherwise
+        for (OrderProduct line : lines) out.write(line.getLocation() == null ? 0 : line.getLocation().ordinal() + 1);
+
+        return out.toByteArray();
+    }
+
+    public static int[] productIds(byte[] encoded) {
+        Reader reader = new Reader(encoded);
+        int[] productIds = new int[reader.lineCount];
+
+        for (int i = 0; i < productIds.length; i++) productIds[i] = (int) reader.readVarLong();
+        return productIds;
+    }
+
+    // names maps a product id to its current catalogue name, or null for a product that no longer exists
+    public static List<OrderProduct> decode(byte[] encoded, IntFunction<String> names) {
+        Reader reader = new Reader(encoded);
+        int lineCount = reader.lineCount;
+
+        int[] productIds = new int[lineCount];
+        int[] quantities = new int[lineCount];
+        long[] cents = new long[lineCount];
+        for (int i = 0; i < lineCount; i++) productIds[i] = (int) reader.readVarLong();
+        for (int i = 0; i < lineCount; i++) quantities[i] = (int) reader.readVarLong();
+        for (int i = 0; i < lineCount; i++) cents[i] = reader.readVarLong();
+
+        List<OrderProduct> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            int location = reader.readByte();
+            lines.add(new OrderProduct(
+                    productIds[i],
+                    quantities[i],
+                    names.apply(productIds[i]),
+                    cents[i],
+                    location == 0 ? null : LOCATIONS[location - 1]
+            ));
+        }
+
+        return lines;
+    }
+
+    private static long requireNonNegative(long cents) {
+        if (cents < 0) {
+            throw new IllegalArgumentException("Order line total must not be negative, was: " + cents + " cents");
+        }
+        return cents;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private final int lineCount;
+        private int position;
+
+        private Reader(byte[] bytes) {
+            this.bytes = bytes;
+            if (bytes.length == 0 || bytes[0] != VERSION) {
+                throw new IllegalArgumentException("Unsupported order line encoding, version: " + (bytes.length == 0 ? "none" : bytes[0]));
+            }
+            this.position = 1;
+            this.lineCount = (int) readVarLong();
+        }
+
+        private int readByte() {
+            return bytes[position++] & 0xFF;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+        }
+    }
+}
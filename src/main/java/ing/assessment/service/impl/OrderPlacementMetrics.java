@@ -0,0 +1,79 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.exception.OutOfStockException;
+import ing.assessment.exception.ProductNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms for the stages of order placement and counters for how orders end. Every meter is
+ * registered up front, so recording is a clock read and a lock-free update without any registry lookup.
+ */
+@Component
+public class OrderPlacementMetrics {
+
+    public enum Stage {
+        STOCK_LOOKUP("stock-lookup"),
+        ALLOCATION("allocation"),
+        PRICING("pricing"),
+        PERSIST("persist");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final Counter outOfStock;
+    private final Counter productNotFound;
+    private final Counter fallbackAllocations;
+    private final DistributionSummary rowsWritten;
+
+    public OrderPlacementMetrics(MeterRegistry meterRegistry) {
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("orders.place.stage")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(500))
+                    .maximumExpectedValue(Duration.ofSeconds(1))
+                    .register(meterRegistry);
+        }
+
+        this.outOfStock = Counter.builder("orders.place.rejected").tag("reason", "out-of-stock").register(meterRegistry);
+        this.productNotFound = Counter.builder("orders.place.rejected").tag("reason", "not-found").register(meterRegistry);
+        // a product whose quantity had to be split over more than one location
+        this.fallbackAllocations = meterRegistry.counter("orders.place.allocation.fallback");
+        this.rowsWritten = DistributionSummary.builder("orders.place.rows.written").register(meterRegistry);
+    }
+
+    // records the time since stageStart and returns the start of the next stage
+    public long lap(Stage stage, long stageStart) {
+        long now = System.nanoTime();
+        stageTimers[stage.ordinal()].record(now - stageStart, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    public void rejected(Exception rejection) {
+        if (rejection instanceof OutOfStockException) {
+            outOfStock.increment();
+        } else if (rejection instanceof ProductNotFoundException) {
+            productNotFound.increment();
+        }
+    }
+
+    public void fallbackAllocation() {
+        fallbackAllocations.increment();
+    }
+
+    public void rowsWritten(int rows) {
+        rowsWritten.record(rows);
+    }
+}
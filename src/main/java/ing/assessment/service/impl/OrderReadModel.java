@@ -0,0 +1,250 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.model.ReadConsistency;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Query side of the orders ({@code orders.read-model.store}): a projection of every placed order kept in an
+ * {@link OrderReadStore}, apart from the tables that order placement writes to. Order queries then neither compete
+ * with placements for the write side's connections nor join order lines.
+ * <p>
+ * Orders are handed over once their transaction has committed, and a single projector thread applies them to the
+ * store in batches. The store therefore trails the write side by the projection lag, recorded per order as
+ * {@code orders.read-model.lag}. A query asking for {@link ReadConsistency#READ_YOUR_WRITES} waits until every
+ * order placed before it has been projected, at most {@code orders.read-model.read-your-writes-timeout-ms}, and is
+ * answered from the write side if the projection does not catch up in time. Until the projection has been rebuilt
+ * from the order history on startup, every query is answered from the write side.
+ */
+@Component
+public class OrderReadModel {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderReadModel.class);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final OrderReadStore store;
+    private final int batchSize;
+    private final long readYourWritesTimeoutNanos;
+
+    private final BlockingQueue<Projection> queue = new LinkedBlockingQueue<>();
+    private final Thread projector;
+    private volatile boolean running = true;
+    private volatile boolean ready;
+
+    // published is counted before an order is queued, so once applied reaches a reading of published every order
+    // queued before that reading has been projected
+    private final AtomicLong published = new AtomicLong();
+    private volatile long applied;
+    private volatile long oldestInFlightNanos;
+    private final ReentrantLock appliedLock = new ReentrantLock();
+    private final Condition appliedChanged = appliedLock.newCondition();
+
+    private final Timer lag;
+    private final Counter fallbacks;
+    private final Counter failures;
+
+    public OrderReadModel(Optional<OrderReadStore> store,
+                          MeterRegistry meterRegistry,
+                          @Value("${orders.read-model.batch-size:500}") int batchSize,
+                          @Value("${orders.read-model.read-your-writes-timeout-ms:1000}") long readYourWritesTimeoutMillis) {
+        this.store = store.orElse(null);
+        this.batchSize = batchSize;
+        this.readYourWritesTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesTimeoutMillis);
+
+        this.lag = Timer.builder("orders.read-model.lag")
+                .description("Time from an order's commit until it can be read from the read model")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.fallbacks = meterRegistry.counter("orders.read-model.fallbacks");
+        this.failures = meterRegistry.counter("orders.read-model.failures");
+        Gauge.builder("orders.read-model.pending", this, model -> model.published.get() - model.applied)
+                .register(meterRegistry);
+        TimeGauge.builder("orders.read-model.lag.current", this, TimeUnit.NANOSECONDS, OrderReadModel::currentLagNanos)
+                .description("Age of the oldest order not projected yet, 0 when the read model has caught up")
+                .register(meterRegistry);
+
+        this.projector = new Thread(this::projectQueued, "order-read-model-projector");
+        projector.setDaemon(true);
+        if (this.store != null) {
+            projector.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return store != null;
+    }
+
+    // must only be called once the order's transaction has committed
+    public void project(Order order) {
+        if (store == null) return;
+
+        published.incrementAndGet();
+        queue.add(new Projection(view(order), System.nanoTime()));
+    }
+
+    public void projectAll(Collection<Order> orders) {
+        orders.forEach(this::project);
+    }
+
+    /**
+     * Projects {@code history}, which must feed every persisted order to the consumer it is given, and from then on
+     * answers queries from the store. Orders placed during the scan are projected by the projector as usual.
+     */
+    public long rebuild(Consumer<Consumer<Order>> history) {
+        if (store == null) return 0;
+
+        List<Order> batch = new ArrayList<>(batchSize);
+        long[] scanned = {0};
+        history.accept(order -> {
+            batch.add(view(order));
+            scanned[0]++;
+            if (batch.size() == batchSize) {
+                store.upsertAll(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) store.upsertAll(batch);
+
+        ready = true;
+        return scanned[0];
+    }
+
+    /**
+     * The store to answer a query from, or empty when it has to be answered from the write side: the read model is
+     * off or not rebuilt yet, or a {@link ReadConsistency#READ_YOUR_WRITES} query could not wait for it to catch up.
+     */
+    public Optional<OrderReadStore> storeFor(ReadConsistency consistency) {
+        if (store == null || !ready) return Optional.empty();
+
+        if (consistency == ReadConsistency.READ_YOUR_WRITES && !awaitApplied(published.get())) {
+            fallbacks.increment();
+            return Optional.empty();
+        }
+        return Optional.of(store);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (projector.isAlive()) projector.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private boolean awaitApplied(long target) {
+        if (applied >= target) return true;
+
+        long remaining = readYourWritesTimeoutNanos;
+        appliedLock.lock();
+        try {
+            while (applied < target) {
+                if (remaining <= 0) return false;
+                remaining = appliedChanged.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            appliedLock.unlock();
+        }
+    }
+
+    private void projectQueued() {
+        List<Projection> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Projection first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                oldestInFlightNanos = first.queuedNanos();
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // a failed batch is retried until it is applied: skipping it would let read-your-writes queries miss its orders
+    private void apply(List<Projection> batch) throws InterruptedException {
+        List<Order> orders = batch.stream().map(Projection::order).toList();
+
+        while (true) {
+            try {
+                store.upsertAll(orders);
+                break;
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.error("Could not project {} orders into the read model, retrying", orders.size(), e);
+                if (!running) return;
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            }
+        }
+
+        long now = System.nanoTime();
+        for (Projection projection : batch) lag.record(now - projection.queuedNanos(), TimeUnit.NANOSECONDS);
+        oldestInFlightNanos = 0;
+
+        appliedLock.lock();
+        try {
+            applied += batch.size();
+            appliedChanged.signalAll();
+        } finally {
+            appliedLock.unlock();
+        }
+    }
+
+    private double currentLagNanos() {
+        long oldest = oldestInFlightNanos;
+        if (oldest == 0) {
+            Projection next = queue.peek();
+            if (next == null) return 0;
+            oldest = next.queuedNanos();
+        }
+        return Math.max(0, System.nanoTime() - oldest);
+    }
+
+    // a detached copy with its lines decoded, so the view neither shares a managed collection nor needs the catalogue
+    private static Order view(Order order) {
+        return new Order(
+                order.getId(),
+                order.getTimestamp(),
+                List.copyOf(order.getOrderProducts()),
+                order.getOrderCostCents(),
+                order.getDiscountCents(),
+                order.getDeliveryCost(),
+                order.getDeliveryTime(),
+                null,
+                null
+        );
+    }
+
+    private record Projection(Order order, long queuedNanos) {}
+}
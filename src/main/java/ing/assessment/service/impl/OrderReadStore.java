@@ -0,0 +1,30 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Where {@link OrderReadModel} keeps its projection of the placed orders; selected with
+ * {@code orders.read-model.store}. Every order is stored as one self-contained view, reads never join order lines
+ * or look up product names.
+ */
+public interface OrderReadStore {
+
+    String MEMORY = "memory";
+    String JDBC = "jdbc";
+
+    // inserts or replaces by id; orders do not change once placed, so projecting an order twice is harmless
+    void upsertAll(List<Order> orders);
+
+    Optional<Order> findById(int orderId);
+
+    List<Order> findAll();
+
+    // ascending ids after afterId placed in [from, to), like OrderRepository#findIdsAfter
+    List<Order> findAfter(int afterId, Date from, Date to, int limit);
+
+    long count();
+}
@@ -1,8 +1,31 @@
 package ing.assessment.service.impl;
 
 import ing.assessment.db.order.Order;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Integer> {}
\ No newline at end of file
+public interface OrderRepository extends JpaRepository<Order, Integer> {
+
+    // keyset page: seeks past the cursor on the primary key index instead of counting an offset
+    @Query("select o.id from Order o where o.id > :afterId and o.timestamp >= :from and o.timestamp < :to order by o.id")
+    List<Integer> findIdsAfter(@Param("afterId") Integer afterId,
+                               @Param("from") Date from,
+                               @Param("to") Date to,
+                               Limit limit);
+
+    // loads a page together with its order lines in one query instead of one query per order
+    @Query("select distinct o from Order o left join fetch o.orderProducts where o.id in :ids order by o.id")
+    List<Order> findAllWithProductsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // every order with its lines in one query, for the unpaginated /orders/all
+    @Query("select distinct o from Order o left join fetch o.orderProducts order by o.id")
+    List<Order> findAllWithProducts();
+}
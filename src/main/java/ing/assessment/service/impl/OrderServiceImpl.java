@@ -2,138 +2,634 @@ package ing.assessment.service.impl;
 
 import ing.assessment.db.order.Order;
 import ing.assessment.db.order.OrderProduct;
-import ing.assessment.db.product.Product;
+import ing.assessment.dto.BulkOrderResultDTO;
+import ing.assessment.dto.OrderPageDTO;
+import ing.assessment.exception.InvalidOrderException;
 import ing.assessment.exception.OutOfStockException;
 import ing.assessment.exception.ProductNotFoundException;
+import ing.assessment.model.Location;
+import ing.assessment.model.ReadConsistency;
 import ing.assessment.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
-import java.util.Comparator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderServiceImpl implements OrderService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrderServiceImpl.class);
+
+    private static final Date EARLIEST = new Date(0);
+    private static final Date LATEST = new Date(253402300799000L); // 9999-12-31T23:59:59Z
+    private static final Comparator<StockDecrement> ROW_ORDER =
+            Comparator.comparingInt(StockDecrement::productId).thenComparing(StockDecrement::location);
+
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;
+    private final StockReservationEngine reservationEngine;
+    private final InventoryCache inventoryCache;
+    private final OrderWriteBehind orderWriteBehind;
+    private final OrderAnalytics orderAnalytics;
+    private final OrderPlacementMetrics placementMetrics;
+    private final AllocationStrategy allocationStrategy;
+    private final OrderIdempotency orderIdempotency;
+    private final InventoryLedger inventoryLedger;
+    private final PricingEngine pricingEngine;
+    private final OrderReadModel orderReadModel;
+    private final LocationShards locationShards;
+    private final int streamChunkSize;
+    private final boolean compactLines;
 
-    public OrderServiceImpl(OrderRepository orderRepository, ProductRepository productRepository) {
+    public OrderServiceImpl(OrderRepository orderRepository,
+                            ProductRepository productRepository,
+                            StockReservationEngine reservationEngine,
+                            InventoryCache inventoryCache,
+                            OrderWriteBehind orderWriteBehind,
+                            OrderAnalytics orderAnalytics,
+                            OrderPlacementMetrics placementMetrics,
+                            AllocationStrategy allocationStrategy,
+                            OrderIdempotency orderIdempotency,
+                            InventoryLedger inventoryLedger,
+                            PricingEngine pricingEngine,
+                            OrderReadModel orderReadModel,
+                            LocationShards locationShards,
+                            @Value("${orders.stream.chunk-size:500}") int streamChunkSize,
+                            @Value("${orders.storage.compact-lines:false}") boolean compactLines) {
         this.orderRepository = orderRepository;
         this.productRepository = productRepository;
+        this.reservationEngine = reservationEngine;
+        this.inventoryCache = inventoryCache;
+        this.orderWriteBehind = orderWriteBehind;
+        this.orderAnalytics = orderAnalytics;
+        this.placementMetrics = placementMetrics;
+        this.allocationStrategy = allocationStrategy;
+        this.orderIdempotency = orderIdempotency;
+        this.inventoryLedger = inventoryLedger;
+        this.pricingEngine = pricingEngine;
+        this.orderReadModel = orderReadModel;
+        this.locationShards = locationShards;
+        this.streamChunkSize = streamChunkSize;
+        this.compactLines = compactLines;
     }
 
     @Override
     public Order placeOrder(Map<Integer, Integer> productIdsToQuantity)
             throws ProductNotFoundException, OutOfStockException {
-        Map<Product, Integer> productToQuantity = new HashMap<>();
+        return placeOrder(productIdsToQuantity, order -> {});
+    }
+
+    // a retry with the same key gets the first order back without reading or writing any stock
+    @Override
+    public Order placeOrder(Map<Integer, Integer> productIdsToQuantity, String idempotencyKey)
+            throws ProductNotFoundException, OutOfStockException, InvalidOrderException {
+        if (idempotencyKey == null) return placeOrder(productIdsToQuantity);
+
+        return orderIdempotency.placeOnce(
+                idempotencyKey,
+                productIdsToQuantity,
+                () -> placeOrder(productIdsToQuantity,
+                        order -> orderIdempotency.record(idempotencyKey, productIdsToQuantity, order.getId())),
+                this::getPlacedOrderById
+        );
+    }
+
+    // onCreated runs in the placing transaction once the order has its id
+    private Order placeOrder(Map<Integer, Integer> productIdsToQuantity, Consumer<Order> onCreated)
+            throws ProductNotFoundException, OutOfStockException {
+        Order order;
+        try {
+            order = locationShards.isEnabled()
+                    ? placeOnShards(productIdsToQuantity, onCreated)
+                    : placeOnStripes(productIdsToQuantity, onCreated);
+        } catch (ProductNotFoundException | OutOfStockException e) {
+            placementMetrics.rejected(e);
+            inventoryLedger.record(productIdsToQuantity, List.of());
+            throw e;
+        }
+
+        // queued only once the stock decrement has committed and outside the stripes, as enqueueing may block
+        if (orderWriteBehind.isEnabled()) {
+            orderWriteBehind.enqueue(order);
+        }
+        orderAnalytics.record(order);
+        orderReadModel.project(order);
+        return order;
+    }
+
+    // stock is read, checked and decremented while the basket's stripes are held, in one transaction;
+    // the cached inventory only follows once that transaction has committed
+    private Order placeOnStripes(Map<Integer, Integer> productIdsToQuantity, Consumer<Order> onCreated)
+            throws ProductNotFoundException, OutOfStockException {
+        Set<Integer> productIds = productIdsToQuantity.keySet();
+        List<StockDecrement> decrements = new ArrayList<>();
+
+        inventoryCache.beginWrites(productIds);
+        try {
+            return reservationEngine.reserve(
+                    productIds,
+                    () -> allocateAndCreateOrder(productIdsToQuantity, decrements, onCreated),
+                    placed -> {
+                        inventoryCache.applyCommitted(decrements);
+                        inventoryLedger.record(productIdsToQuantity, decrements);
+                    }
+            );
+        } finally {
+            inventoryCache.endWrites(productIds);
+        }
+    }
+
+    // the warehouse shards hold the basket's stock instead of the stripes, the transaction only writes it down
+    private Order placeOnShards(Map<Integer, Integer> productIdsToQuantity, Consumer<Order> onCreated)
+            throws ProductNotFoundException, OutOfStockException {
+        Set<Integer> productIds = productIdsToQuantity.keySet();
+
+        // read before the writes are registered, so a product loaded from the database can be cached
+        long stageStart = System.nanoTime();
+        Map<Integer, InventoryEntry> inventory = inventoryCache.getAll(productIds);
+        stageStart = placementMetrics.lap(OrderPlacementMetrics.Stage.STOCK_LOOKUP, stageStart);
+
+        LocationShards.ShardReservation reservation =
+                locationShards.reserve(inventory, available -> allocate(productIdsToQuantity, available));
+        long allocated = placementMetrics.lap(OrderPlacementMetrics.Stage.ALLOCATION, stageStart);
+
+        Order order;
+        inventoryCache.beginWrites(productIds);
+        try {
+            try {
+                order = reservationEngine.inTransaction(
+                        () -> createOrder(reservation.decrements(), inventory, onCreated, allocated));
+            } catch (ProductNotFoundException | OutOfStockException | RuntimeException e) {
+                locationShards.abort(reservation);
+                throw e;
+            }
+            locationShards.commit(reservation);
+            inventoryCache.applyCommitted(reservation.decrements());
+            inventoryLedger.record(productIdsToQuantity, reservation.decrements());
+        } finally {
+            inventoryCache.endWrites(productIds);
+        }
+
+        return order;
+    }
+
+    private Order allocateAndCreateOrder(Map<Integer, Integer> productIdsToQuantity,
+                                         List<StockDecrement> decrements,
+                                         Consumer<Order> onCreated)
+            throws ProductNotFoundException, OutOfStockException {
+        long stageStart = System.nanoTime();
+        Map<Integer, InventoryEntry> inventory = inventoryCache.getAllForReservation(productIdsToQuantity.keySet());
+        stageStart = placementMetrics.lap(OrderPlacementMetrics.Stage.STOCK_LOOKUP, stageStart);
+
+        decrements.addAll(allocate(productIdsToQuantity, inventory));
+        stageStart = placementMetrics.lap(OrderPlacementMetrics.Stage.ALLOCATION, stageStart);
+
+        return createOrder(decrements, inventory, onCreated, stageStart);
+    }
+
+    private Order createOrder(List<StockDecrement> decrements,
+                              Map<Integer, InventoryEntry> inventory,
+                              Consumer<Order> onCreated,
+                              long stageStart) throws OutOfStockException {
+        Order order = buildOrder(decrements, inventory);
+        stageStart = placementMetrics.lap(OrderPlacementMetrics.Stage.PRICING, stageStart);
+
+        // in one global row order, the sharded path writes stock without holding any stripes
+        for (StockDecrement decrement : decrements.stream().sorted(ROW_ORDER).toList()) {
+            decrementStock(decrement);
+        }
+        if (orderWriteBehind.isEnabled()) {
+            order.setId(orderWriteBehind.nextOrderId());
+        } else {
+            order = orderRepository.save(order);
+        }
+        onCreated.accept(order);
+        placementMetrics.lap(OrderPlacementMetrics.Stage.PERSIST, stageStart);
+        placementMetrics.rowsWritten(decrements.size() + 1 + lineRows(order));
+
+        return order;
+    }
+
+    @Override
+    public List<BulkOrderResultDTO> placeOrders(List<Map<Integer, Integer>> baskets) {
+        BulkOrderResultDTO[] results = new BulkOrderResultDTO[baskets.size()];
+        Set<Integer> productIds = new HashSet<>();
+        List<Map<Integer, Integer>> validBaskets = new ArrayList<>();
+
+        for (int i = 0; i < baskets.size(); i++) {
+            Map<Integer, Integer> basket = baskets.get(i);
+            if (isValidBasket(basket)) {
+                productIds.addAll(basket.keySet());
+                validBaskets.add(basket);
+            } else {
+                results[i] = BulkOrderResultDTO.failed(i, new InvalidOrderException("Invalid request, must provide productIds and positive quantities"));
+            }
+        }
+
+        List<Order> placed = List.of();
+        if (!productIds.isEmpty()) {
+            // every basket is allocated against what the baskets before it left behind and the stock of the whole
+            // batch is written in a single transaction
+            try {
+                placed = locationShards.isEnabled()
+                        ? placeAllOnShards(baskets, productIds, results, validBaskets)
+                        : placeAllOnStripes(baskets, productIds, results, validBaskets);
+            } catch (ProductNotFoundException | OutOfStockException e) {
+                inventoryLedger.record(validBaskets, List.of());
+                // the batch was rolled back, so every basket that had not already failed on its own failed with it
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i] == null) results[i] = BulkOrderResultDTO.failed(i, e);
+                }
+            }
+        }
+
+        if (orderWriteBehind.isEnabled()) {
+            placed.forEach(orderWriteBehind::enqueue);
+        }
+        orderAnalytics.recordAll(placed);
+        orderReadModel.projectAll(placed);
+        return Arrays.asList(results);
+    }
+
+    // one reservation over the union of all baskets, every basket is allocated against the same snapshot
+    private List<Order> placeAllOnStripes(List<Map<Integer, Integer>> baskets,
+                                          Set<Integer> productIds,
+                                          BulkOrderResultDTO[] results,
+                                          List<Map<Integer, Integer>> validBaskets)
+            throws ProductNotFoundException, OutOfStockException {
+        List<StockDecrement> decrements = new ArrayList<>();
+
+        inventoryCache.beginWrites(productIds);
+        try {
+            return reservationEngine.reserve(
+                    productIds,
+                    () -> allocateAndCreateOrders(baskets, productIds, results, decrements),
+                    orders -> {
+                        inventoryCache.applyCommitted(decrements);
+                        inventoryLedger.record(validBaskets, decrements);
+                    }
+            );
+        } finally {
+            inventoryCache.endWrites(productIds);
+        }
+    }
+
+    private List<Order> allocateAndCreateOrders(List<Map<Integer, Integer>> baskets,
+                                                 Set<Integer> productIds,
+                                                 BulkOrderResultDTO[] results,
+                                                 List<StockDecrement> decrements) throws OutOfStockException {
+        Map<Integer, InventoryEntry> snapshot = inventoryCache.getAllForReservation(productIds);
+        Map<Integer, InventoryEntry> inventory = new HashMap<>(snapshot);
+        Map<Integer, Order> placed = new LinkedHashMap<>();
+
+        for (int i = 0; i < baskets.size(); i++) {
+            if (results[i] != null) continue;
+
+            try {
+                List<StockDecrement> allocated = allocate(baskets.get(i), inventory);
+                placed.put(i, buildOrder(allocated, inventory));
+
+                // later baskets only see what this one left behind
+                for (StockDecrement decrement : allocated) {
+                    inventory.computeIfPresent(decrement.productId(),
+                            (id, entry) -> entry.withDecrement(decrement.location(), decrement.quantity()));
+                }
+            } catch (ProductNotFoundException | OutOfStockException e) {
+                placementMetrics.rejected(e);
+                results[i] = BulkOrderResultDTO.failed(i, e);
+            }
+        }
+
+        // one conditional update per product location for the whole batch instead of one per order line
+        decrements.addAll(netDecrements(snapshot, inventory));
+        return createOrders(placed, decrements, results);
+    }
+
+    // every basket holds its own stock on the shards, later baskets only see what earlier ones left available
+    private List<Order> placeAllOnShards(List<Map<Integer, Integer>> baskets,
+                                         Set<Integer> productIds,
+                                         BulkOrderResultDTO[] results,
+                                         List<Map<Integer, Integer>> validBaskets)
+            throws ProductNotFoundException, OutOfStockException {
+        Map<Integer, InventoryEntry> snapshot = inventoryCache.getAll(productIds);
+        Map<Integer, InventoryEntry> inventory = new HashMap<>(snapshot);
+        Map<Integer, Order> placed = new LinkedHashMap<>();
+        List<LocationShards.ShardReservation> reservations = new ArrayList<>();
+
+        for (int i = 0; i < baskets.size(); i++) {
+            if (results[i] != null) continue;
+
+            Map<Integer, Integer> basket = baskets.get(i);
+            try {
+                LocationShards.ShardReservation reservation =
+                        locationShards.reserve(snapshot, available -> allocate(basket, available));
+                reservations.add(reservation);
+                placed.put(i, buildOrder(reservation.decrements(), snapshot));
+
+                for (StockDecrement decrement : reservation.decrements()) {
+                    inventory.computeIfPresent(decrement.productId(),
+                            (id, entry) -> entry.withDecrement(decrement.location(), decrement.quantity()));
+                }
+            } catch (ProductNotFoundException | OutOfStockException e) {
+                placementMetrics.rejected(e);
+                results[i] = BulkOrderResultDTO.failed(i, e);
+            }
+        }
+
+        List<StockDecrement> decrements = netDecrements(snapshot, inventory);
+        List<Order> orders;
+        inventoryCache.beginWrites(productIds);
+        try {
+            try {
+                orders = reservationEngine.inTransaction(() -> createOrders(placed, decrements, results));
+            } catch (ProductNotFoundException | OutOfStockException | RuntimeException e) {
+                reservations.forEach(locationShards::abort);
+                throw e;
+            }
+            reservations.forEach(locationShards::commit);
+            inventoryCache.applyCommitted(decrements);
+            inventoryLedger.record(validBaskets, decrements);
+        } finally {
+            inventoryCache.endWrites(productIds);
+        }
+
+        return orders;
+    }
+
+    private List<Order> createOrders(Map<Integer, Order> placed,
+                                     List<StockDecrement> decrements,
+                                     BulkOrderResultDTO[] results) throws OutOfStockException {
+        for (StockDecrement decrement : decrements) {
+            decrementStock(decrement);
+        }
 
+        List<Order> orders = new ArrayList<>(placed.values());
+        if (orderWriteBehind.isEnabled()) {
+            orders.forEach(order -> order.setId(orderWriteBehind.nextOrderId()));
+        } else {
+            orderRepository.saveAll(orders);
+        }
+
+        placed.forEach((i, order) -> results[i] = BulkOrderResultDTO.placed(i, order));
+        // the net stock updates are shared by the whole batch
+        orders.forEach(order -> placementMetrics.rowsWritten(1 + lineRows(order)));
+        return orders;
+    }
+
+    private List<StockDecrement> allocate(Map<Integer, Integer> productIdsToQuantity, Map<Integer, InventoryEntry> inventory)
+            throws ProductNotFoundException, OutOfStockException {
         for(Map.Entry<Integer, Integer> entry : productIdsToQuantity.entrySet()) {
             Integer productId = entry.getKey();
             Integer desiredQuantity = entry.getValue();
 
-            List<Product> availableProducts = productRepository.findByProductCk_Id(productId)
-                    .stream()
-                    .sorted(Comparator.comparing(p -> p.getProductCk().getLocation()))
-                    .toList();
+            InventoryEntry available = inventory.get(productId);
 
-            if (availableProducts.isEmpty()) {
+            if (available == null) {
                 throw new ProductNotFoundException("Product with ID: " + productId + " not found");
             }
 
-            int totalAvailable = availableProducts.stream()
-                    .mapToInt(Product::getQuantity)
-                    .sum();
+            int totalAvailable = available.totalQuantity();
 
             if (totalAvailable < desiredQuantity) {
                 throw new OutOfStockException("There is not enough stock of Product with ID: " + productId + ", remaining stock: " + totalAvailable);
             }
+        }
 
-            // allocate products until demand is satisfied
-            // if one location runs out, allocate the turnover to the next location of the product
-            int remainingToAllocate = desiredQuantity;
-            for (Product product : availableProducts) {
-                if (remainingToAllocate <= 0) break;
+        // the strategy only decides where from, every product is known to have enough stock by now
+        List<StockDecrement> decrements = allocationStrategy.allocate(productIdsToQuantity, inventory);
 
-                int allocated = Math.min(remainingToAllocate, product.getQuantity());
-                if (allocated > 0) {
-                    productToQuantity.put(product, allocated);
-                    remainingToAllocate -= allocated;
-                }
-            }
+        if (decrements.size() > productIdsToQuantity.size()) {
+            decrements.stream()
+                    .collect(Collectors.groupingBy(StockDecrement::productId, Collectors.counting()))
+                    .values()
+                    .forEach(lines -> {
+                        if (lines > 1) placementMetrics.fallbackAllocation();
+                    });
         }
 
-        return createOrder(productToQuantity);
+        return decrements;
+    }
+
+    private static boolean isValidBasket(Map<Integer, Integer> basket) {
+        return basket != null && !basket.isEmpty()
+                && basket.values().stream().allMatch(quantity -> quantity != null && quantity > 0);
+    }
+
+    private static List<StockDecrement> netDecrements(Map<Integer, InventoryEntry> before, Map<Integer, InventoryEntry> after) {
+        List<StockDecrement> decrements = new ArrayList<>();
+
+        before.keySet().stream().sorted().forEach(productId -> {
+            for (Location location : Location.values()) {
+                int sold = before.get(productId).quantityAt(location) - after.get(productId).quantityAt(location);
+                if (sold > 0) decrements.add(new StockDecrement(productId, location, sold));
+            }
+        });
+
+        return decrements;
+    }
+
+    private static int lineRows(Order order) {
+        return order.getEncodedLines() == null ? order.getOrderProducts().size() : 0;
+    }
+
+    // the read model only receives orders placed from now on, so it starts out from the persisted history
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildReadModel() {
+        if (orderReadModel.isEnabled()) {
+            long orders = orderReadModel.rebuild(consumer -> forEachOrder(null, null, consumer));
+            log.info("Projected {} orders into the order read model", orders);
+        }
     }
 
     @Override
     public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+        return getAllOrders(ReadConsistency.EVENTUAL);
+    }
+
+    @Override
+    public List<Order> getAllOrders(ReadConsistency consistency) {
+        return orderReadModel.storeFor(consistency)
+                .map(OrderReadStore::findAll)
+                .orElseGet(() -> withDecodedLines(orderRepository.findAllWithProducts()));
     }
 
     @Override
     public Optional<Order> getOrderById(Integer orderId) {
-        return orderRepository.findById(orderId);
+        return getOrderById(orderId, ReadConsistency.EVENTUAL);
+    }
+
+    @Override
+    public Optional<Order> getOrderById(Integer orderId, ReadConsistency consistency) {
+        Optional<OrderReadStore> store = orderReadModel.storeFor(consistency);
+        if (store.isPresent()) return store.get().findById(orderId);
+
+        return getPersistedOrderById(orderId);
     }
 
-    private Order createOrder(Map<Product, Integer> productToQuantity) {
+    @Override
+    public OrderPageDTO getOrders(Integer afterId, Date from, Date to, int limit) {
+        return getOrders(afterId, from, to, limit, ReadConsistency.EVENTUAL);
+    }
+
+    @Override
+    public OrderPageDTO getOrders(Integer afterId, Date from, Date to, int limit, ReadConsistency consistency) {
+        Optional<OrderReadStore> store = orderReadModel.storeFor(consistency);
+        List<Order> orders = store.isPresent()
+                ? store.get().findAfter(afterId == null ? 0 : afterId, from == null ? EARLIEST : from, to == null ? LATEST : to, limit)
+                : findOrdersAfter(afterId, from, to, limit);
+        Integer nextCursor = orders.size() < limit ? null : orders.get(orders.size() - 1).getId();
+
+        return new OrderPageDTO(orders, nextCursor);
+    }
+
+    /**
+     * Walks the whole order table one keyset chunk at a time. Each chunk is loaded in its own short read and is
+     * unreachable once the consumer has seen it, so memory use is bounded by the chunk size, not the table size.
+     * Always reads the write side, as the history that analytics and the read model are rebuilt from.
+     */
+    @Override
+    public void forEachOrder(Date from, Date to, Consumer<Order> consumer) {
+        Integer cursor = null;
+
+        List<Order> chunk;
+        do {
+            chunk = findOrdersAfter(cursor, from, to, streamChunkSize);
+            chunk.forEach(consumer);
+            if (!chunk.isEmpty()) cursor = chunk.get(chunk.size() - 1).getId();
+        } while (chunk.size() == streamChunkSize);
+    }
+
+    // one keyset chunk of the order tables, never the read model, e.g. for consumers that keep their own checkpoint
+    @Override
+    public List<Order> getPersistedOrdersAfter(Integer afterId, Date from, int limit) {
+        return findOrdersAfter(afterId, from, null, limit);
+    }
+
+    // with write-behind an order can be placed but not written yet; it is looked up once more after the queue,
+    // in case it was written in between
+    private Optional<Order> getPlacedOrderById(Integer orderId) {
+        Optional<Order> order = getPersistedOrderById(orderId);
+        if (order.isPresent() || !orderWriteBehind.isEnabled()) return order;
+
+        Optional<Order> unwritten = orderWriteBehind.unwritten(orderId);
+        return unwritten.isPresent() ? unwritten : getPersistedOrderById(orderId);
+    }
+
+    private Optional<Order> getPersistedOrderById(Integer orderId) {
+        return orderRepository.findById(orderId).map(order -> withDecodedLines(List.of(order)).get(0));
+    }
+
+    private List<Order> findOrdersAfter(Integer afterId, Date from, Date to, int limit) {
+        List<Integer> ids = orderRepository.findIdsAfter(
+                afterId == null ? 0 : afterId,
+                from == null ? EARLIEST : from,
+                to == null ? LATEST : to,
+                Limit.of(limit)
+        );
+
+        if (ids.isEmpty()) return List.of();
+        return withDecodedLines(orderRepository.findAllWithProductsByIdIn(ids));
+    }
+
+    // compact orders are decoded whether or not compact-lines is currently on, names come from the catalogue
+    private List<Order> withDecodedLines(List<Order> orders) {
+        List<Order> encoded = orders.stream()
+                .filter(order -> order.getEncodedLines() != null && order.getDecodedLines() == null)
+                .toList();
+        if (encoded.isEmpty()) return orders;
+
+        Set<Integer> productIds = new HashSet<>();
+        for (Order order : encoded) {
+            for (int productId : OrderLineCodec.productIds(order.getEncodedLines())) productIds.add(productId);
+        }
+
+        Map<Integer, InventoryEntry> catalogue = inventoryCache.getAll(productIds);
+        for (Order order : encoded) {
+            order.setDecodedLines(OrderLineCodec.decode(order.getEncodedLines(), productId -> {
+                InventoryEntry product = catalogue.get(productId);
+                return product == null ? null : product.name();
+            }));
+        }
+
+        return orders;
+    }
+
+    private Order buildOrder(List<StockDecrement> decrements, Map<Integer, InventoryEntry> inventory) {
+        PricingRules pricing = pricingEngine.rules();
         List<OrderProduct> orderProducts = new ArrayList<>();
-        double orderCost = 0.0;
+        long orderCents = 0;
+        long lineDiscountCents = 0;
+        int locationMask = 0;
 
-        for (Map.Entry<Product, Integer> entry : productToQuantity.entrySet()) {
-            Product product = entry.getKey();
-            Integer quantity = entry.getValue();
+        for (StockDecrement decrement : decrements) {
+            InventoryEntry product = inventory.get(decrement.productId());
+            int quantity = decrement.quantity();
+            long lineCents = product.priceCents() * quantity;
 
             orderProducts.add(
                     new OrderProduct(
-                        product.getProductCk().getId(),
+                        decrement.productId(),
                         quantity,
-                        product.getName(),
-                        product.getPrice() * quantity)
+                        product.name(),
+                        lineCents,
+                        decrement.location())
             );
 
-            orderCost += product.getPrice() * quantity;
-
-            product.setQuantity(product.getQuantity() - quantity);
-            productRepository.save(product);
+            orderCents += lineCents;
+            lineDiscountCents += pricing.lineDiscount(decrement.productId(), quantity, lineCents);
+            locationMask |= 1 << decrement.location().ordinal();
         }
 
-        int deliveryCost = computeDeliveryCost(orderCost);
-        int deliveryTime = computeDeliveryTime(
-                new ArrayList<>(productToQuantity.keySet())
-        );
-        double finalOrderCost = computeFinalOrderCost(orderCost);
+        int deliveryCost = pricing.deliveryCost(orderCents, locationMask);
+        int deliveryTime = computeDeliveryTime(decrements);
+        long finalOrderCents = pricing.finalCost(orderCents, orderCents - lineDiscountCents);
 
         Order order = new Order();
         order.setTimestamp(new Date());
         order.setOrderProducts(orderProducts);
-        order.setDiscount(orderCost - finalOrderCost);
-        order.setOrderCost(finalOrderCost);
+        order.setDiscountCents(orderCents - finalOrderCents);
+        order.setOrderCostCents(finalOrderCents);
         order.setDeliveryCost(deliveryCost);
         order.setDeliveryTime(deliveryTime);
 
-        return orderRepository.save(order);
-    }
-
-    private int computeDeliveryCost(Double orderCost) {
-        if (orderCost <= 500) return 30;
-
-        return 0;
+        if (compactLines) {
+            order.setEncodedLines(OrderLineCodec.encode(orderProducts));
+            order.setDecodedLines(orderProducts);
+            order.setOrderProducts(new ArrayList<>());
+        }
+        return order;
     }
 
-    private double computeFinalOrderCost(Double orderCost) {
-        if (orderCost > 1000) return orderCost * 0.9;
+    private void decrementStock(StockDecrement decrement) throws OutOfStockException {
+        int updated = productRepository.decrementQuantity(decrement.productId(), decrement.location(), decrement.quantity());
 
-        return orderCost;
+        // only possible if the product table was changed behind the cache's back
+        if (updated == 0) {
+            inventoryCache.evict(decrement.productId());
+            throw new OutOfStockException("There is not enough stock of Product with ID: " + decrement.productId() + ", stock changed while placing the order");
+        }
     }
 
-    private int computeDeliveryTime(List<Product> products) {
-        long uniqueLocations = products.stream()
-                .map(product -> product.getProductCk().getLocation())
+    int computeDeliveryTime(List<StockDecrement> decrements) {
+        long uniqueLocations = decrements.stream()
+                .map(StockDecrement::location)
                 .distinct()
                 .count();
 
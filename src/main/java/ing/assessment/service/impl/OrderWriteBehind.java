@@ -0,0 +1,289 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Opt-in ({@code orders.write-behind.enabled}) asynchronous persistence of placed orders.
+ * <p>
+ * Stock is still reserved and committed synchronously by {@link OrderServiceImpl}; only the {@link Order} rows are
+ * handed to this pipeline. A single writer thread drains the bounded queue and inserts orders and their lines in
+ * JDBC batches, callers block on a full queue. A batch that fails is retried with a growing delay until it is written:
+ * its stock is already committed and its id handed out. Order ids are taken from the same pooled {@code orders_seq} as the
+ * JPA mapping ({@link Order#ID_BLOCK_SIZE} ids per sequence call, pooled-lo), so both paths never collide.
+ */
+@Component
+public class OrderWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderWriteBehind.class);
+
+    private static final String INSERT_ORDER =
+            "insert into orders (id, timestamp, order_cost_cents, discount_cents, delivery_cost, delivery_time, encoded_lines) values (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ORDER_PRODUCT =
+            "insert into order_order_products (order_id, product_id, quantity, name, total_cost_cents, location) values (?, ?, ?, ?, ?, ?)";
+
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final long FIRST_RETRY_DELAY_MILLIS = 100;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+    // once shut down nobody waits for the writer forever, a batch that still fails after this many attempts is lost
+    private static final int ATTEMPTS_AFTER_SHUTDOWN = 3;
+
+    private final boolean enabled;
+    private final boolean flushOnShutdown;
+    private final int batchSize;
+    private final long maxBatchDelayMillis;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final BlockingQueue<Order> queue;
+    // queued or being written, until their rows have committed
+    private final Map<Integer, Order> unwritten = new ConcurrentHashMap<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+    // enqueue holds the read lock from its running check until the order is queued, shutdown the write lock
+    private final ReentrantReadWriteLock lifecycle = new ReentrantReadWriteLock();
+
+    private final ReentrantLock idLock = new ReentrantLock();
+    private String nextSequenceValueSql;
+    private int nextId;
+    private int lastIdInBlock = -1;
+
+    private final DistributionSummary batchSizes;
+    private final Timer flushLatency;
+    private final Counter failedOrders;
+    private final Counter retries;
+
+    public OrderWriteBehind(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            EntityManagerFactory entityManagerFactory,
+                            MeterRegistry meterRegistry,
+                            @Value("${orders.write-behind.enabled:false}") boolean enabled,
+                            @Value("${orders.write-behind.queue-capacity:10000}") int queueCapacity,
+                            @Value("${orders.write-behind.batch-size:200}") int batchSize,
+                            @Value("${orders.write-behind.max-batch-delay-ms:20}") long maxBatchDelayMillis,
+                            @Value("${orders.write-behind.flush-on-shutdown:true}") boolean flushOnShutdown) {
+        this.enabled = enabled;
+        this.flushOnShutdown = flushOnShutdown;
+        this.batchSize = batchSize;
+        this.maxBatchDelayMillis = maxBatchDelayMillis;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManagerFactory = entityManagerFactory;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("orders.write-behind.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("orders.write-behind.batch.size").register(meterRegistry);
+        this.flushLatency = Timer.builder("orders.write-behind.flush.latency").register(meterRegistry);
+        this.failedOrders = meterRegistry.counter("orders.write-behind.failed");
+        this.retries = meterRegistry.counter("orders.write-behind.retries");
+
+        this.writer = new Thread(this::drain, "order-write-behind");
+        if (enabled) {
+            writer.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Integer nextOrderId() {
+        idLock.lock();
+        try {
+            if (nextSequenceValueSql == null) {
+                nextSequenceValueSql = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                        .getJdbcServices().getDialect().getSequenceSupport().getSequenceNextValString("orders_seq");
+            }
+            if (nextId > lastIdInBlock) {
+                Integer blockStart = jdbcTemplate.queryForObject(nextSequenceValueSql, Integer.class);
+                nextId = blockStart;
+                lastIdInBlock = blockStart + Order.ID_BLOCK_SIZE - 1;
+            }
+            return nextId++;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    // blocks while the queue is full, which throttles order placement to what the writer can keep up with
+    public void enqueue(Order order) {
+        lifecycle.readLock().lock();
+        try {
+            if (running) {
+                unwritten.put(order.getId(), order);
+                putUninterruptibly(order);
+                return;
+            }
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+
+        // the stock is already committed, so after shutdown the order is written on the caller's thread
+        writeWithRetries(List.of(order));
+    }
+
+    // an order whose row is not in the database yet, e.g. for a retry with the same Idempotency-Key
+    public Optional<Order> unwritten(Integer orderId) {
+        return Optional.ofNullable(unwritten.get(orderId));
+    }
+
+    // an order with a higher id may already be in the database while this one is not
+    public OptionalInt lowestUnwrittenId() {
+        return unwritten.keySet().stream().mapToInt(Integer::intValue).min();
+    }
+
+    // every order queued or being written right now
+    public Collection<Order> unwrittenOrders() {
+        return List.copyOf(unwritten.values());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) return;
+
+        lifecycle.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        writer.join();
+
+        if (!queue.isEmpty()) {
+            log.warn("Discarding {} queued orders on shutdown", queue.size());
+        }
+    }
+
+    private void drain() {
+        List<Order> batch = new ArrayList<>(batchSize);
+
+        // after shutdown the writer keeps going until the queue is empty, unless flush-on-shutdown is off
+        while (running || (flushOnShutdown && !queue.isEmpty() && !Thread.currentThread().isInterrupted())) {
+            try {
+                Order first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // give a burst a short moment to fill the batch instead of writing every order on its own
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMillis);
+                while (batch.size() < batchSize) {
+                    Order next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                writeWithRetries(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void putUninterruptibly(Order order) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(order);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void writeWithRetries(List<Order> orders) {
+        long delayMillis = FIRST_RETRY_DELAY_MILLIS;
+        int attemptsAfterShutdown = 0;
+
+        while (!write(orders)) {
+            boolean stopping = !running || Thread.currentThread().isInterrupted();
+            if (stopping && ++attemptsAfterShutdown >= ATTEMPTS_AFTER_SHUTDOWN) {
+                failedOrders.increment(orders.size());
+                log.error("Giving up on {} orders after shutdown, ids: {}", orders.size(), orders.stream().map(Order::getId).toList());
+                return;
+            }
+
+            retries.increment();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                // keep the flag, the next attempts then count as attempts after shutdown
+                Thread.currentThread().interrupt();
+            }
+            delayMillis = Math.min(delayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+        }
+    }
+
+    // one transaction for the whole batch, false if it was rolled back
+    private boolean write(List<Order> orders) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_ORDER, orders, orders.size(), (statement, order) -> {
+                    statement.setInt(1, order.getId());
+                    statement.setTimestamp(2, new Timestamp(order.getTimestamp().getTime()));
+                    statement.setLong(3, order.getOrderCostCents());
+                    statement.setLong(4, order.getDiscountCents());
+                    statement.setInt(5, order.getDeliveryCost());
+                    statement.setInt(6, order.getDeliveryTime());
+                    statement.setBytes(7, order.getEncodedLines());
+                });
+
+                List<Object[]> lines = new ArrayList<>();
+                for (Order order : orders) {
+                    // compact orders carry their lines in encoded_lines
+                    if (order.getEncodedLines() != null) continue;
+                    for (OrderProduct line : order.getOrderProducts()) {
+                        Integer location = line.getLocation() == null ? null : line.getLocation().ordinal();
+                        lines.add(new Object[]{order.getId(), line.getProductId(), line.getQuantity(), line.getName(), line.getTotalCostCents(), location});
+                    }
+                }
+                jdbcTemplate.batchUpdate(INSERT_ORDER_PRODUCT, lines);
+            });
+            orders.forEach(order -> unwritten.remove(order.getId()));
+            batchSizes.record(orders.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} orders, retrying, ids: {}", orders.size(), orders.stream().map(Order::getId).toList(), e);
+            return false;
+        } finally {
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
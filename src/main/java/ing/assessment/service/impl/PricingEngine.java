@@ -0,0 +1,108 @@
+package ing.assessment.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the compiled {@link PricingRules} loaded from {@code pricing.rules.location}.
+ * <p>
+ * When the rules live in a file, it is checked for changes every {@code pricing.rules.reload-interval-ms} and
+ * recompiled without a restart. Orders placed meanwhile keep the rules they started with. A file that does not
+ * compile is logged and ignored, the previous rules stay in place.
+ */
+@Component
+public class PricingEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(PricingEngine.class);
+
+    private final Resource location;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService reloader;
+
+    private volatile PricingRules rules;
+    private long lastModified;
+
+    private final Counter reloads;
+    private final Counter reloadFailures;
+
+    public PricingEngine(MeterRegistry meterRegistry,
+                         @Value("${pricing.rules.location:classpath:pricing-rules.json}") Resource location,
+                         @Value("${pricing.rules.reload-interval-ms:5000}") long reloadIntervalMillis) {
+        this.location = location;
+        this.reloads = meterRegistry.counter("pricing.rules.reloads");
+        this.reloadFailures = meterRegistry.counter("pricing.rules.reload.failures");
+
+        // rules that do not compile at startup fail the startup
+        this.lastModified = lastModified();
+        this.rules = load();
+        log.info("Loaded {} pricing rules from {}", rules.ruleCount(), location);
+        Gauge.builder("pricing.rules.count", this, engine -> engine.rules().ruleCount()).register(meterRegistry);
+
+        if (reloadIntervalMillis > 0 && location.isFile()) {
+            this.reloader = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "pricing-rules-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloader.scheduleWithFixedDelay(this::reloadIfModified, reloadIntervalMillis, reloadIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.reloader = null;
+        }
+    }
+
+    // read once per order, so all of its lines are priced by the same rules
+    public PricingRules rules() {
+        return rules;
+    }
+
+    void reloadIfModified() {
+        long modified = lastModified();
+        if (modified == lastModified) return;
+        lastModified = modified;
+
+        try {
+            rules = load();
+            reloads.increment();
+            log.info("Reloaded {} pricing rules from {}", rules.ruleCount(), location);
+        } catch (RuntimeException e) {
+            reloadFailures.increment();
+            log.error("Ignoring pricing rules in {}, keeping the previous ones", location, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) reloader.shutdownNow();
+    }
+
+    private PricingRules load() {
+        try (InputStream in = location.getInputStream()) {
+            return PricingRules.compile(objectMapper.readValue(in, PricingRulesConfig.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read pricing rules from " + location, e);
+        }
+    }
+
+    private long lastModified() {
+        try {
+            return location.isFile() ? location.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.model.Location;
+import ing.assessment.model.Money;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compiled form of a {@link PricingRulesConfig}. Every rule kind is flattened into sorted primitive
+ * arrays, so evaluating an order is a few binary searches and array reads: no allocation, no boxing and no
+ * dispatch, however many rules there are. Amounts are in cents and percentages in basis points, so every result is
+ * exact to the cent.
+ */
+public final class PricingRules {
+
+    private static final Location[] LOCATIONS = Location.values();
+
+    // ascending thresholds with the discount above each one
+    private final long[] discountThresholds;
+    private final long[] discountBasisPoints;
+    // ascending limits with the fee for orders up to each one
+    private final long[] deliveryLimits;
+    private final int[] deliveryFees;
+    // ascending product ids with their promotion
+    private final int[] promotedProducts;
+    private final int[] promotionMinQuantities;
+    private final long[] promotionBasisPoints;
+    // indexed by Location#ordinal()
+    private final int[] locationFees;
+    private final int ruleCount;
+
+    private PricingRules(long[] discountThresholds, long[] discountBasisPoints,
+                         long[] deliveryLimits, int[] deliveryFees,
+                         int[] promotedProducts, int[] promotionMinQuantities, long[] promotionBasisPoints,
+                         int[] locationFees, int ruleCount) {
+        this.discountThresholds = discountThresholds;
+        this.discountBasisPoints = discountBasisPoints;
+        this.deliveryLimits = deliveryLimits;
+        this.deliveryFees = deliveryFees;
+        this.promotedProducts = promotedProducts;
+        this.promotionMinQuantities = promotionMinQuantities;
+        this.promotionBasisPoints = promotionBasisPoints;
+        this.locationFees = locationFees;
+        this.ruleCount = ruleCount;
+    }
+
+    /** @throws IllegalArgumentException naming the first rule that is invalid or conflicts with another one */
+    public static PricingRules compile(PricingRulesConfig config) {
+        List<PricingRulesConfig.DiscountTier> discountTiers = new ArrayList<>(orEmpty(config.discountTiers()));
+        discountTiers.sort(Comparator.comparingDouble(PricingRulesConfig.DiscountTier::above));
+        long[] discountThresholds = new long[discountTiers.size()];
+        long[] discountBasisPoints = new long[discountTiers.size()];
+        for (int i = 0; i < discountTiers.size(); i++) {
+            PricingRulesConfig.DiscountTier tier = discountTiers.get(i);
+            requirePercent(tier.percent(), "discount tier above " + tier.above());
+            discountThresholds[i] = Money.toCents(tier.above());
+            if (i > 0 && discountThresholds[i - 1] == discountThresholds[i]) {
+                throw new IllegalArgumentException("Duplicate discount tier above " + tier.above());
+            }
+            discountBasisPoints[i] = basisPoints(tier.percent());
+        }
+
+        List<PricingRulesConfig.DeliveryTier> deliveryTiers = new ArrayList<>(orEmpty(config.deliveryTiers()));
+        deliveryTiers.sort(Comparator.comparingDouble(PricingRulesConfig.DeliveryTier::upTo));
+        long[] deliveryLimits = new long[deliveryTiers.size()];
+        int[] deliveryFees = new int[deliveryTiers.size()];
+        for (int i = 0; i < deliveryTiers.size(); i++) {
+            PricingRulesConfig.DeliveryTier tier = deliveryTiers.get(i);
+            if (tier.fee() < 0) throw new IllegalArgumentException("Negative fee for delivery tier up to " + tier.upTo());
+            deliveryLimits[i] = Money.toCents(tier.upTo());
+            if (i > 0 && deliveryLimits[i - 1] == deliveryLimits[i]) {
+                throw new IllegalArgumentException("Duplicate delivery tier up to " + tier.upTo());
+            }
+            deliveryFees[i] = tier.fee();
+        }
+
+        List<PricingRulesConfig.ProductPromotion> promotions = new ArrayList<>(orEmpty(config.productPromotions()));
+        promotions.sort(Comparator.comparingInt(PricingRulesConfig.ProductPromotion::productId));
+        int[] promotedProducts = new int[promotions.size()];
+        int[] promotionMinQuantities = new int[promotions.size()];
+        long[] promotionBasisPoints = new long[promotions.size()];
+        for (int i = 0; i < promotions.size(); i++) {
+            PricingRulesConfig.ProductPromotion promotion = promotions.get(i);
+            requirePercent(promotion.percent(), "promotion of product " + promotion.productId());
+            if (i > 0 && promotedProducts[i - 1] == promotion.productId()) {
+                throw new IllegalArgumentException("More than one promotion for product " + promotion.productId());
+            }
+            promotedProducts[i] = promotion.productId();
+            promotionMinQuantities[i] = promotion.minQuantity() == null ? 1 : promotion.minQuantity();
+            promotionBasisPoints[i] = basisPoints(promotion.percent());
+        }
+
+        int[] locationFees = new int[LOCATIONS.length];
+        Map<Location, Integer> configuredFees = config.locationFees() == null ? Map.of() : config.locationFees();
+        configuredFees.forEach((location, fee) -> {
+            if (fee == null || fee < 0) throw new IllegalArgumentException("Invalid delivery fee for location " + location);
+            locationFees[location.ordinal()] = fee;
+        });
+
+        int ruleCount = discountTiers.size() + deliveryTiers.size() + promotions.size() + configuredFees.size();
+        return new PricingRules(discountThresholds, discountBasisPoints, deliveryLimits, deliveryFees,
+                promotedProducts, promotionMinQuantities, promotionBasisPoints, locationFees, ruleCount);
+    }
+
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    // the cents a product promotion takes off one order line, 0 without one
+    public long lineDiscount(int productId, int quantity, long lineCents) {
+        if (promotedProducts.length == 0) return 0;
+
+        int index = Arrays.binarySearch(promotedProducts, productId);
+        if (index < 0 || quantity < promotionMinQuantities[index]) return 0;
+        return Money.fraction(lineCents, promotionBasisPoints[index]);
+    }
+
+    // promotedCents is the order cost less its line discounts, the tier is picked by the undiscounted orderCents
+    public long finalCost(long orderCents, long promotedCents) {
+        // the highest threshold strictly below the order cost
+        int index = Arrays.binarySearch(discountThresholds, orderCents);
+        index = index >= 0 ? index - 1 : -index - 2;
+        if (index < 0) return promotedCents;
+
+        return promotedCents - Money.fraction(promotedCents, discountBasisPoints[index]);
+    }
+
+    // a whole amount; locationMask has bit Location#ordinal() set for every location the order ships from
+    public int deliveryCost(long orderCents, int locationMask) {
+        int fee = 0;
+
+        // the lowest limit at or above the order cost
+        int index = Arrays.binarySearch(deliveryLimits, orderCents);
+        if (index < 0) index = -index - 1;
+        if (index < deliveryLimits.length) fee = deliveryFees[index];
+
+        for (int mask = locationMask; mask != 0; mask &= mask - 1) {
+            fee += locationFees[Integer.numberOfTrailingZeros(mask)];
+        }
+        return fee;
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    private static long basisPoints(double percent) {
+        return Math.round(percent * 100);
+    }
+
+    private static void requirePercent(double percent, String rule) {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("Percent of " + rule + " must be between 0 and 100, was " + percent);
+        }
+    }
+}
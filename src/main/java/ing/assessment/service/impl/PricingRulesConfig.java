@@ -0,0 +1,34 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.model.Location;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The pricing rules file as written by the business, see {@code pricing-rules.json}. Compiled into
+ * {@link PricingRules} before it is used.
+ * <ul>
+ *     <li>{@code discountTiers}: the tier with the highest {@code above} that the order cost exceeds takes
+ *     {@code percent} off the order, after any product promotions</li>
+ *     <li>{@code deliveryTiers}: the tier with the lowest {@code upTo} that the order cost does not exceed sets the
+ *     delivery fee, no matching tier means free delivery</li>
+ *     <li>{@code productPromotions}: {@code percent} off a line of {@code productId} once it has at least
+ *     {@code minQuantity} items</li>
+ *     <li>{@code locationFees}: added to the delivery fee for every location the order ships from</li>
+ * </ul>
+ * Tier thresholds are compared against the order cost before any discount.
+ */
+public record PricingRulesConfig(
+        List<DiscountTier> discountTiers,
+        List<DeliveryTier> deliveryTiers,
+        List<ProductPromotion> productPromotions,
+        Map<Location, Integer> locationFees
+) {
+
+    public record DiscountTier(double above, double percent) {}
+
+    public record DeliveryTier(double upTo, int fee) {}
+
+    public record ProductPromotion(int productId, Integer minQuantity, double percent) {}
+}
@@ -2,12 +2,32 @@ package ing.assessment.service.impl;
 
 import ing.assessment.db.product.Product;
 import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, ProductCK> {
     List<Product> findByProductCk_Id(Integer id);
-}
\ No newline at end of file
+
+    // loads every location of every requested product in a single round trip,
+    // already in Location order so the allocation loop can consume it as-is
+    @Query("select p from Product p where p.productCk.id in :ids order by p.productCk.location")
+    List<Product> findAllByIdsOrderByLocation(@Param("ids") Collection<Integer> ids);
+
+    // conditional so the database itself refuses to go below zero; returns 0 when there is not enough stock left
+    @Modifying
+    @Query("update Product p set p.quantity = p.quantity - :quantity " +
+            "where p.productCk.id = :id and p.productCk.location = :location and p.quantity >= :quantity")
+    int decrementQuantity(@Param("id") Integer id, @Param("location") Location location, @Param("quantity") Integer quantity);
+
+    @Modifying
+    @Query("update Product p set p.quantity = :quantity where p.productCk.id = :id and p.productCk.location = :location")
+    int updateQuantity(@Param("id") Integer id, @Param("location") Location location, @Param("quantity") Integer quantity);
+}
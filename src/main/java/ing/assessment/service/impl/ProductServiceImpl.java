@@ -1,27 +1,251 @@
 package ing.assessment.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import ing.assessment.db.product.Product;
+import ing.assessment.dto.CatalogueJsonDTO;
 import ing.assessment.service.ProductService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Product reads, served as JSON that is serialized once per stock change. Concurrent lookups of the same product
+ * that miss that cache share a single load ({@code products.lookup.single-flight}), and with
+ * {@code products.lookup.micro-cache-ms} a product's JSON is reused for that long even if stock changed meanwhile.
+ * The JSON of single products is kept for at most as many products as {@link InventoryCache} holds, oldest first.
+ */
 @Service
-public class ProductServiceImpl implements ProductService {
+public class ProductServiceImpl implements ProductService, InventoryCache.Listener {
+
+    // serialized products, reused until the inventory change count moves on
+    private record CachedJson(long changeCount, long createdAtNanos, CatalogueJsonDTO json) {}
+
+    private final InventoryCache inventoryCache;
+    private final ObjectMapper objectMapper;
+    private final boolean singleFlight;
+    private final long microCacheNanos;
+
+    // the change count restarts at 0, so ETags handed out before a restart must not match after it
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+
+    private volatile CachedJson allProducts;
+    private final Map<Integer, CachedJson> productsById = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Integer> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, Lookup> inFlight = new ConcurrentHashMap<>();
+
+    private final DistributionSummary callersPerLoad;
+    private final Counter microCacheHits;
+
+    public ProductServiceImpl(InventoryCache inventoryCache,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${products.lookup.single-flight:true}") boolean singleFlight,
+                              @Value("${products.lookup.micro-cache-ms:0}") long microCacheMs) {
+        if (microCacheMs < 0) {
+            throw new IllegalArgumentException("products.lookup.micro-cache-ms must not be negative, was: " + microCacheMs);
+        }
 
+        this.inventoryCache = inventoryCache;
+        this.objectMapper = objectMapper;
+        this.singleFlight = singleFlight;
+        this.microCacheNanos = TimeUnit.MILLISECONDS.toNanos(microCacheMs);
 
-    private final ProductRepository productRepository;
+        this.callersPerLoad = DistributionSummary.builder("products.lookup.callers")
+                .description("Lookups of a product answered by one load of it")
+                .register(meterRegistry);
+        this.microCacheHits = meterRegistry.counter("products.lookup.micro-cache.hits");
 
-    public ProductServiceImpl(ProductRepository productRepository) {
-        this.productRepository = productRepository;
+        inventoryCache.addListener(this);
+    }
+
+    // a stock change only makes the JSON stale, it stays for the micro cache until a reload replaces it
+    @Override
+    public void committed(List<StockDecrement> decrements) {
+    }
+
+    // the product was rewritten outside the order path or is gone
+    @Override
+    public void evicted(Integer productId) {
+        if (productId == null) {
+            productsById.clear();
+            insertionOrder.clear();
+        } else {
+            uncache(productId);
+        }
     }
 
     @Override
     public List<Product> getAllProducts() {
-        return productRepository.findAll();
+        return inventoryCache.getAllProducts();
     }
 
     @Override
     public List<Product> getProductsById(Integer id) {
-         return productRepository.findByProductCk_Id(id);
+         return inventoryCache.get(id)
+                 .map(InventoryEntry::toProducts)
+                 .orElse(List.of());
+    }
+
+    @Override
+    public String getCatalogueETag() {
+        return eTag(inventoryCache.changeCount());
+    }
+
+    // the change count is read before the products, so a body is never older than its ETag
+    @Override
+    public CatalogueJsonDTO getAllProductsJson() {
+        long changeCount = inventoryCache.changeCount();
+        CachedJson cached = allProducts;
+        if (cached != null && cached.changeCount() == changeCount) return cached.json();
+
+        cached = new CachedJson(changeCount, System.nanoTime(), new CatalogueJsonDTO(eTag(changeCount), toJson(getAllProducts())));
+        allProducts = cached;
+        return cached.json();
+    }
+
+    @Override
+    public Optional<CatalogueJsonDTO> getProductJson(Integer id) {
+        CachedJson cached = cachedProductJson(id);
+        if (cached != null) return Optional.of(cached.json());
+        if (!singleFlight) return loadProductJson(id);
+
+        // the first caller loads, everyone asking for the same product meanwhile waits for its result
+        Lookup own = new Lookup();
+        Lookup running = inFlight.merge(id, own, (current, ignored) -> current.join());
+        if (running != own) return await(running);
+
+        Optional<CatalogueJsonDTO> json;
+        try {
+            // the previous load of this product cached its result before it left inFlight, so look once more
+            cached = cachedProductJson(id);
+            json = cached != null ? Optional.of(cached.json()) : loadProductJson(id);
+        } catch (RuntimeException e) {
+            leave(id, own).completeExceptionally(e);
+            throw e;
+        }
+        leave(id, own).complete(json);
+        return json;
+    }
+
+    @Override
+    public Optional<CatalogueJsonDTO> getCachedProductJson(Integer id) {
+        return Optional.ofNullable(cachedProductJson(id)).map(CachedJson::json);
+    }
+
+    // out of inFlight before the result is published, so no caller arriving after the load can be handed its result
+    private CompletableFuture<Optional<CatalogueJsonDTO>> leave(Integer id, Lookup lookup) {
+        inFlight.remove(id, lookup);
+        callersPerLoad.record(lookup.callers);
+        return lookup.result;
+    }
+
+    // callers currently waiting for a load of this product, the loading one included
+    int callersInFlight(Integer id) {
+        Lookup running = inFlight.get(id);
+        return running == null ? 0 : running.callers;
+    }
+
+    int cachedProducts() {
+        return productsById.size();
+    }
+
+    private CachedJson cachedProductJson(Integer id) {
+        CachedJson cached = productsById.get(id);
+        if (cached == null) return null;
+        if (cached.changeCount() == inventoryCache.changeCount()) return cached;
+
+        if (System.nanoTime() - cached.createdAtNanos() < microCacheNanos) {
+            microCacheHits.increment();
+            return cached;
+        }
+        return null;
+    }
+
+    // the change count is read before the product, so a body is never older than its ETag
+    private Optional<CatalogueJsonDTO> loadProductJson(Integer id) {
+        long changeCount = inventoryCache.changeCount();
+        List<Product> products = getProductsById(id);
+        if (products.isEmpty()) {
+            uncache(id);
+            return Optional.empty();
+        }
+
+        CachedJson cached = new CachedJson(changeCount, System.nanoTime(), new CatalogueJsonDTO(eTag(changeCount), toJson(products)));
+        cache(id, cached);
+        return Optional.of(cached.json());
+    }
+
+    // a load that read an older change count than the cached body, e.g. without single-flight, keeps the newer one
+    private void cache(Integer id, CachedJson json) {
+        boolean[] added = {false};
+        productsById.compute(id, (key, current) -> {
+            if (current == null) {
+                added[0] = true;
+                return json;
+            }
+            return json.changeCount() >= current.changeCount() ? json : current;
+        });
+
+        int maxEntries = inventoryCache.maxEntries();
+        if (!added[0] || maxEntries <= 0) return;
+        insertionOrder.add(id);
+        while (productsById.size() > maxEntries) {
+            Integer oldest = insertionOrder.poll();
+            if (oldest == null) break;
+            productsById.remove(oldest);
+        }
+    }
+
+    // out of the insertion order too, so its old position cannot evict it once it is cached again
+    private void uncache(Integer id) {
+        if (productsById.remove(id) != null && inventoryCache.maxEntries() > 0) {
+            insertionOrder.remove(id);
+        }
+    }
+
+    private static Optional<CatalogueJsonDTO> await(Lookup running) {
+        try {
+            return running.result.join();
+        } catch (CompletionException e) {
+            // the same failure as the caller that ran the load
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private String eTag(long changeCount) {
+        return "\"" + instance + "-" + changeCount + "\"";
+    }
+
+    private byte[] toJson(List<Product> products) {
+        try {
+            return objectMapper.writeValueAsBytes(products);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Lookup {
+
+        private final CompletableFuture<Optional<CatalogueJsonDTO>> result = new CompletableFuture<>();
+        // only changed inside inFlight.merge, so nobody joins a load after it left inFlight and was counted
+        private volatile int callers = 1;
+
+        private Lookup join() {
+            callers++;
+            return this;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.dto.OrderPageDTO;
+import ing.assessment.model.ReadConsistency;
+import ing.assessment.service.OrderService;
+import ing.assessment.service.ReactiveOrderService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Every call is a blocking {@link OrderService} call on the {@link BlockingBridge}, so placement and query semantics
+ * are unchanged. The blocking endpoints load an order's lines lazily while writing the response; here they are
+ * loaded on the bridge, before the order is handed back: all orders are read in pages that fetch their lines.
+ */
+@Service
+public class ReactiveOrderServiceImpl implements ReactiveOrderService {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final OrderService orderService;
+    private final BlockingBridge blockingBridge;
+    private final TransactionTemplate readOnly;
+
+    public ReactiveOrderServiceImpl(OrderService orderService,
+                                    BlockingBridge blockingBridge,
+                                    PlatformTransactionManager transactionManager) {
+        this.orderService = orderService;
+        this.blockingBridge = blockingBridge;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+    }
+
+    @Override
+    public Mono<Order> placeOrder(Map<Integer, Integer> productIds, String idempotencyKey) {
+        return blockingBridge.call(() -> orderService.placeOrder(productIds, idempotencyKey));
+    }
+
+    @Override
+    public Flux<Order> getAllOrders(ReadConsistency consistency) {
+        return getOrders(null, null, null, PAGE_SIZE, consistency)
+                .expand(page -> page.nextCursor() == null ? Mono.empty() : getOrders(page.nextCursor(), null, null, PAGE_SIZE, consistency))
+                .flatMapIterable(OrderPageDTO::orders);
+    }
+
+    @Override
+    public Mono<Order> getOrderById(Integer orderId, ReadConsistency consistency) {
+        return blockingBridge.call(() -> readOnly.execute(status -> orderService.getOrderById(orderId, consistency)
+                .map(ReactiveOrderServiceImpl::withLines)
+                .orElse(null)));
+    }
+
+    @Override
+    public Mono<OrderPageDTO> getOrders(Integer afterId, Date from, Date to, int limit, ReadConsistency consistency) {
+        return blockingBridge.call(() -> orderService.getOrders(afterId, from, to, limit, consistency));
+    }
+
+    private static Order withLines(Order order) {
+        order.getOrderProducts().size();
+        return order;
+    }
+}
@@ -0,0 +1,52 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.Product;
+import ing.assessment.dto.CatalogueJsonDTO;
+import ing.assessment.service.ProductService;
+import ing.assessment.service.ReactiveProductService;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Product reads on the {@link BlockingBridge}. A product whose JSON is cached is answered on the calling thread,
+ * it never waits behind blocking calls queued on the bridge.
+ */
+@Service
+public class ReactiveProductServiceImpl implements ReactiveProductService {
+
+    private final ProductService productService;
+    private final BlockingBridge blockingBridge;
+
+    public ReactiveProductServiceImpl(ProductService productService, BlockingBridge blockingBridge) {
+        this.productService = productService;
+        this.blockingBridge = blockingBridge;
+    }
+
+    @Override
+    public Flux<Product> getAllProducts() {
+        return blockingBridge.call(productService::getAllProducts).flatMapIterable(products -> products);
+    }
+
+    @Override
+    public Flux<Product> getProductsById(Integer id) {
+        return blockingBridge.call(() -> productService.getProductsById(id)).flatMapIterable(products -> products);
+    }
+
+    @Override
+    public String getCatalogueETag() {
+        return productService.getCatalogueETag();
+    }
+
+    @Override
+    public Mono<CatalogueJsonDTO> getAllProductsJson() {
+        return blockingBridge.call(productService::getAllProductsJson);
+    }
+
+    @Override
+    public Mono<CatalogueJsonDTO> getProductJson(Integer id) {
+        return Mono.defer(() -> productService.getCachedProductJson(id)
+                .map(Mono::just)
+                .orElseGet(() -> blockingBridge.call(() -> productService.getProductJson(id).orElse(null))));
+    }
+}
@@ -0,0 +1,5 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.model.Location;
+
+public record StockDecrement(int productId, Location location, int quantity) {}
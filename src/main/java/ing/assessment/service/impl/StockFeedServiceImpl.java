@@ -0,0 +1,388 @@
+package ing.assessment.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.dto.StockChangeDTO;
+import ing.assessment.model.Location;
+import ing.assessment.service.StockFeedService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes stock changes to subscribers of {@code /products/feed} as server-sent events.
+ * <p>
+ * Committed decrements are summed per product location and published once per {@code inventory.feed.window-ms}
+ * as one {@code stock} event carrying each location's delta and the quantity left. Every subscriber starts with a
+ * {@code snapshot} event of all stock and then gets the {@code stock} events in order.
+ * <p>
+ * Every subscriber has a bounded queue ({@code inventory.feed.buffer-size}) which a small pool of sender threads
+ * drains, so one slow connection never holds up publishing or the other subscribers. A subscriber whose queue
+ * overflows loses its queued events and gets a fresh snapshot instead. If it overflows again before that snapshot
+ * was sent, it is disconnected. Idle connections only hold an async request, no thread.
+ */
+@Service
+public class StockFeedServiceImpl implements StockFeedService, InventoryCache.Listener {
+
+    private static final Location[] LOCATIONS = Location.values();
+
+    // queue markers, a snapshot is read when it is sent so it is never older than the events queued behind it
+    private static final Object SNAPSHOT = new Object();
+    private static final Object HEARTBEAT = new Object();
+
+    private record Event(long id, String data) {}
+
+    private record CachedSnapshot(long changeCount, Event event) {}
+
+    /** Where a subscriber's events are written, an {@link SseEmitter} outside of tests. */
+    interface Sink {
+        void send(String name, long id, String data) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        void close();
+    }
+
+    private final class Subscriber {
+        private final Sink sink;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean snapshotQueued;
+        private volatile boolean closed;
+
+        private Subscriber(Sink sink) {
+            this.sink = sink;
+        }
+    }
+
+    private final InventoryCache inventoryCache;
+    private final ObjectMapper objectMapper;
+    private final long windowMillis;
+    // subscribers stay connected, the heartbeat finds the ones that went away
+    private static final long NO_TIMEOUT = -1;
+
+    private final long heartbeatMillis;
+    private final int bufferSize;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders;
+    private final Thread publisher;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean running = true;
+
+    private final ReentrantLock pendingLock = new ReentrantLock();
+    private Map<ProductCK, Integer> pendingDeltas = new HashMap<>();
+    private Set<Integer> pendingEvictions = new HashSet<>();
+    private boolean pendingSnapshot;
+
+    private volatile long sequence;
+    private volatile CachedSnapshot snapshot;
+
+    private final Counter events;
+    private final Counter snapshots;
+    private final Counter dropped;
+
+    public StockFeedServiceImpl(InventoryCache inventoryCache,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${inventory.feed.window-ms:100}") long windowMillis,
+                                @Value("${inventory.feed.heartbeat-ms:15000}") long heartbeatMillis,
+                                @Value("${inventory.feed.buffer-size:256}") int bufferSize,
+                                @Value("${inventory.feed.sender-threads:4}") int senderThreads) {
+        this.inventoryCache = inventoryCache;
+        this.objectMapper = objectMapper;
+        this.windowMillis = windowMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.bufferSize = bufferSize;
+
+        AtomicInteger senderCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, task -> {
+            Thread thread = new Thread(task, "stock-feed-sender-" + senderCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.publisher = new Thread(this::publish, "stock-feed-publisher");
+        this.publisher.setDaemon(true);
+
+        Gauge.builder("inventory.feed.subscribers", subscribers, Set::size).register(meterRegistry);
+        this.events = meterRegistry.counter("inventory.feed.events");
+        this.snapshots = meterRegistry.counter("inventory.feed.snapshots");
+        this.dropped = meterRegistry.counter("inventory.feed.dropped");
+
+        inventoryCache.addListener(this);
+    }
+
+    @Override
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(NO_TIMEOUT);
+        Subscriber subscriber = register(new Sink() {
+            @Override
+            public void send(String name, long id, String data) throws IOException {
+                emitter.send(SseEmitter.event().name(name).id(Long.toString(id)).data(data));
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send(SseEmitter.event().comment(""));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        });
+
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(error -> remove(subscriber));
+        return emitter;
+    }
+
+    void subscribe(Sink sink) {
+        register(sink);
+    }
+
+    private Subscriber register(Sink sink) {
+        if (started.compareAndSet(false, true)) publisher.start();
+
+        Subscriber subscriber = new Subscriber(sink);
+        // registered before its snapshot is read, so no change can fall between the two
+        subscribers.add(subscriber);
+        queueSnapshot(subscriber);
+        return subscriber;
+    }
+
+    // called on the order's thread, only merges the decrements into the current window
+    @Override
+    public void committed(List<StockDecrement> decrements) {
+        if (subscribers.isEmpty()) return;
+
+        pendingLock.lock();
+        try {
+            for (StockDecrement decrement : decrements) {
+                pendingDeltas.merge(new ProductCK(decrement.productId(), decrement.location()), -decrement.quantity(), Integer::sum);
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    // the stock of evicted products is unknown here, so it is re-read and published with a delta of 0
+    @Override
+    public void evicted(Integer productId) {
+        if (subscribers.isEmpty()) return;
+
+        pendingLock.lock();
+        try {
+            if (productId == null) pendingSnapshot = true;
+            else pendingEvictions.add(productId);
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        publisher.interrupt();
+        subscribers.forEach(this::close);
+        senders.shutdown();
+    }
+
+    private void publish() {
+        long nextHeartbeat = System.currentTimeMillis() + heartbeatMillis;
+
+        while (running) {
+            try {
+                Thread.sleep(windowMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            flush();
+
+            // lets dead connections fail even when stock does not change
+            if (System.currentTimeMillis() >= nextHeartbeat) {
+                subscribers.forEach(subscriber -> offer(subscriber, HEARTBEAT));
+                nextHeartbeat = System.currentTimeMillis() + heartbeatMillis;
+            }
+        }
+    }
+
+    // only ever called by the publisher thread, or directly by tests
+    void flush() {
+        Map<ProductCK, Integer> deltas;
+        Set<Integer> evictions;
+        boolean resyncAll;
+
+        pendingLock.lock();
+        try {
+            deltas = pendingDeltas;
+            evictions = pendingEvictions;
+            resyncAll = pendingSnapshot;
+            pendingDeltas = new HashMap<>();
+            pendingEvictions = new HashSet<>();
+            pendingSnapshot = false;
+        } finally {
+            pendingLock.unlock();
+        }
+
+        if (resyncAll) {
+            subscribers.forEach(this::queueSnapshot);
+            return;
+        }
+        if (deltas.isEmpty() && evictions.isEmpty()) return;
+
+        Set<Integer> productIds = new HashSet<>(evictions);
+        deltas.keySet().forEach(productCk -> productIds.add(productCk.getId()));
+        Map<Integer, InventoryEntry> entries = inventoryCache.getAll(productIds);
+
+        List<StockChangeDTO> changes = new ArrayList<>();
+        deltas.forEach((productCk, delta) -> {
+            InventoryEntry entry = entries.get(productCk.getId());
+            int quantity = entry == null ? 0 : entry.quantityAt(productCk.getLocation());
+            changes.add(new StockChangeDTO(productCk.getId(), productCk.getLocation(), delta, quantity));
+        });
+        for (Integer productId : evictions) {
+            InventoryEntry entry = entries.get(productId);
+            if (entry == null) continue;
+            for (Location location : LOCATIONS) {
+                if (entry.isStockedAt(location) && !deltas.containsKey(new ProductCK(productId, location))) {
+                    changes.add(new StockChangeDTO(productId, location, 0, entry.quantityAt(location)));
+                }
+            }
+        }
+        changes.sort(Comparator.comparingInt(StockChangeDTO::productId).thenComparing(StockChangeDTO::location));
+
+        Event event = new Event(++sequence, toJson(changes));
+        events.increment();
+        subscribers.forEach(subscriber -> offer(subscriber, event));
+    }
+
+    private void queueSnapshot(Subscriber subscriber) {
+        // an earlier snapshot still waiting makes everything queued before this point redundant
+        subscriber.queue.clear();
+        subscriber.snapshotQueued = true;
+        subscriber.queue.offer(SNAPSHOT);
+        snapshots.increment();
+        schedule(subscriber);
+    }
+
+    private void offer(Subscriber subscriber, Object item) {
+        if (subscriber.closed) return;
+
+        if (!subscriber.queue.offer(item)) {
+            if (subscriber.snapshotQueued) {
+                // did not even keep up with its last snapshot
+                dropped.increment();
+                close(subscriber);
+                return;
+            }
+            queueSnapshot(subscriber);
+            return;
+        }
+        schedule(subscriber);
+    }
+
+    // at most one sender works on a subscriber at a time, which keeps its events in order
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.sending.compareAndSet(false, true)) return;
+
+        try {
+            senders.execute(() -> drain(subscriber));
+        } catch (RuntimeException e) {
+            subscriber.sending.set(false);
+            remove(subscriber);
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Object item;
+            while (!subscriber.closed && (item = subscriber.queue.poll()) != null) {
+                if (item == SNAPSHOT) {
+                    subscriber.snapshotQueued = false;
+                    Event snapshot = snapshot();
+                    subscriber.sink.send("snapshot", snapshot.id(), snapshot.data());
+                } else if (item == HEARTBEAT) {
+                    subscriber.sink.heartbeat();
+                } else {
+                    Event event = (Event) item;
+                    subscriber.sink.send("stock", event.id(), event.data());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // the client went away
+            remove(subscriber);
+        } finally {
+            subscriber.sending.set(false);
+        }
+
+        // an item offered after the last poll but before the flag was cleared would otherwise wait for the next one
+        if (!subscriber.closed && !subscriber.queue.isEmpty()) schedule(subscriber);
+    }
+
+    // shared by every subscriber that asks for one until stock changes again
+    private Event snapshot() {
+        long changeCount = inventoryCache.changeCount();
+        CachedSnapshot cached = snapshot;
+        if (cached != null && cached.changeCount() == changeCount) return cached.event();
+
+        List<StockChangeDTO> stock = new ArrayList<>();
+        for (Product product : inventoryCache.getAllProducts()) {
+            stock.add(new StockChangeDTO(product.getProductCk().getId(), product.getProductCk().getLocation(), 0, product.getQuantity()));
+        }
+        // the id of the last stock event, whose changes the snapshot already includes
+        cached = new CachedSnapshot(changeCount, new Event(sequence, toJson(stock)));
+        snapshot = cached;
+        return cached.event();
+    }
+
+    private void close(Subscriber subscriber) {
+        remove(subscriber);
+        // completing waits for a send in progress, which must not hold up the publisher
+        try {
+            senders.execute(subscriber.sink::close);
+        } catch (RuntimeException e) {
+            subscriber.sink.close();
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+        subscriber.queue.clear();
+    }
+
+    private String toJson(List<StockChangeDTO> changes) {
+        try {
+            return objectMapper.writeValueAsString(changes);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.dto.StockOutForecastDTO;
+import ing.assessment.service.OrderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forecasts when each product location runs out of stock from its recent demand.
+ * <p>
+ * Every {@code inventory.forecast.interval-ms} the orders placed since the last run are read in keyset chunks of
+ * the order tables and their lines are folded into an exponentially decaying count of units per product location,
+ * with a half-life of {@code inventory.forecast.half-life-hours}. The state is two numbers per product location
+ * and a checkpoint, however many orders there are. On startup the count is seeded from the orders of the last
+ * five half-lives only, older orders would weigh less than 3% together.
+ * <p>
+ * The checkpoint is the highest order id read, so it never passes an order whose row may still be committed with a
+ * lower id: one that {@link OrderWriteBehind} has not written yet, or one younger than a few seconds.
+ */
+@Component
+public class StockForecaster {
+
+    private static final Logger log = LoggerFactory.getLogger(StockForecaster.class);
+
+    private static final double DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int SEEDED_HALF_LIVES = 5;
+    // ids are taken before commit, so an order younger than this may still be followed by a lower id
+    private static final long SETTLE_MILLIS = 5_000;
+
+    private final OrderService orderService;
+    private final InventoryCache inventoryCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OrderWriteBehind orderWriteBehind;
+    private final long intervalMillis;
+    private final int batchSize;
+    private final double lowStockDays;
+    // mean lifetime of a unit in the decaying count
+    private final double decayMillis;
+    private final Date windowStart;
+
+    private final Map<ProductCK, Demand> demand = new ConcurrentHashMap<>();
+    private final Set<ProductCK> lowStock = ConcurrentHashMap.newKeySet();
+    private volatile int checkpoint;
+
+    private final Counter ordersRead;
+    private final Counter lowStockEvents;
+    private ScheduledExecutorService scheduler;
+
+    public StockForecaster(OrderService orderService,
+                           InventoryCache inventoryCache,
+                           ApplicationEventPublisher eventPublisher,
+                           OrderWriteBehind orderWriteBehind,
+                           MeterRegistry meterRegistry,
+                           @Value("${inventory.forecast.interval-ms:60000}") long intervalMillis,
+                           @Value("${inventory.forecast.half-life-hours:72}") double halfLifeHours,
+                           @Value("${inventory.forecast.low-stock-days:3}") double lowStockDays,
+                           @Value("${inventory.forecast.batch-size:500}") int batchSize) {
+        if (halfLifeHours <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("inventory.forecast.half-life-hours and batch-size must be positive");
+        }
+
+        this.orderService = orderService;
+        this.inventoryCache = inventoryCache;
+        this.eventPublisher = eventPublisher;
+        this.orderWriteBehind = orderWriteBehind;
+        this.intervalMillis = intervalMillis;
+        this.batchSize = batchSize;
+        this.lowStockDays = lowStockDays;
+
+        double halfLifeMillis = halfLifeHours * TimeUnit.HOURS.toMillis(1);
+        this.decayMillis = halfLifeMillis / Math.log(2);
+        this.windowStart = new Date(System.currentTimeMillis() - (long) (SEEDED_HALF_LIVES * halfLifeMillis));
+
+        this.ordersRead = meterRegistry.counter("inventory.forecast.orders");
+        this.lowStockEvents = meterRegistry.counter("inventory.forecast.low-stock");
+        Gauge.builder("inventory.forecast.tracked", demand, Map::size).register(meterRegistry);
+    }
+
+    // the first run waits for the data to be loaded
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (intervalMillis <= 0 || scheduler != null) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "stock-forecaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runSafely, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    public List<StockOutForecastDTO> forecast(Integer productId) {
+        return forecast(productId, System.currentTimeMillis());
+    }
+
+    // soonest stock-out first, product locations without demand last
+    List<StockOutForecastDTO> forecast(Integer productId, long now) {
+        Set<Integer> productIds = new HashSet<>();
+        for (ProductCK productCk : demand.keySet()) {
+            if (productId == null || productId.equals(productCk.getId())) productIds.add(productCk.getId());
+        }
+        Map<Integer, InventoryEntry> stock = inventoryCache.getAll(productIds);
+
+        List<StockOutForecastDTO> forecasts = new ArrayList<>();
+        demand.forEach((productCk, productDemand) -> {
+            InventoryEntry entry = stock.get(productCk.getId());
+            if (entry == null || !entry.isStockedAt(productCk.getLocation())) return;
+
+            int quantity = entry.quantityAt(productCk.getLocation());
+            double dailyDemand = dailyDemand(productDemand, now);
+            Double days = dailyDemand > 0 ? quantity / dailyDemand : null;
+            forecasts.add(new StockOutForecastDTO(productCk.getId(), productCk.getLocation(), quantity, dailyDemand, days));
+        });
+
+        forecasts.sort(Comparator.comparing(StockOutForecastDTO::daysUntilStockOut, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(StockOutForecastDTO::productId)
+                .thenComparing(StockOutForecastDTO::location));
+        return forecasts;
+    }
+
+    /**
+     * Folds the orders placed since the checkpoint into the demand, then publishes a {@link LowStockEvent} for each
+     * product location that newly runs out within {@code inventory.forecast.low-stock-days}. Returns the number of
+     * orders read.
+     */
+    synchronized int run(long now) {
+        int read = 0;
+        boolean caughtUp = false;
+        // taken before the orders are read, so an order written meanwhile is still waited for
+        int firstUnwritten = orderWriteBehind.lowestUnwrittenId().orElse(Integer.MAX_VALUE);
+
+        while (!caughtUp) {
+            List<Order> chunk = orderService.getPersistedOrdersAfter(checkpoint, windowStart, batchSize);
+            for (Order order : chunk) {
+                if (order.getId() > firstUnwritten || order.getTimestamp().getTime() > now - SETTLE_MILLIS) {
+                    caughtUp = true;
+                    break;
+                }
+
+                add(order);
+                checkpoint = order.getId();
+                read++;
+            }
+            caughtUp |= chunk.size() < batchSize;
+        }
+
+        ordersRead.increment(read);
+        publishLowStock(now);
+        return read;
+    }
+
+    int checkpoint() {
+        return checkpoint;
+    }
+
+    private void runSafely() {
+        try {
+            run(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.error("Stock forecast run failed, retrying from order {} next time", checkpoint, e);
+        }
+    }
+
+    // lines placed before their location was recorded cannot be told apart per location and are skipped
+    private void add(Order order) {
+        long at = order.getTimestamp().getTime();
+        for (OrderProduct line : order.getOrderProducts()) {
+            if (line.getLocation() == null) continue;
+
+            ProductCK productCk = new ProductCK(line.getProductId(), line.getLocation());
+            demand.compute(productCk, (key, current) -> (current == null ? Demand.NONE : current).add(at, line.getQuantity(), decayMillis));
+        }
+    }
+
+    private void publishLowStock(long now) {
+        for (StockOutForecastDTO forecast : forecast(null, now)) {
+            ProductCK productCk = new ProductCK(forecast.productId(), forecast.location());
+            Double days = forecast.daysUntilStockOut();
+
+            if (days == null || days > lowStockDays) {
+                lowStock.remove(productCk);
+            } else if (lowStock.add(productCk)) {
+                lowStockEvents.increment();
+                log.warn("Product {} at {} runs out in {} days, {} left at {} a day",
+                        forecast.productId(), forecast.location(), String.format("%.1f", days), forecast.quantity(),
+                        String.format("%.1f", forecast.dailyDemand()));
+                eventPublisher.publishEvent(new LowStockEvent(productCk, forecast.quantity(), forecast.dailyDemand(), days));
+            }
+        }
+    }
+
+    // the decaying count divided by the decayed length of the window it was counted over, in units per day
+    private double dailyDemand(Demand productDemand, long now) {
+        double window = decayMillis * (1 - Math.exp(-Math.max(now - windowStart.getTime(), 1) / decayMillis));
+        return productDemand.unitsAt(now, decayMillis) / window * DAY_MILLIS;
+    }
+
+    /**
+     * Units sold, each weighted by {@code exp(-age / decayMillis)} as of {@code asOf}. Immutable, so forecasts
+     * read it while a run replaces it.
+     */
+    private record Demand(double units, long asOf) {
+
+        static final Demand NONE = new Demand(0, Long.MIN_VALUE);
+
+        Demand add(long at, int quantity, double decayMillis) {
+            if (asOf == Long.MIN_VALUE) return new Demand(quantity, at);
+            if (at >= asOf) return new Demand(unitsAt(at, decayMillis) + quantity, at);
+
+            return new Demand(units + quantity * Math.exp((at - asOf) / decayMillis), asOf);
+        }
+
+        double unitsAt(long time, double decayMillis) {
+            return time <= asOf ? units : units * Math.exp((asOf - time) / decayMillis);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.exception.OutOfStockException;
+import ing.assessment.exception.ProductNotFoundException;
+import ing.assessment.model.Location;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Serializes stock changes per product location instead of behind one global lock. A reservation takes the
+ * lock stripes of every location of every product in the basket, in ascending order so overlapping baskets
+ * cannot deadlock, and holds them until its transaction has committed or rolled back as a whole.
+ */
+@Component
+public class StockReservationEngine {
+
+    private final ReentrantLock[] stripes;
+    private final TransactionTemplate transactionTemplate;
+
+    public StockReservationEngine(PlatformTransactionManager transactionManager,
+                                  @Value("${orders.reservation.lock-stripes:64}") int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("orders.reservation.lock-stripes must be positive, was: " + stripeCount);
+        }
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T reserve(Collection<Integer> productIds, Reservation<T> reservation)
+            throws ProductNotFoundException, OutOfStockException {
+        return reserve(productIds, reservation, result -> {});
+    }
+
+    // afterCommit runs once the transaction has committed, while the stripes are still held
+    public <T> T reserve(Collection<Integer> productIds, Reservation<T> reservation, Consumer<T> afterCommit)
+            throws ProductNotFoundException, OutOfStockException {
+        int[] heldStripes = stripesFor(productIds);
+
+        for (int stripe : heldStripes) {
+            stripes[stripe].lock();
+        }
+        try {
+            T result = inTransaction(reservation);
+            afterCommit.accept(result);
+            return result;
+        } finally {
+            for (int i = heldStripes.length - 1; i >= 0; i--) {
+                stripes[heldStripes[i]].unlock();
+            }
+        }
+    }
+
+    // without any stripes, for callers that have already made sure no other writer reserved the same stock
+    public <T> T inTransaction(Reservation<T> reservation) throws ProductNotFoundException, OutOfStockException {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return reservation.execute();
+                } catch (ProductNotFoundException | OutOfStockException e) {
+                    // unchecked so the template rolls the basket back, unwrapped again below
+                    throw new RejectedReservation(e);
+                }
+            });
+        } catch (RejectedReservation rejected) {
+            if (rejected.getCause() instanceof ProductNotFoundException notFound) throw notFound;
+            throw (OutOfStockException) rejected.getCause();
+        }
+    }
+
+    // distinct stripe indexes of every (productId, location) pair, sorted to give a global lock order
+    int[] stripesFor(Collection<Integer> productIds) {
+        Location[] locations = Location.values();
+        int[] indexes = new int[productIds.size() * locations.length];
+
+        int i = 0;
+        for (Integer productId : productIds) {
+            for (Location location : locations) {
+                indexes[i++] = stripeOf(productId, location);
+            }
+        }
+
+        return Arrays.stream(indexes).sorted().distinct().toArray();
+    }
+
+    private int stripeOf(int productId, Location location) {
+        int hash = productId * 31 + location.ordinal();
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash * 0x9E3779B9, stripes.length);
+    }
+
+    @FunctionalInterface
+    public interface Reservation<T> {
+        T execute() throws ProductNotFoundException, OutOfStockException;
+    }
+
+    private static final class RejectedReservation extends RuntimeException {
+        RejectedReservation(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.model.Location;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The available stock of one location, see {@link LocationShards}. Every change runs on the shard's own writer
+ * thread, one at a time and in submission order, so the shard needs no locks. Other threads only read
+ * {@link #available}, which may trail the writer by the changes still queued.
+ */
+final class WarehouseShard {
+
+    private final Location location;
+    private final ThreadPoolExecutor writer;
+
+    // stock less what is held, per product id; written by the writer thread only
+    private final Map<Integer, Integer> available = new ConcurrentHashMap<>();
+    // the lines each reservation holds until it is committed or aborted; writer thread only
+    private final Map<Long, List<StockDecrement>> held = new HashMap<>();
+
+    WarehouseShard(Location location) {
+        this.location = location;
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "warehouse-" + location.name().toLowerCase());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    Location location() {
+        return location;
+    }
+
+    // null for a product the shard has not been seeded with
+    Integer available(int productId) {
+        return available.get(productId);
+    }
+
+    /**
+     * Holds every line if the shard has all of them available, or none. {@code seeds} is the stock of each line's
+     * product for a shard that has not seen it yet, as the caller last read it from the inventory cache.
+     */
+    CompletableFuture<Boolean> prepare(long reservationId, List<StockDecrement> lines, int[] seeds) {
+        return CompletableFuture.supplyAsync(() -> {
+            for (int i = 0; i < lines.size(); i++) {
+                StockDecrement line = lines.get(i);
+                Integer stock = available.putIfAbsent(line.productId(), seeds[i]);
+                if ((stock == null ? seeds[i] : stock) < line.quantity()) return false;
+            }
+
+            for (StockDecrement line : lines) {
+                available.compute(line.productId(), (productId, stock) -> stock - line.quantity());
+            }
+            held.put(reservationId, lines);
+            return true;
+        }, writer);
+    }
+
+    // the held units stay taken, the database now has them decremented
+    void commit(long reservationId) {
+        writer.execute(() -> held.remove(reservationId));
+    }
+
+    CompletableFuture<Void> abort(long reservationId) {
+        return CompletableFuture.runAsync(() -> {
+            List<StockDecrement> lines = held.remove(reservationId);
+            if (lines == null) return;
+
+            for (StockDecrement line : lines) {
+                available.computeIfPresent(line.productId(), (productId, stock) -> stock + line.quantity());
+            }
+        }, writer);
+    }
+
+    /**
+     * Drops a product, or every product for null, so it is seeded again from the inventory cache. Its lines are
+     * also dropped from the open holds: an abort must not hand back units to stock that was seeded after them.
+     */
+    void forget(Integer productId) {
+        writer.execute(() -> {
+            if (productId == null) {
+                available.clear();
+                held.replaceAll((reservationId, lines) -> List.of());
+            } else {
+                available.remove(productId);
+                held.replaceAll((reservationId, lines) -> lines.stream()
+                        .filter(line -> line.productId() != productId)
+                        .toList());
+            }
+        });
+    }
+
+    int queued() {
+        return writer.getQueue().size();
+    }
+
+    void shutdown() {
+        writer.shutdown();
+    }
+}
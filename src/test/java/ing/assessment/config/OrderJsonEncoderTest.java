@@ -0,0 +1,68 @@
+package ing.assessment.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.model.Location;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderJsonEncoderTest {
+
+    // what Spring Boot configures
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Test
+    void test_Encode_SameJsonAsJackson() throws Exception {
+        Order order = new Order(42, new Date(1_709_285_400_000L), List.of(
+                new OrderProduct(1, 2, "Shoes", 80_000, Location.MUNICH),
+                new OrderProduct(7, 1, "Café \"bar\" \\ € 😀 tab\t new\nline \u0001 \u007f", 1_999, null),
+                new OrderProduct(null, null, null, 10, Location.COLOGNE)
+        ), 82_009, 3_990, 0, 4, null, null);
+
+        assertJackson(order);
+        assertJackson(new Order());
+        assertJackson(new Order(1, new Date(-1), new ArrayList<>(), -250, 0, null, null, null, null));
+        // Double.toString switches to E notation from 10^7 on
+        assertJackson(new Order(2, new Date(253_402_300_799_999L), List.of(), 1_000_000_000L, 999_999_999L, 30, 2, null, null));
+        assertJackson(new Order(3, new Date(-62_198_755_200_000L), List.of(), 123_456_789_012L, 1, 30, 2, null, null));
+    }
+
+    @Test
+    void test_Encode_AmountsAndDatesMatchJackson() throws Exception {
+        Random random = new Random(7);
+        for (int i = 0; i < 15_000; i++) {
+            long cents = i < 10_000 ? i : random.nextLong(2_000_000_000L) - 1_000_000_000L;
+            Date timestamp = new Date(random.nextLong(4_102_444_800_000L) - 2_208_988_800_000L);
+            assertJackson(new Order(i, timestamp, List.of(new OrderProduct(i, 1, "x", cents, null)), cents, -cents, 30, 2, null, null));
+        }
+    }
+
+    @Test
+    void test_Write_CopiesTheEncodedBytes() throws Exception {
+        List<OrderProduct> lines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) lines.add(new OrderProduct(i, 3, "Product " + i, 1_234_567, Location.FRANKFURT));
+        Order order = new Order(9, new Date(), lines, 617_283_500, 0, 0, 2, null, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OrderJsonEncoder.write(order, out);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(order), out.toByteArray());
+        assertArrayEquals(out.toByteArray(), OrderJsonEncoder.encode(order));
+    }
+
+    private void assertJackson(Order order) throws Exception {
+        assertEquals(objectMapper.writeValueAsString(order), new String(OrderJsonEncoder.encode(order), "UTF-8"));
+    }
+}
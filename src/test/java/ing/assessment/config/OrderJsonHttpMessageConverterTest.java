@@ -0,0 +1,62 @@
+package ing.assessment.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderJsonHttpMessageConverterTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void test_Write_RepeatedOrderServedFromEncodedBytes() throws Exception {
+        OrderJsonHttpMessageConverter converter = new OrderJsonHttpMessageConverter(objectMapper, meterRegistry, true, 1);
+        Order first = order(1);
+
+        String json = write(converter, first);
+        assertEquals(objectMapper.writeValueAsString(first), json);
+        assertEquals(json, write(converter, first));
+        assertEquals(1.0, meterRegistry.get("orders.json.cache.hits").counter().count());
+
+        // only the latest order is kept
+        write(converter, order(2));
+        write(converter, first);
+        assertEquals(1.0, meterRegistry.get("orders.json.cache.hits").counter().count());
+        assertEquals(1.0, meterRegistry.get("orders.json.cache.size").gauge().value());
+    }
+
+    @Test
+    void test_CanWrite_LeavesOrdersToJacksonUnlessItsDefaultsAreUsed() {
+        ObjectMapper timestamps = Jackson2ObjectMapperBuilder.json().build();
+
+        assertTrue(new OrderJsonHttpMessageConverter(objectMapper, meterRegistry, true, 10).canWrite(Order.class, MediaType.APPLICATION_JSON));
+        assertFalse(new OrderJsonHttpMessageConverter(objectMapper, meterRegistry, false, 10).canWrite(Order.class, MediaType.APPLICATION_JSON));
+        assertFalse(new OrderJsonHttpMessageConverter(timestamps, meterRegistry, true, 10).canWrite(Order.class, MediaType.APPLICATION_JSON));
+        assertFalse(new OrderJsonHttpMessageConverter(objectMapper, meterRegistry, true, 10).canRead(Order.class, MediaType.APPLICATION_JSON));
+    }
+
+    private static String write(OrderJsonHttpMessageConverter converter, Order order) throws Exception {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(order, MediaType.APPLICATION_JSON, message);
+        assertEquals(MediaType.APPLICATION_JSON, message.getHeaders().getContentType());
+        return message.getBodyAsString();
+    }
+
+    private static Order order(int id) {
+        return new Order(id, new Date(), List.of(new OrderProduct(1, 2, "Shoes", 80_000, null)), 80_000, 0, 0, 2, null, null);
+    }
+}
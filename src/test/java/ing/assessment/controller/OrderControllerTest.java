@@ -1,7 +1,11 @@
 package ing.assessment.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import ing.assessment.db.order.Order;
+import ing.assessment.dto.BulkOrderResultDTO;
+import ing.assessment.dto.OrderPageDTO;
 import ing.assessment.exception.*;
+import ing.assessment.model.ReadConsistency;
 import ing.assessment.service.OrderService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,11 +15,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -43,13 +50,23 @@ class OrderControllerTest {
 
     @Test
     void test_PlaceOrder_ValidRequest_ReturnsCreated() throws Exception {
-        when(orderService.placeOrder(any())).thenReturn(mockOrder);
+        when(orderService.placeOrder(any(), any())).thenReturn(mockOrder);
 
-        ResponseEntity<?> response = orderController.placeOrder(validOrderRequest);
+        ResponseEntity<?> response = orderController.placeOrder(validOrderRequest, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(mockOrder, response.getBody());
-        verify(orderService).placeOrder(validOrderRequest);
+        verify(orderService).placeOrder(validOrderRequest, null);
+    }
+
+    @Test
+    void test_PlaceOrder_PassesIdempotencyKeyOn() throws Exception {
+        when(orderService.placeOrder(validOrderRequest, "retry-1")).thenReturn(mockOrder);
+
+        ResponseEntity<?> response = orderController.placeOrder(validOrderRequest, "retry-1");
+
+        assertEquals(mockOrder, response.getBody());
+        verify(orderService).placeOrder(validOrderRequest, "retry-1");
     }
 
     @Test
@@ -58,12 +75,12 @@ class OrderControllerTest {
 
         InvalidOrderException exception = assertThrows(
                 InvalidOrderException.class,
-                () -> orderController.placeOrder(emptyOrder)
+                () -> orderController.placeOrder(emptyOrder, null)
         );
 
         assertEquals("Invalid request, must provide productIds and positive quantities",
                 exception.getMessage());
-        verify(orderService, never()).placeOrder(any());
+        verify(orderService, never()).placeOrder(any(), any());
     }
 
     @Test
@@ -73,41 +90,67 @@ class OrderControllerTest {
 
         InvalidOrderException exception = assertThrows(
                 InvalidOrderException.class,
-                () -> orderController.placeOrder(invalidOrder)
+                () -> orderController.placeOrder(invalidOrder, null)
         );
 
         assertEquals("Invalid request, must provide productIds and positive quantities",
                 exception.getMessage());
-        verify(orderService, never()).placeOrder(any());
+        verify(orderService, never()).placeOrder(any(), any());
     }
 
     @Test
     void test_PlaceOrder_ProductNotFound_PropagatesException() throws Exception {
-        when(orderService.placeOrder(any()))
+        when(orderService.placeOrder(any(), any()))
                 .thenThrow(new ProductNotFoundException("Product not found"));
 
         assertThrows(
                 ProductNotFoundException.class,
-                () -> orderController.placeOrder(validOrderRequest)
+                () -> orderController.placeOrder(validOrderRequest, null)
         );
     }
 
     @Test
     void test_PlaceOrder_OutOfStock_PropagatesException() throws Exception {
-        when(orderService.placeOrder(any()))
+        when(orderService.placeOrder(any(), any()))
                 .thenThrow(new OutOfStockException("Out of stock"));
 
         assertThrows(
                 OutOfStockException.class,
-                () -> orderController.placeOrder(validOrderRequest)
+                () -> orderController.placeOrder(validOrderRequest, null)
+        );
+    }
+
+    @Test
+    void test_PlaceOrders_ReturnsResultPerOrder() throws InvalidOrderException {
+        List<Map<Integer, Integer>> baskets = Arrays.asList(validOrderRequest, validOrderRequest);
+        List<BulkOrderResultDTO> results = Arrays.asList(
+                BulkOrderResultDTO.placed(0, mockOrder),
+                BulkOrderResultDTO.failed(1, new OutOfStockException("Out of stock"))
+        );
+        when(orderService.placeOrders(baskets)).thenReturn(results);
+
+        ResponseEntity<List<BulkOrderResultDTO>> response = orderController.placeOrders(baskets);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(results, response.getBody());
+    }
+
+    @Test
+    void test_PlaceOrders_EmptyBatch_ThrowsInvalidOrderException() {
+        InvalidOrderException exception = assertThrows(
+                InvalidOrderException.class,
+                () -> orderController.placeOrders(Collections.emptyList())
         );
+
+        assertEquals("Invalid request, must provide between 1 and 10000 orders", exception.getMessage());
+        verify(orderService, never()).placeOrders(any());
     }
 
     @Test
-    void test_GetOrder_ExistingOrder_ReturnsOrder() throws OrderNotFoundException {
-        when(orderService.getOrderById(1)).thenReturn(Optional.of(mockOrder));
+    void test_GetOrder_ExistingOrder_ReturnsOrder() throws OrderNotFoundException, InvalidOrderException {
+        when(orderService.getOrderById(1, ReadConsistency.EVENTUAL)).thenReturn(Optional.of(mockOrder));
 
-        ResponseEntity<?> response = orderController.getOrder(1);
+        ResponseEntity<?> response = orderController.getOrder(1, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(mockOrder, response.getBody());
@@ -115,35 +158,82 @@ class OrderControllerTest {
 
     @Test
     void test_GetOrder_NonExistingOrder_ThrowsNotFoundException() {
-        when(orderService.getOrderById(99)).thenReturn(Optional.empty());
+        when(orderService.getOrderById(99, ReadConsistency.EVENTUAL)).thenReturn(Optional.empty());
 
         OrderNotFoundException exception = assertThrows(
                 OrderNotFoundException.class,
-                () -> orderController.getOrder(99)
+                () -> orderController.getOrder(99, null)
         );
 
         assertEquals("Order with id: 99 not found", exception.getMessage());
     }
 
     @Test
-    void test_GetAllOrders_ReturnsOrderList() {
+    void test_GetOrder_ReadConsistencyHeader_IsPassedOnOrRejected() throws OrderNotFoundException, InvalidOrderException {
+        when(orderService.getOrderById(1, ReadConsistency.READ_YOUR_WRITES)).thenReturn(Optional.of(mockOrder));
+
+        assertEquals(mockOrder, orderController.getOrder(1, "Read-Your-Writes").getBody());
+
+        InvalidOrderException exception = assertThrows(
+                InvalidOrderException.class,
+                () -> orderController.getOrder(1, "strong")
+        );
+        assertEquals("Invalid request, Read-Consistency must be eventual or read-your-writes", exception.getMessage());
+    }
+
+    @Test
+    void test_GetAllOrders_ReturnsOrderList() throws InvalidOrderException {
         List<Order> orders = Arrays.asList(mockOrder, new Order());
-        when(orderService.getAllOrders()).thenReturn(orders);
+        when(orderService.getAllOrders(ReadConsistency.EVENTUAL)).thenReturn(orders);
 
-        ResponseEntity<List<Order>> response = orderController.getAllOrders();
+        ResponseEntity<List<Order>> response = orderController.getAllOrders(null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(2, Objects.requireNonNull(response.getBody()).size());
-        verify(orderService).getAllOrders();
+        verify(orderService).getAllOrders(ReadConsistency.EVENTUAL);
     }
 
     @Test
-    void test_GetAllOrders_EmptyList_ReturnsEmptyList() {
-        when(orderService.getAllOrders()).thenReturn(Collections.emptyList());
+    void test_GetAllOrders_EmptyList_ReturnsEmptyList() throws InvalidOrderException {
+        when(orderService.getAllOrders(ReadConsistency.EVENTUAL)).thenReturn(Collections.emptyList());
 
-        ResponseEntity<List<Order>> response = orderController.getAllOrders();
+        ResponseEntity<List<Order>> response = orderController.getAllOrders(null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertTrue(Objects.requireNonNull(response.getBody()).isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void test_GetOrdersPage_ReturnsPageFromService() throws InvalidOrderException {
+        OrderPageDTO page = new OrderPageDTO(Collections.singletonList(mockOrder), 1);
+        when(orderService.getOrders(null, null, null, 1, ReadConsistency.EVENTUAL)).thenReturn(page);
+
+        ResponseEntity<OrderPageDTO> response = orderController.getOrdersPage(1, null, null, null, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
+    }
+
+    @Test
+    void test_GetOrdersPage_LimitTooLarge_ThrowsInvalidOrderException() {
+        InvalidOrderException exception = assertThrows(
+                InvalidOrderException.class,
+                () -> orderController.getOrdersPage(1001, null, null, null, null)
+        );
+
+        assertEquals("Invalid request, limit must be between 1 and 1000", exception.getMessage());
+        verify(orderService, never()).getOrders(any(), any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void test_StreamAllOrders_IsExemptFromTheAsyncTimeout() {
+        // runs the export on the calling thread, the emitter keeps what is sent before the response starts
+        OrderController streamingController = new OrderController(orderService, new ObjectMapper(), Runnable::run);
+
+        ResponseEntity<ResponseBodyEmitter> response = streamingController.streamAllOrders(null, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(-1L, Objects.requireNonNull(response.getBody()).getTimeout());
+        verify(orderService).forEachOrder(isNull(), isNull(), any());
+    }
+}
@@ -0,0 +1,102 @@
+package ing.assessment.controller;
+
+import ing.assessment.dto.CatalogueJsonDTO;
+import ing.assessment.exception.ProductNotFoundException;
+import ing.assessment.service.ProductService;
+import ing.assessment.service.StockFeedService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductControllerTest {
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private StockFeedService stockFeedService;
+
+    @InjectMocks
+    private ProductController productController;
+
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        request = new MockHttpServletRequest("GET", "/products");
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    void test_GetAllProducts_MatchingETag_ReturnsNotModifiedWithoutReadingProducts() {
+        when(productService.getCatalogueETag()).thenReturn("\"a-1\"");
+        request.addHeader("If-None-Match", "\"a-1\"");
+
+        ResponseEntity<byte[]> result = productController.getAllProducts(new ServletWebRequest(request, response));
+
+        assertNull(result);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        assertEquals("\"a-1\"", response.getHeader("ETag"));
+        verify(productService, never()).getAllProductsJson();
+    }
+
+    @Test
+    void test_GetAllProducts_StaleETag_ReturnsCachedJson() {
+        when(productService.getCatalogueETag()).thenReturn("\"a-1\"");
+        request.addHeader("If-None-Match", "\"a-0\"");
+        byte[] json = "[]".getBytes();
+        when(productService.getAllProductsJson()).thenReturn(new CatalogueJsonDTO("\"a-1\"", json));
+
+        ResponseEntity<byte[]> result = productController.getAllProducts(new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals("\"a-1\"", result.getHeaders().getETag());
+        assertEquals(MediaType.APPLICATION_JSON, result.getHeaders().getContentType());
+        assertSame(json, result.getBody());
+    }
+
+    @Test
+    void test_GetProduct_UnknownId_ThrowsProductNotFound() {
+        when(productService.getProductJson(99)).thenReturn(Optional.empty());
+
+        assertThrows(ProductNotFoundException.class,
+                () -> productController.getProduct(99, new ServletWebRequest(request, response)));
+    }
+
+    @Test
+    void test_GetProduct_UnknownIdWithMatchingETag_ThrowsProductNotFound() {
+        request.addHeader("If-None-Match", "\"a-1\"");
+        when(productService.getProductJson(99)).thenReturn(Optional.empty());
+
+        assertThrows(ProductNotFoundException.class,
+                () -> productController.getProduct(99, new ServletWebRequest(request, response)));
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+    }
+
+    @Test
+    void test_GetProduct_MatchingETag_ReturnsNotModified() throws ProductNotFoundException {
+        request.addHeader("If-None-Match", "\"a-1\"");
+        when(productService.getProductJson(1)).thenReturn(Optional.of(new CatalogueJsonDTO("\"a-1\"", "{}".getBytes())));
+
+        ResponseEntity<byte[]> result = productController.getProduct(1, new ServletWebRequest(request, response));
+
+        assertNull(result);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+    }
+}
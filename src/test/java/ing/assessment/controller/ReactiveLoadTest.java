@@ -0,0 +1,145 @@
+package ing.assessment.controller;
+
+import ing.assessment.INGAssessment;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.h2.tools.Server;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// starts the application on a small Tomcat pool and drives the same mix through the blocking endpoints and their
+// /reactive variants: slow order queries against a database behind TCP, and product reads served from memory.
+// Only the thread usage is asserted, LoadHarness compares the latencies (see the README)
+class ReactiveLoadTest {
+
+    private static final int REQUEST_THREADS = 4;
+    private static final int BRIDGE_THREADS = 4;
+    private static final int CLIENTS = 32;
+    private static final int REQUESTS_PER_CLIENT = 40;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void test_RequestsInProgress_BlockingVersusReactive(boolean reactive) throws Exception {
+        Server database = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(INGAssessment.class, RequestsInProgress.class)
+                .run("--server.port=0",
+                        "--server.tomcat.threads.max=" + REQUEST_THREADS,
+                        "--reactive.bridge.threads=" + BRIDGE_THREADS,
+                        "--spring.datasource.url=jdbc:h2:tcp://localhost:" + database.getPort() + "/mem:reactive-" + reactive,
+                        "--spring.sql.init.mode=always",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.org.hibernate.SQL=WARN")) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + (reactive ? "/reactive" : "");
+            RequestsInProgress inProgress = context.getBean(RequestsInProgress.class);
+            HttpClient client = HttpClient.newHttpClient();
+
+            for (int i = 0; i < 20; i++) {
+                send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/orders/place"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"1\": 1, \"2\": 1}"))
+                        .build());
+            }
+            send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/products/1")).GET().build());
+            inProgress.reset();
+
+            run(client, baseUrl);
+
+            // a blocking request holds its Tomcat thread until it is answered, a reactive one only until it is handed off
+            if (reactive) {
+                assertTrue(inProgress.max() > REQUEST_THREADS);
+            } else {
+                assertTrue(inProgress.max() <= REQUEST_THREADS);
+            }
+
+            // however many requests are waiting, the blocking work never runs on more than the bridge's threads
+            long bridgeThreads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("blocking-bridge"))
+                    .count();
+            assertTrue(bridgeThreads <= BRIDGE_THREADS, "bridge threads: " + bridgeThreads);
+        } finally {
+            database.stop();
+        }
+    }
+
+    // every client alternates a page of orders, which queries the database, with a product read
+    private void run(HttpClient client, String baseUrl) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Callable<Void>> clients = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(() -> {
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        String path = r % 2 == 0 ? "/orders/all?limit=20" : "/products/1";
+                        send(client, HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build());
+                    }
+                    return null;
+                });
+            }
+
+            for (Future<Void> future : executor.invokeAll(clients)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+    }
+
+    // counts requests from their arrival until their response is complete, also across an asynchronous dispatch
+    static class RequestsInProgress implements WebMvcConfigurer, AsyncHandlerInterceptor {
+
+        private final AtomicInteger current = new AtomicInteger();
+        private final AtomicInteger max = new AtomicInteger();
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry) {
+            registry.addInterceptor(this);
+        }
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            if (request.getDispatcherType() == DispatcherType.REQUEST) {
+                max.accumulateAndGet(current.incrementAndGet(), Math::max);
+            }
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            current.decrementAndGet();
+        }
+
+        int max() {
+            return max.get();
+        }
+
+        void reset() {
+            max.set(current.get());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ing.assessment.controller;
+
+import ing.assessment.INGAssessment;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// starts the application twice, on Tomcat's platform-thread pool and on virtual threads, and drives the same
+// blocking JPA-backed reads through both to compare how many requests are in flight at once and their latency.
+// The build targets JDK 17, so this only runs when the tests are started on JDK 21 or newer
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadLoadTest.class);
+
+    private static final int PLATFORM_THREADS = 8;
+    private static final int CLIENTS = 64;
+    private static final int REQUESTS_PER_CLIENT = 50;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void test_RequestConcurrency_PlatformVersusVirtualThreads(boolean virtualThreads) throws Exception {
+        // a TCP connection makes every repository call a real blocking network round trip, like a remote database
+        Server database = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(INGAssessment.class, InFlightRequests.class)
+                .run("--server.port=0",
+                        "--server.tomcat.threads.max=" + PLATFORM_THREADS,
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.datasource.url=jdbc:h2:tcp://localhost:" + database.getPort() + "/mem:load-" + virtualThreads,
+                        "--spring.sql.init.mode=always",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.org.hibernate.SQL=WARN")) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            InFlightRequests inFlight = context.getBean(InFlightRequests.class);
+            HttpClient client = HttpClient.newHttpClient();
+
+            send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/orders/place"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"1\": 1}"))
+                    .build());
+            inFlight.reset();
+
+            long start = System.nanoTime();
+            long[] latencies = run(client, baseUrl);
+            long elapsedNanos = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            // the latencies are reported for comparison only, on a shared machine they are too noisy to assert
+            log.info("virtualThreads={} maxInFlight={} requests/s={} p50={}ms p95={}ms p99={}ms max={}ms",
+                    virtualThreads, inFlight.max(), latencies.length * 1_000_000_000L / elapsedNanos,
+                    percentileMillis(latencies, 50), percentileMillis(latencies, 95),
+                    percentileMillis(latencies, 99), percentileMillis(latencies, 100));
+
+            // the platform pool caps concurrent handlers at its size, virtual threads take every waiting request
+            if (virtualThreads) {
+                assertTrue(inFlight.max() > PLATFORM_THREADS);
+            } else {
+                assertTrue(inFlight.max() <= PLATFORM_THREADS);
+            }
+        } finally {
+            database.stop();
+        }
+    }
+
+    private long[] run(HttpClient client, String baseUrl) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Callable<long[]>> clients = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(() -> {
+                    long[] latencies = new long[REQUESTS_PER_CLIENT];
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        String path = r % 2 == 0 ? "/orders/1" : "/orders/all?limit=20";
+                        long start = System.nanoTime();
+                        send(client, HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build());
+                        latencies[r] = System.nanoTime() - start;
+                    }
+                    return latencies;
+                });
+            }
+
+            long[] all = new long[CLIENTS * REQUESTS_PER_CLIENT];
+            int offset = 0;
+            for (Future<long[]> future : executor.invokeAll(clients)) {
+                long[] latencies = future.get();
+                System.arraycopy(latencies, 0, all, offset, latencies.length);
+                offset += latencies.length;
+            }
+            return all;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+    }
+
+    private static String percentileMillis(long[] sortedNanos, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return String.format("%.2f", sortedNanos[Math.max(index, 0)] / 1_000_000.0);
+    }
+
+    // counts handlers that are executing right now, registered directly as a source so component scanning skips it
+    static class InFlightRequests implements WebMvcConfigurer, HandlerInterceptor {
+
+        private final AtomicInteger current = new AtomicInteger();
+        private final AtomicInteger max = new AtomicInteger();
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry) {
+            registry.addInterceptor(this);
+        }
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            max.accumulateAndGet(current.incrementAndGet(), Math::max);
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            current.decrementAndGet();
+        }
+
+        int max() {
+            return max.get();
+        }
+
+        void reset() {
+            max.set(current.get());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ing.assessment.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void test_Cents_AddUpWithoutDrift() {
+        long cents = 0;
+        double amount = 0;
+        for (int i = 0; i < 1_000; i++) {
+            cents += Money.toCents(0.1);
+            amount += 0.1;
+        }
+
+        assertEquals(100.0, Money.toAmount(cents));
+        assertNotEquals(100.0, amount);
+    }
+
+    @Test
+    void test_Fraction_RoundsHalfACentAwayFromZero() {
+        assertEquals(5, Money.fraction(50, 1_000));
+        assertEquals(1, Money.fraction(5, 1_000));
+        assertEquals(0, Money.fraction(4, 1_000));
+        assertEquals(-1, Money.fraction(-5, 1_000));
+        assertEquals(1_999, Money.fraction(19_990, 1_000));
+    }
+}
@@ -0,0 +1,85 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllocationStrategyTest {
+
+    // products 0..5, one unit each: location 0 holds 0-3, location 1 holds 0, 2, 4 and location 2 holds 1, 3, 5
+    private static final int[][] SET_COVER_STOCK = {
+            {1, 1, 0},
+            {1, 0, 1},
+            {1, 1, 0},
+            {1, 0, 1},
+            {0, 1, 0},
+            {0, 0, 1}
+    };
+    private static final int[] SET_COVER_DEMAND = {1, 1, 1, 1, 1, 1};
+
+    private final AllocationStrategy locationOrder = new LocationOrderAllocationStrategy();
+    private final AllocationStrategy greedy = new GreedyAllocationStrategy();
+    private final AllocationStrategy exact = new ExactAllocationStrategy();
+
+    @Test
+    void test_Allocate_ShipsFromTheOneLocationThatHoldsTheWholeBasket() {
+        Map<Integer, InventoryEntry> inventory = Map.of(
+                1, entry(1, 5, 20, 0),
+                2, entry(2, 5, 20, 20)
+        );
+        Map<Integer, Integer> basket = new LinkedHashMap<>();
+        basket.put(1, 10);
+        basket.put(2, 10);
+
+        // filling in location order takes what MUNICH has first and tops it up from COLOGNE
+        assertEquals(4, locationOrder.allocate(basket, inventory).size());
+
+        List<StockDecrement> expected = Arrays.asList(
+                new StockDecrement(1, Location.COLOGNE, 10),
+                new StockDecrement(2, Location.COLOGNE, 10)
+        );
+        assertEquals(expected, greedy.allocate(basket, inventory));
+        assertEquals(expected, exact.allocate(basket, inventory));
+    }
+
+    @Test
+    void test_ChooseLocations_ExactFindsSmallerCoverThanGreedy() {
+        // greedy takes location 0 for its four units and still needs both others for products 4 and 5
+        assertEquals(0b111, greedy.chooseLocations(SET_COVER_STOCK, SET_COVER_DEMAND));
+        assertEquals(0b110, exact.chooseLocations(SET_COVER_STOCK, SET_COVER_DEMAND));
+    }
+
+    @Test
+    void test_ChooseLocations_SplitsAProductWhenNoSingleLocationHasEnough() {
+        int[][] stock = {{50, 50, 50}};
+
+        assertEquals(0b011, exact.chooseLocations(stock, new int[]{60}));
+        assertEquals(0b111, exact.chooseLocations(stock, new int[]{150}));
+    }
+
+    @Test
+    void test_ChooseLocations_ManyLocations_ExactFallsBackToGreedy() {
+        int locations = ExactAllocationStrategy.MAX_LOCATIONS + 1;
+        int[][] stock = new int[1][locations];
+        stock[0][locations - 1] = 5;
+
+        assertEquals(1 << (locations - 1), exact.chooseLocations(stock, new int[]{5}));
+    }
+
+    private static InventoryEntry entry(int productId, int... quantities) {
+        Location[] locations = Location.values();
+        Product[] products = new Product[locations.length];
+        for (Location location : locations) {
+            products[location.ordinal()] = new Product(new ProductCK(productId, location), "Product " + productId, 1000, quantities[location.ordinal()]);
+        }
+        return InventoryEntry.from(Arrays.asList(products));
+    }
+}
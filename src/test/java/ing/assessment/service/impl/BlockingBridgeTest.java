@@ -0,0 +1,68 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.exception.BridgeOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockingBridgeTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BlockingBridge blockingBridge;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // one thread with room for one queued call
+        blockingBridge = new BlockingBridge(meterRegistry, 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        blockingBridge.shutdown();
+    }
+
+    @Test
+    void test_Call_RunsOffTheCallingThread() {
+        String thread = blockingBridge.call(() -> Thread.currentThread().getName()).block();
+
+        assertNotNull(thread);
+        assertTrue(thread.startsWith("blocking-bridge"), thread);
+        assertNull(blockingBridge.call(() -> null).block());
+    }
+
+    @Test
+    void test_Call_BridgeFull_FailsAtOnce() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        blockingBridge.call(() -> {
+            running.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        }).subscribe();
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        blockingBridge.call(() -> "queued").subscribe();
+
+        assertThrows(BridgeOverloadedException.class, () -> blockingBridge.call(() -> "refused").block());
+        assertEquals(1, blockingBridge.active());
+        assertEquals(1, meterRegistry.counter("reactive.bridge.rejected").count());
+
+        release.countDown();
+    }
+
+    @Test
+    void test_Call_CallItselfRejected_IsNotReportedAsOverloaded() {
+        RejectedExecutionException thrown = assertThrows(RejectedExecutionException.class, () -> blockingBridge.call(() -> {
+            throw new RejectedExecutionException("some other executor is full");
+        }).block());
+
+        assertEquals("some other executor is full", thrown.getMessage());
+        assertEquals(0, meterRegistry.counter("reactive.bridge.rejected").count());
+    }
+}
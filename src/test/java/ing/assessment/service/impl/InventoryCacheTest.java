@@ -0,0 +1,68 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryCacheTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Test
+    void test_GetAllProducts_EvictedDuringLoad_IsNotServedFromCache() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        InventoryCache inventoryCache = new InventoryCache(productRepository, meterRegistry, 0);
+        when(productRepository.findAll()).thenAnswer(invocation -> {
+            // e.g. a reservation found less stock than cached while the catalogue was read
+            inventoryCache.evict(1);
+            return List.of(product(1), product(2));
+        }).thenReturn(List.of(product(1), product(2)));
+
+        inventoryCache.getAllProducts();
+        inventoryCache.getAllProducts();
+
+        // the first load was not trusted, so the second one read the database again
+        verify(productRepository, times(2)).findAll();
+        assertEquals(2, meterRegistry.counter("inventory.cache.misses").count());
+    }
+
+    @Test
+    void test_Evict_Bounded_ForgetsInsertionOrderOfEvictedProduct() {
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().map(InventoryCacheTest::product).toList();
+        });
+        InventoryCache inventoryCache = new InventoryCache(productRepository, new SimpleMeterRegistry(), 2);
+
+        inventoryCache.get(1);
+        inventoryCache.get(2);
+        inventoryCache.evict(1);
+        inventoryCache.get(1);
+        inventoryCache.get(3);
+
+        // product 2 is the oldest entry now, not the reloaded product 1
+        clearInvocations(productRepository);
+        inventoryCache.get(1);
+        verify(productRepository, never()).findAllByIdsOrderByLocation(anyCollection());
+        inventoryCache.get(2);
+        verify(productRepository).findAllByIdsOrderByLocation(List.of(2));
+    }
+
+    private static Product product(int id) {
+        return new Product(new ProductCK(id, Location.MUNICH), "Product " + id, 1000, 10);
+    }
+}
@@ -0,0 +1,114 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryLedgerTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    private Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(productRepository.findAll()).thenReturn(Arrays.asList(
+                new Product(new ProductCK(1, Location.MUNICH), "Test Product 1", 10_000, 50),
+                new Product(new ProductCK(1, Location.COLOGNE), "Test Product 1", 10_000, 50),
+                new Product(new ProductCK(2, Location.COLOGNE), "Test Product 2", 20_000, 50)
+        ));
+    }
+
+    @Test
+    void test_Restore_AppliesSnapshotAndLogTailToProductTable() throws Exception {
+        InventoryLedger ledger = ledger(3);
+        ledger.afterSingletonsInstantiated();
+        // 3 + 2 events, so the snapshot after the first basket is followed by a tail in a new segment
+        ledger.record(Map.of(1, 60), List.of(new StockDecrement(1, Location.MUNICH, 50), new StockDecrement(1, Location.COLOGNE, 10)));
+        ledger.record(Map.of(2, 5), List.of(new StockDecrement(2, Location.COLOGNE, 5)));
+
+        // no close, as after a crash
+        InventoryLedger restored = ledger(3);
+        restored.afterSingletonsInstantiated();
+
+        assertEquals(ledger.quantities(), restored.quantities());
+        assertEquals(0, restored.quantities().get(new ProductCK(1, Location.MUNICH)));
+        verify(productRepository).updateQuantity(1, Location.MUNICH, 0);
+        verify(productRepository).updateQuantity(1, Location.COLOGNE, 40);
+        verify(productRepository).updateQuantity(2, Location.COLOGNE, 45);
+        assertEquals(1.0, meterRegistry.get("inventory.ledger.snapshots").counter().count());
+    }
+
+    @Test
+    void test_Restore_DropsTornTailAndKeepsRecording() throws Exception {
+        InventoryLedger ledger = ledger(100);
+        ledger.afterSingletonsInstantiated();
+        ledger.record(Map.of(1, 5), List.of(new StockDecrement(1, Location.MUNICH, 5)));
+
+        Path segment = LedgerFiles.segments(directory).get(0);
+        Files.write(segment, new byte[LedgerEvent.SIZE / 2], StandardOpenOption.APPEND);
+
+        InventoryLedger restored = ledger(100);
+        restored.afterSingletonsInstantiated();
+        restored.record(Map.of(1, 1), List.of(new StockDecrement(1, Location.MUNICH, 1)));
+
+        assertEquals(2L * LedgerEvent.SIZE, Files.size(segment));
+        assertEquals(44, restored.quantities().get(new ProductCK(1, Location.MUNICH)));
+
+        List<LedgerEvent> events = new ArrayList<>();
+        assertEquals(4, LedgerFiles.readEvents(directory, 0, events::add));
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), events.stream().map(LedgerEvent::sequence).toList());
+    }
+
+    @Test
+    void test_Record_GroupsBasketLinesAndKeysDecrementsByLocation() throws Exception {
+        InventoryLedger ledger = ledger(100);
+        ledger.afterSingletonsInstantiated();
+        ledger.record(List.of(Map.of(1, 1), Map.of(1, 2, 2, 3)), List.of(new StockDecrement(1, Location.MUNICH, 3)));
+
+        List<LedgerEvent> events = new ArrayList<>();
+        LedgerFiles.readEvents(directory, 0, events::add);
+
+        assertEquals(List.of(1L, 2L, 2L), events.stream()
+                .filter(event -> event.type() == LedgerEvent.Type.RESERVED)
+                .map(LedgerEvent::basketId)
+                .toList());
+        LedgerEvent decrement = events.get(3);
+        assertEquals(LedgerEvent.Type.DECREMENTED, decrement.type());
+        assertEquals(new ProductCK(1, Location.MUNICH), decrement.productCk());
+        assertEquals(3, decrement.quantity());
+    }
+
+    private InventoryLedger ledger(int snapshotEvery) {
+        return new InventoryLedger(productRepository, new InventoryCache(productRepository, meterRegistry, 0),
+                transactionManager, meterRegistry, true, directory, snapshotEvery, false);
+    }
+}
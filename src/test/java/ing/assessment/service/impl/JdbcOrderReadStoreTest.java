@@ -0,0 +1,50 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.model.Location;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcOrderReadStoreTest {
+
+    // a database of its own, the store never touches the primary one
+    private final JdbcOrderReadStore store =
+            new JdbcOrderReadStore(null, "jdbc:h2:mem:order-view-test;DB_CLOSE_DELAY=-1", "sa", "");
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.shutdown();
+    }
+
+    @Test
+    void test_UpsertAll_StoresSelfContainedViews() {
+        Order order = new Order(1, new Date(1_000), List.of(
+                new OrderProduct(4, 2, "Laptop", 80_000, Location.MUNICH),
+                new OrderProduct(7, 1, null, 1_999, null)
+        ), 73_799, 8_200, 0, 4, null, null);
+
+        store.upsertAll(List.of(order));
+        // projecting an order again replaces its row
+        store.upsertAll(List.of(order, new Order(2, new Date(5_000), List.of(), 0, 0, 30, 2, null, null)));
+
+        Order read = store.findById(1).orElseThrow();
+        assertEquals(2, store.count());
+        assertEquals(order.getOrderProducts(), read.getOrderProducts());
+        assertEquals(73_799, read.getOrderCostCents());
+        assertEquals(8_200, read.getDiscountCents());
+        assertEquals(4, read.getDeliveryTime());
+        assertEquals(1_000, read.getTimestamp().getTime());
+        assertTrue(store.findById(3).isEmpty());
+
+        assertEquals(List.of(2), store.findAfter(0, new Date(2_000), new Date(10_000), 10).stream().map(Order::getId).toList());
+        assertEquals(List.of(1), store.findAfter(0, new Date(0), new Date(10_000), 1).stream().map(Order::getId).toList());
+        assertEquals(List.of(1, 2), store.findAll().stream().map(Order::getId).toList());
+    }
+}
@@ -0,0 +1,120 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.exception.OutOfStockException;
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocationShardsTest {
+
+    // product 1 is stocked in Munich and Cologne, not in Frankfurt
+    private static final Map<Integer, InventoryEntry> CATALOGUE =
+            Map.of(1, new InventoryEntry(1, "Laptop", 80_000, new int[]{10, 10, InventoryEntry.NOT_STOCKED}));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InventoryCache inventoryCache = new InventoryCache(null, meterRegistry, 0);
+    private final LocationShards shards = new LocationShards(inventoryCache, meterRegistry, true, 3);
+
+    @AfterEach
+    void tearDown() {
+        shards.shutdown();
+    }
+
+    @Test
+    void test_Abort_CrossShardReservation_RestoresEveryLocation() throws Exception {
+        LocationShards.ShardReservation reservation = shards.reserve(CATALOGUE, available -> List.of(
+                new StockDecrement(1, Location.MUNICH, 8),
+                new StockDecrement(1, Location.COLOGNE, 5)
+        ));
+        assertArrayEquals(new int[]{2, 5, InventoryEntry.NOT_STOCKED}, quantities());
+
+        shards.abort(reservation);
+        assertArrayEquals(new int[]{10, 10, InventoryEntry.NOT_STOCKED}, quantities());
+
+        // nothing was lost or counted twice: exactly the whole stock can be held again, and not one unit more
+        shards.commit(shards.reserve(CATALOGUE, available -> List.of(
+                new StockDecrement(1, Location.MUNICH, 10),
+                new StockDecrement(1, Location.COLOGNE, 10)
+        )));
+        assertArrayEquals(new int[]{0, 0, InventoryEntry.NOT_STOCKED}, quantities());
+        assertThrows(OutOfStockException.class,
+                () -> shards.reserve(CATALOGUE, available -> List.of(new StockDecrement(1, Location.MUNICH, 1))));
+    }
+
+    @Test
+    void test_Reserve_OneShardRefuses_ReleasesTheOthers() throws Exception {
+        shards.commit(shards.reserve(CATALOGUE, available -> List.of(new StockDecrement(1, Location.COLOGNE, 8))));
+
+        // an allocation working from stale stock: Munich can hold its line, Cologne cannot
+        assertThrows(OutOfStockException.class, () -> shards.reserve(CATALOGUE, available -> List.of(
+                new StockDecrement(1, Location.MUNICH, 5),
+                new StockDecrement(1, Location.COLOGNE, 5)
+        )));
+
+        assertEquals(3.0, meterRegistry.get("inventory.shards.refusals").counter().count());
+        assertArrayEquals(new int[]{10, 2, InventoryEntry.NOT_STOCKED}, quantities());
+    }
+
+    @Test
+    void test_Reserve_ConcurrentCommitsAndAborts_ConserveStock() throws Exception {
+        int threads = 4;
+        AtomicIntegerArray sold = new AtomicIntegerArray(Location.values().length);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    LocationShards.ShardReservation reservation;
+                    try {
+                        reservation = shards.reserve(CATALOGUE, LocationShardsTest::oneFromEachStockedLocation);
+                    } catch (OutOfStockException e) {
+                        continue;
+                    }
+
+                    if (ThreadLocalRandom.current().nextBoolean()) {
+                        shards.abort(reservation);
+                    } else {
+                        reservation.decrements().forEach(line -> sold.addAndGet(line.location().ordinal(), line.quantity()));
+                        shards.commit(reservation);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) worker.get();
+        executor.shutdown();
+
+        int[] quantities = quantities();
+        assertEquals(10, quantities[Location.MUNICH.ordinal()] + sold.get(Location.MUNICH.ordinal()));
+        assertEquals(10, quantities[Location.COLOGNE.ordinal()] + sold.get(Location.COLOGNE.ordinal()));
+    }
+
+    // waits for every queued change, then reads the stock each shard has available
+    private int[] quantities() throws Exception {
+        shards.abort(new LocationShards.ShardReservation(-1, List.of(), List.of(Location.values())));
+        return shards.available(CATALOGUE).get(1).quantities();
+    }
+
+    private static List<StockDecrement> oneFromEachStockedLocation(Map<Integer, InventoryEntry> available)
+            throws OutOfStockException {
+        List<StockDecrement> lines = new ArrayList<>();
+        for (Location location : Location.values()) {
+            if (available.get(1).quantityAt(location) > 0) lines.add(new StockDecrement(1, location, 1));
+        }
+        if (lines.isEmpty()) throw new OutOfStockException("There is not enough stock of Product with ID: 1");
+        return lines;
+    }
+}
@@ -0,0 +1,114 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.dto.OrderTotalsDTO;
+import ing.assessment.model.Location;
+import ing.assessment.model.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderAnalyticsTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private OrderAnalytics orderAnalytics;
+
+    @BeforeEach
+    void setUp() {
+        orderAnalytics = new OrderAnalytics(60);
+    }
+
+    @Test
+    void test_Record_AggregatesPerBucketProductAndLocation() {
+        orderAnalytics.record(order(1, 10 * HOUR + 5, line(1, 2, 200.0, Location.MUNICH), line(2, 1, 50.0, Location.COLOGNE)));
+        orderAnalytics.record(order(2, 10 * HOUR + 10, line(1, 1, 100.0, Location.COLOGNE)));
+        orderAnalytics.record(order(3, 11 * HOUR, line(2, 4, 200.0, Location.MUNICH)));
+
+        OrderTotalsDTO all = orderAnalytics.totals(null, null);
+        assertEquals(3, all.orders());
+        assertEquals(550.0, all.revenue());
+        assertEquals(90.0, all.deliveryCost());
+
+        // "from" inside a bucket still includes that whole bucket, "to" is exclusive
+        assertEquals(2, orderAnalytics.totals(new Date(10 * HOUR + 30), new Date(11 * HOUR)).orders());
+        assertEquals(1, orderAnalytics.totals(new Date(11 * HOUR), null).orders());
+
+        assertEquals(Arrays.asList(new Date(10 * HOUR), new Date(11 * HOUR)),
+                new ArrayList<>(orderAnalytics.totalsByBucket(null, null).keySet()));
+        assertEquals(3, orderAnalytics.totalsByProduct(null, null).get(1).units());
+        assertEquals(250.0, orderAnalytics.totalsByProduct(null, null).get(2).revenue());
+        assertEquals(400.0, orderAnalytics.totalsByLocation(null, null).get(Location.MUNICH).revenue());
+        assertEquals(0, orderAnalytics.totalsByLocation(null, null).get(Location.FRANKFURT).units());
+    }
+
+    @Test
+    void test_Rebuild_ReplacesTotalsWithHistory() {
+        orderAnalytics.record(order(1, HOUR, line(1, 1, 100.0, Location.MUNICH)));
+        List<Order> history = List.of(order(2, HOUR, line(1, 5, 500.0, null)));
+
+        long rebuilt = orderAnalytics.rebuild(consumer -> history.forEach(consumer));
+
+        assertEquals(1, rebuilt);
+        assertEquals(500.0, orderAnalytics.totals(null, null).revenue());
+        // lines stored before their location was recorded only count per product
+        assertEquals(0, orderAnalytics.totalsByLocation(null, null).get(Location.MUNICH).units());
+        assertEquals(5, orderAnalytics.totalsByProduct(null, null).get(1).units());
+    }
+
+    @Test
+    void test_Rebuild_CountsOrdersPlacedDuringTheScanOnce() {
+        Order alreadyStored = order(1, HOUR, line(1, 1, 100.0, Location.MUNICH));
+        Order placedDuringScan = order(2, HOUR, line(1, 1, 100.0, Location.MUNICH));
+        Order committedBeforeScanReachedIt = order(3, HOUR, line(1, 1, 100.0, Location.MUNICH));
+
+        orderAnalytics.rebuild(consumer -> {
+            consumer.accept(alreadyStored);
+            orderAnalytics.record(placedDuringScan);
+            consumer.accept(committedBeforeScanReachedIt);
+            orderAnalytics.record(committedBeforeScanReachedIt);
+        });
+
+        assertEquals(3, orderAnalytics.totals(null, null).orders());
+
+        orderAnalytics.record(order(4, HOUR, line(1, 1, 100.0, Location.MUNICH)));
+        assertEquals(4, orderAnalytics.totals(null, null).orders());
+    }
+
+    @Test
+    void test_Rebuild_CountsRecordedOrdersWithoutRowsOnce() {
+        Order written = order(1, HOUR, line(1, 1, 100.0, Location.MUNICH));
+        Order queued = order(2, HOUR, line(1, 1, 100.0, Location.MUNICH));
+        Order writtenDuringScan = order(3, HOUR, line(1, 1, 100.0, Location.MUNICH));
+        orderAnalytics.recordAll(List.of(written, queued, writtenDuringScan));
+
+        long rebuilt = orderAnalytics.rebuild(consumer -> {
+            consumer.accept(written);
+            consumer.accept(writtenDuringScan);
+        }, () -> List.of(queued, writtenDuringScan));
+
+        assertEquals(3, rebuilt);
+        assertEquals(3, orderAnalytics.totals(null, null).orders());
+    }
+
+    private static Order order(int id, long timestamp, OrderProduct... lines) {
+        Order order = new Order();
+        order.setId(id);
+        order.setTimestamp(new Date(timestamp));
+        order.setOrderProducts(Arrays.asList(lines));
+        order.setDiscountCents(0);
+        order.setDeliveryCost(30);
+        return order;
+    }
+
+    private static OrderProduct line(int productId, int quantity, double totalCost, Location location) {
+        return new OrderProduct(productId, quantity, "Product " + productId, Money.toCents(totalCost), location);
+    }
+}
@@ -0,0 +1,140 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.exception.InvalidOrderException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderIdempotencyTest {
+
+    private static final Map<Integer, Integer> BASKET = Map.of(1, 2);
+
+    @Mock
+    private OrderIdempotencyKeyRepository keyRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AtomicInteger placements;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        placements = new AtomicInteger();
+    }
+
+    @Test
+    void test_PlaceOnce_ConcurrentDuplicates_PlaceOneOrder() throws Exception {
+        OrderIdempotency idempotency = idempotency(100, Duration.ofHours(1));
+        when(keyRepository.findById("key")).thenReturn(Optional.empty());
+
+        int requests = 8;
+        CountDownLatch allWaiting = new CountDownLatch(requests);
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Callable<Order>> duplicates = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                duplicates.add(() -> {
+                    allWaiting.countDown();
+                    allWaiting.await();
+                    return idempotency.placeOnce("key", BASKET, this::slowPlacement, id -> Optional.empty());
+                });
+            }
+
+            List<Order> orders = new ArrayList<>();
+            for (Future<Order> result : executor.invokeAll(duplicates)) {
+                orders.add(result.get());
+            }
+
+            assertEquals(1, placements.get());
+            assertTrue(orders.stream().allMatch(order -> order == orders.get(0)));
+            assertEquals(1.0, meterRegistry.get("orders.idempotency.misses").counter().count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_PlaceOnce_ExpiredKey_PlacesAgain() throws Exception {
+        OrderIdempotency idempotency = idempotency(100, Duration.ofMillis(50));
+        when(keyRepository.findById("key")).thenReturn(Optional.empty());
+
+        Order first = idempotency.placeOnce("key", BASKET, this::placement, id -> Optional.empty());
+        Thread.sleep(100);
+        Order second = idempotency.placeOnce("key", BASKET, this::placement, id -> Optional.empty());
+
+        assertNotSame(first, second);
+        assertEquals(2, placements.get());
+    }
+
+    @Test
+    void test_PlaceOnce_KeepsAtMostMaxEntries() throws Exception {
+        OrderIdempotency idempotency = idempotency(2, Duration.ofHours(1));
+
+        for (String key : List.of("a", "b", "c")) {
+            idempotency.placeOnce(key, BASKET, this::placement, id -> Optional.empty());
+        }
+
+        assertEquals(2.0, meterRegistry.get("orders.idempotency.cache.size").gauge().value());
+    }
+
+    @Test
+    void test_PlaceOnce_KeyReusedForBasketWithSameHashCode_ThrowsInvalidOrder() throws Exception {
+        OrderIdempotency idempotency = idempotency(100, Duration.ofHours(1));
+        when(keyRepository.findById("key")).thenReturn(Optional.empty());
+        // Map.hashCode() sums productId ^ quantity: 1 ^ 2 == 2 ^ 1 == 3 and 1 ^ 1 == 2 ^ 2 == 0
+        assertEquals(Map.of(1, 2).hashCode(), Map.of(2, 1).hashCode());
+        assertEquals(Map.of(1, 1).hashCode(), Map.of(2, 2).hashCode());
+
+        idempotency.placeOnce("key", Map.of(1, 2), this::placement, id -> Optional.empty());
+        idempotency.placeOnce("other", Map.of(1, 1), this::placement, id -> Optional.empty());
+
+        assertThrows(InvalidOrderException.class, () -> idempotency.placeOnce("key", Map.of(2, 1), this::placement, id -> Optional.empty()));
+        assertThrows(InvalidOrderException.class, () -> idempotency.placeOnce("other", Map.of(2, 2), this::placement, id -> Optional.empty()));
+        assertNotEquals(OrderIdempotency.basketDigest(Map.of(1, 2)), OrderIdempotency.basketDigest(Map.of(2, 1)));
+        assertEquals(2, placements.get());
+    }
+
+    private OrderIdempotency idempotency(int maxEntries, Duration ttl) {
+        return new OrderIdempotency(keyRepository, jdbcTemplate, meterRegistry, maxEntries, ttl);
+    }
+
+    private Order placement() {
+        Order order = new Order();
+        order.setId(placements.incrementAndGet());
+        return order;
+    }
+
+    private Order slowPlacement() {
+        // long enough for every duplicate to arrive while the first one is still placing
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return placement();
+    }
+}
@@ -0,0 +1,44 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.model.Location;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderLineCodecTest {
+
+    @Test
+    void test_Decode_RestoresEncodedLines() {
+        List<OrderProduct> lines = Arrays.asList(
+                new OrderProduct(1, 2, "Product 1", 19_998, Location.MUNICH),
+                new OrderProduct(300_000, 1, "Product 300000", 0, Location.COLOGNE),
+                new OrderProduct(7, 1_000, "Product 7", 1_234_567_890, null)
+        );
+
+        byte[] encoded = OrderLineCodec.encode(lines);
+
+        assertArrayEquals(new int[]{1, 300_000, 7}, OrderLineCodec.productIds(encoded));
+        assertEquals(lines, OrderLineCodec.decode(encoded, productId -> "Product " + productId));
+    }
+
+    @Test
+    void test_Encode_TakesAFewBytesPerLine() {
+        List<OrderProduct> lines = new ArrayList<>();
+        for (int id = 1000; id < 1040; id++) {
+            lines.add(new OrderProduct(id, 3, "Product " + id, 2997, Location.FRANKFURT));
+        }
+
+        // version, count, then 2 + 1 + 2 + 1 bytes per line
+        assertEquals(2 + 40 * 6, OrderLineCodec.encode(lines).length);
+    }
+
+    @Test
+    void test_Decode_RejectsUnknownVersion() {
+        assertThrows(IllegalArgumentException.class, () -> OrderLineCodec.decode(new byte[]{9, 0}, productId -> null));
+    }
+}
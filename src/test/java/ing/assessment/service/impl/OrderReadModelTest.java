@@ -0,0 +1,92 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.model.Location;
+import ing.assessment.model.ReadConsistency;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderReadModelTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FailingStore store = new FailingStore();
+    private final OrderReadModel readModel = new OrderReadModel(Optional.of(store), meterRegistry, 500, 100);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        store.failing = false;
+        readModel.shutdown();
+    }
+
+    @Test
+    void test_Project_ReadYourWritesSeesOrdersPlacedBefore() {
+        Order compact = order(1);
+        compact.setEncodedLines(OrderLineCodec.encode(compact.getOrderProducts()));
+        compact.setDecodedLines(compact.getOrderProducts());
+        compact.setOrderProducts(new ArrayList<>());
+
+        // answered by the write side until the history has been projected
+        assertTrue(readModel.storeFor(ReadConsistency.EVENTUAL).isEmpty());
+        assertEquals(1, readModel.rebuild(consumer -> consumer.accept(compact)));
+
+        readModel.project(order(2));
+        OrderReadStore readStore = readModel.storeFor(ReadConsistency.READ_YOUR_WRITES).orElseThrow();
+
+        assertEquals(2, readStore.count());
+        Order projected = readStore.findById(1).orElseThrow();
+        assertNull(projected.getEncodedLines());
+        assertEquals("Product 1", projected.getOrderProducts().get(0).getName());
+        assertEquals(1, meterRegistry.get("orders.read-model.lag").timer().count());
+        assertEquals(0.0, meterRegistry.get("orders.read-model.pending").gauge().value());
+    }
+
+    @Test
+    void test_StoreFailing_ReadYourWritesFallsBackToWriteSide() {
+        readModel.rebuild(consumer -> {});
+        store.failing = true;
+
+        readModel.project(order(1));
+
+        assertTrue(readModel.storeFor(ReadConsistency.READ_YOUR_WRITES).isEmpty());
+        assertEquals(1.0, meterRegistry.get("orders.read-model.fallbacks").counter().count());
+        assertEquals(1.0, meterRegistry.get("orders.read-model.pending").gauge().value());
+        // eventual reads do not wait and keep using the projection
+        assertTrue(readModel.storeFor(ReadConsistency.EVENTUAL).isPresent());
+    }
+
+    @Test
+    void test_Disabled_AlwaysAnswersFromWriteSide() {
+        OrderReadModel disabled = new OrderReadModel(Optional.empty(), meterRegistry, 500, 100);
+
+        disabled.project(order(1));
+
+        assertFalse(disabled.isEnabled());
+        assertEquals(0, disabled.rebuild(consumer -> consumer.accept(order(2))));
+        assertTrue(disabled.storeFor(ReadConsistency.READ_YOUR_WRITES).isEmpty());
+    }
+
+    private static Order order(int id) {
+        List<OrderProduct> lines = new ArrayList<>(List.of(new OrderProduct(id, 1, "Product " + id, 10_000, Location.MUNICH)));
+        return new Order(id, new Date(), lines, 10_000, 0, 30, 2, null, null);
+    }
+
+    private static class FailingStore extends InMemoryOrderReadStore {
+
+        private volatile boolean failing;
+
+        @Override
+        public void upsertAll(List<Order> orders) {
+            if (failing) throw new IllegalStateException("read store unavailable");
+            super.upsertAll(orders);
+        }
+    }
+}
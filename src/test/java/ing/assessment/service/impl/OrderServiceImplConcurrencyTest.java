@@ -0,0 +1,138 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.exception.OutOfStockException;
+import ing.assessment.model.Location;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {"spring.jpa.show-sql=false", "logging.level.org.hibernate.SQL=WARN"}
+)
+@AutoConfigureTestDatabase
+class OrderServiceImplConcurrencyTest {
+
+    private static final int FIRST_PRODUCT_ID = 1000;
+    private static final int PRODUCTS = 32;
+    private static final int STOCK_PER_LOCATION = 10;
+    private static final int BASKETS = 2000;
+
+    @Autowired
+    private OrderServiceImpl orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private InventoryCache inventoryCache;
+
+    @Test
+    void test_PlaceOrder_ConservesStockUnderContention() throws Exception {
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            resetStock();
+            int initialStock = totalStock();
+
+            RunResult result = run(threads);
+
+            // every sold unit left the stock exactly once, rolled back baskets left nothing behind
+            assertEquals(initialStock, result.unitsSold + totalStock());
+            assertTrue(productRepository.findAll().stream()
+                    .filter(this::isSeeded)
+                    .allMatch(product -> product.getQuantity() >= 0));
+            // every basket was either placed or rejected, none got lost between threads
+            assertEquals(BASKETS, result.placed + result.rejected);
+            assertTrue(result.rejected > 0);
+        }
+    }
+
+    private RunResult run(int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<RunResult>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(() -> placeBaskets(BASKETS / threads));
+            }
+
+            RunResult total = new RunResult();
+            for (Future<RunResult> future : executor.invokeAll(workers)) {
+                RunResult result = future.get();
+                total.unitsSold += result.unitsSold;
+                total.placed += result.placed;
+                total.rejected += result.rejected;
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RunResult placeBaskets(int baskets) throws Exception {
+        RunResult result = new RunResult();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < baskets; i++) {
+            // 1 to 3 distinct products so a late out-of-stock line has to roll back the earlier ones
+            Map<Integer, Integer> basket = new HashMap<>();
+            int lines = random.nextInt(1, 4);
+            while (basket.size() < lines) {
+                basket.put(FIRST_PRODUCT_ID + random.nextInt(PRODUCTS), random.nextInt(1, 4));
+            }
+
+            try {
+                Order order = orderService.placeOrder(basket);
+                result.unitsSold += order.getOrderProducts().stream().mapToInt(OrderProduct::getQuantity).sum();
+                result.placed++;
+            } catch (OutOfStockException e) {
+                result.rejected++;
+            }
+        }
+
+        return result;
+    }
+
+    private void resetStock() {
+        List<Product> products = new ArrayList<>();
+        for (int id = FIRST_PRODUCT_ID; id < FIRST_PRODUCT_ID + PRODUCTS; id++) {
+            for (Location location : Location.values()) {
+                products.add(new Product(new ProductCK(id, location), "Stress " + id, 100, STOCK_PER_LOCATION));
+            }
+        }
+        productRepository.saveAll(products);
+        inventoryCache.evictAll();
+    }
+
+    private int totalStock() {
+        return productRepository.findAll().stream()
+                .filter(this::isSeeded)
+                .mapToInt(Product::getQuantity)
+                .sum();
+    }
+
+    private boolean isSeeded(Product product) {
+        return product.getProductCk().getId() >= FIRST_PRODUCT_ID;
+    }
+
+    private static final class RunResult {
+        private int unitsSold;
+        private int placed;
+        private int rejected;
+    }
+}
@@ -0,0 +1,197 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.dto.BulkOrderResultDTO;
+import ing.assessment.model.Location;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({OrderServiceImpl.class, StockReservationEngine.class, InventoryCache.class, OrderWriteBehind.class, OrderAnalytics.class, OrderPlacementMetrics.class, ExactAllocationStrategy.class, OrderIdempotency.class, InventoryLedger.class, PricingEngine.class, OrderReadModel.class, LocationShards.class, SimpleMeterRegistry.class})
+class OrderServiceImplQueryCountTest {
+
+    private static final int FIRST_SEEDED_ID = 100;
+
+    @Autowired
+    private OrderServiceImpl orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private InventoryCache inventoryCache;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // every test rolls the product table back, so the cache must not outlive it
+        inventoryCache.evictAll();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 40})
+    void test_PlaceOrder_ReadsStockInOneQuery_RegardlessOfBasketSize(int distinctProducts) throws Exception {
+        Map<Integer, Integer> basket = seedProducts(distinctProducts);
+        statistics.clear();
+
+        Order order = orderService.placeOrder(basket);
+        entityManager.flush();
+
+        // 7 units against 5 per location: every product spills into a second location
+        assertEquals(2 * distinctProducts, order.getOrderProducts().size());
+        assertEquals(1, selectCount());
+        assertEquals(0, statistics.getEntityFetchCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    void test_PlaceOrder_WarmInventory_NeedsNoReads() throws Exception {
+        Map<Integer, Integer> basket = seedProducts(10);
+        orderService.placeOrder(basket);
+        statistics.clear();
+
+        Map<Integer, Integer> smallerBasket = new HashMap<>();
+        basket.keySet().forEach(productId -> smallerBasket.put(productId, 1));
+        orderService.placeOrder(smallerBasket);
+        entityManager.flush();
+
+        assertEquals(0, selectCount());
+        assertEquals(0, statistics.getEntityFetchCount());
+    }
+
+    @Test
+    void test_PlaceOrder_SpillsOverToNextLocation_FromSingleResultSet() throws Exception {
+        // seeded by data.sql: product 1 has 50 units in each of MUNICH, COLOGNE and FRANKFURT
+        Map<Integer, Integer> basket = Map.of(1, 60);
+        statistics.clear();
+
+        Order order = orderService.placeOrder(basket);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(1, selectCount());
+        assertEquals(2, order.getOrderProducts().size());
+        assertEquals(4, order.getDeliveryTime());
+        assertEquals(0, quantityOf(1, Location.MUNICH));
+        assertEquals(40, quantityOf(1, Location.COLOGNE));
+        assertEquals(50, quantityOf(1, Location.FRANKFURT));
+    }
+
+    @Test
+    void test_PlaceOrders_ReadsStockOnceForWholeBatch() {
+        Map<Integer, Integer> basket = seedProducts(5);
+        List<Map<Integer, Integer>> baskets = new ArrayList<>();
+        basket.keySet().forEach(productId -> {
+            for (int i = 0; i < 6; i++) baskets.add(Map.of(productId, 3));
+        });
+        statistics.clear();
+
+        List<BulkOrderResultDTO> results = orderService.placeOrders(baskets);
+        entityManager.flush();
+        entityManager.clear();
+
+        // 5 units in each of 3 locations: five baskets of 3 sell a product out, its sixth basket fails
+        assertEquals(25, results.stream().filter(result -> result.order() != null).count());
+        assertEquals(5, results.stream().filter(result -> result.error() != null).count());
+        assertEquals(1, selectCount());
+        assertEquals(25, statistics.getEntityInsertCount());
+        basket.keySet().forEach(productId -> {
+            for (Location location : Location.values()) {
+                assertEquals(0, quantityOf(productId, location));
+            }
+        });
+    }
+
+    @Test
+    void test_ForEachOrder_LoadsLinesPerChunk_NotPerOrder() throws Exception {
+        for (int i = 0; i < 12; i++) {
+            orderService.placeOrder(Map.of(1, 1, 2, 1));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        int[] visited = {0};
+        orderService.forEachOrder(null, null, order -> {
+            assertEquals(2, order.getOrderProducts().size());
+            visited[0]++;
+        });
+
+        // all 12 orders fit in one chunk: one id query plus one fetch-join query for their lines
+        assertEquals(12, visited[0]);
+        assertEquals(2, selectCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    void test_GetAllOrders_LoadsLinesInTheSameQuery() throws Exception {
+        for (int i = 0; i < 12; i++) {
+            orderService.placeOrder(Map.of(1, 1, 2, 1));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<Order> orders = orderService.getAllOrders();
+
+        assertEquals(12, orders.size());
+        orders.forEach(order -> assertEquals(2, order.getOrderProducts().size()));
+        assertEquals(1, selectCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    private Map<Integer, Integer> seedProducts(int count) {
+        Map<Integer, Integer> basket = new HashMap<>();
+
+        for (int i = 0; i < count; i++) {
+            int productId = FIRST_SEEDED_ID + i;
+            for (Location location : Location.values()) {
+                productRepository.save(new Product(new ProductCK(productId, location), "Product " + productId, 1000, 5));
+            }
+            basket.put(productId, 7);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        return basket;
+    }
+
+    private long selectCount() {
+        return Arrays.stream(statistics.getQueries())
+                .filter(query -> query.startsWith("select"))
+                .mapToLong(query -> statistics.getQueryStatistics(query).getExecutionCount())
+                .sum();
+    }
+
+    private int quantityOf(int productId, Location location) {
+        return productRepository.findById(new ProductCK(productId, location)).orElseThrow().getQuantity();
+    }
+}
@@ -0,0 +1,8 @@
+package ing.assessment.service.impl;
+
+import org.springframework.test.context.TestPropertySource;
+
+// the same contention run with the stock held on the warehouse shards instead of the lock stripes
+@TestPropertySource(properties = "inventory.sharding.enabled=true")
+class OrderServiceImplShardedConcurrencyTest extends OrderServiceImplConcurrencyTest {
+}
@@ -2,26 +2,41 @@ package ing.assessment.service.impl;
 
 import ing.assessment.controller.OrderController;
 import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderIdempotencyKey;
 import ing.assessment.db.order.OrderProduct;
 import ing.assessment.db.product.Product;
 import ing.assessment.db.product.ProductCK;
+import ing.assessment.dto.BulkOrderResultDTO;
+import ing.assessment.dto.OrderPageDTO;
 import ing.assessment.service.impl.OrderRepository;
 import ing.assessment.service.impl.ProductRepository;
+import ing.assessment.exception.InvalidOrderException;
 import ing.assessment.exception.OutOfStockException;
 import ing.assessment.exception.ProductNotFoundException;
 import ing.assessment.model.Location;
+import ing.assessment.model.ReadConsistency;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.domain.Limit;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,9 +48,33 @@ class OrderServiceImplTest {
     @Mock
     private OrderRepository orderRepository;
 
-    @InjectMocks
-    private OrderServiceImpl orderService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private OrderWriteBehind orderWriteBehind;
+
+    @Mock
+    private OrderIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private OrderIdempotency orderIdempotency;
+
+    private PricingEngine pricingEngine;
+
+    private OrderReadModel orderReadModel;
+
+    private LocationShards locationShards;
+
+    private InventoryCache inventoryCache;
+
+    private OrderAnalytics orderAnalytics;
+
+    private SimpleMeterRegistry meterRegistry;
 
+    private OrderServiceImpl orderService;
 
 
     private Product testProduct1;
@@ -44,17 +83,26 @@ class OrderServiceImplTest {
 
     @BeforeEach
     void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        inventoryCache = new InventoryCache(productRepository, meterRegistry, 0);
+        orderAnalytics = new OrderAnalytics(60);
+        orderIdempotency = new OrderIdempotency(idempotencyKeyRepository, jdbcTemplate, meterRegistry, 100, Duration.ofHours(24));
+        pricingEngine = new PricingEngine(meterRegistry, new ClassPathResource("pricing-rules.json"), 0);
+        orderReadModel = new OrderReadModel(Optional.empty(), meterRegistry, 500, 1000);
+        locationShards = new LocationShards(inventoryCache, meterRegistry, false, 3);
+        orderService = orderService(false);
+
         testProduct1 = new Product(
                 new ProductCK(1, Location.MUNICH),
                 "Test Product 1",
-                100.0,
+                10_000,
                 50
         );
 
         testProduct2 = new Product(
                 new ProductCK(2, Location.COLOGNE),
                 "Test Product 2",
-                200.0,
+                20_000,
                 50
         );
 
@@ -66,10 +114,9 @@ class OrderServiceImplTest {
 
     @Test
     void test_PlaceOrder_Success() throws Exception {
-        when(productRepository.findByProductCk_Id(1))
-                .thenReturn(Collections.singletonList(testProduct1));
-        when(productRepository.findByProductCk_Id(2))
-                .thenReturn(Collections.singletonList(testProduct2));
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Arrays.asList(testProduct1, testProduct2));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
         when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         Order result = orderService.placeOrder(testOrderItems);
@@ -80,16 +127,29 @@ class OrderServiceImplTest {
         assertEquals(30, result.getDeliveryCost());
         assertEquals(4, result.getDeliveryTime());
 
-        assertEquals(48, testProduct1.getQuantity());
-        assertEquals(49, testProduct2.getQuantity());
+        assertEquals(48, inventoryCache.get(1).orElseThrow().quantityAt(Location.MUNICH));
+        assertEquals(49, inventoryCache.get(2).orElseThrow().quantityAt(Location.COLOGNE));
 
-        verify(productRepository, times(2)).save(any(Product.class));
+        verify(productRepository).decrementQuantity(1, Location.MUNICH, 2);
+        verify(productRepository).decrementQuantity(2, Location.COLOGNE, 1);
+        verify(productRepository).findAllByIdsOrderByLocation(anyCollection());
+        verify(productRepository, never()).findByProductCk_Id(anyInt());
         verify(orderRepository).save(any(Order.class));
+
+        assertEquals(1, orderAnalytics.totals(null, null).orders());
+        assertEquals(200.0, orderAnalytics.totalsByLocation(null, null).get(Location.COLOGNE).revenue());
+
+        for (String stage : Arrays.asList("stock-lookup", "allocation", "pricing", "persist")) {
+            assertEquals(1, meterRegistry.get("orders.place.stage").tag("stage", stage).timer().count());
+        }
+        // two stock updates, the order and its two lines
+        assertEquals(5.0, meterRegistry.get("orders.place.rows.written").summary().totalAmount());
+        assertEquals(0.0, meterRegistry.get("orders.place.allocation.fallback").counter().count());
     }
 
     @Test
     void test_PlaceOrder_ProductNotFound_ThrowsException() {
-        when(productRepository.findByProductCk_Id(anyInt()))
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
                 .thenReturn(Collections.emptyList());
 
         ProductNotFoundException exception = assertThrows(
@@ -98,7 +158,7 @@ class OrderServiceImplTest {
         );
 
         assertEquals("Product with ID: 1 not found", exception.getMessage());
-        verify(productRepository, never()).save(any(Product.class));
+        verify(productRepository, never()).decrementQuantity(anyInt(), any(Location.class), anyInt());
         verify(orderRepository, never()).save(any(Order.class));
     }
 
@@ -106,7 +166,7 @@ class OrderServiceImplTest {
     void test_PlaceOrder_OutOfStock_ThrowsException() {
         testOrderItems.put(1, 51);
 
-        when(productRepository.findByProductCk_Id(1))
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
                 .thenReturn(Collections.singletonList(testProduct1));
 
         OutOfStockException exception = assertThrows(
@@ -118,8 +178,12 @@ class OrderServiceImplTest {
                 "There is not enough stock of Product with ID: 1, remaining stock: 50",
                 exception.getMessage()
         );
-        verify(productRepository, never()).save(any(Product.class));
+        verify(productRepository, never()).decrementQuantity(anyInt(), any(Location.class), anyInt());
         verify(orderRepository, never()).save(any(Order.class));
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertEquals(0, orderAnalytics.totals(null, null).orders());
+        assertEquals(1.0, meterRegistry.get("orders.place.rejected").tag("reason", "out-of-stock").counter().count());
     }
 
     @Test
@@ -127,14 +191,15 @@ class OrderServiceImplTest {
         testOrderItems.put(1, 6);
         testOrderItems.remove(2);
 
-        when(productRepository.findByProductCk_Id(1))
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
                 .thenReturn(Collections.singletonList(testProduct1));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
         when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         Order result = orderService.placeOrder(testOrderItems);
 
         assertEquals(0, result.getDeliveryCost());
-        verify(productRepository).save(any(Product.class));
+        verify(productRepository).decrementQuantity(1, Location.MUNICH, testOrderItems.get(1));
         verify(orderRepository).save(any(Order.class));
     }
 
@@ -143,8 +208,9 @@ class OrderServiceImplTest {
         testOrderItems.put(1, 11);
         testOrderItems.remove(2);
 
-        when(productRepository.findByProductCk_Id(1))
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
                 .thenReturn(Collections.singletonList(testProduct1));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
         when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         Order result = orderService.placeOrder(testOrderItems);
@@ -152,19 +218,296 @@ class OrderServiceImplTest {
         assertEquals(990.0, result.getOrderCost());
         assertEquals(0, result.getDeliveryCost());
         assertEquals(110, result.getDiscount());
-        verify(productRepository).save(any(Product.class));
+        verify(productRepository).decrementQuantity(1, Location.MUNICH, testOrderItems.get(1));
         verify(orderRepository).save(any(Order.class));
     }
 
+    @Test
+    void test_PlaceOrder_AppliesConfiguredPricingRules() throws Exception {
+        pricingEngine = new PricingEngine(meterRegistry, new ByteArrayResource("""
+                {
+                  "discountTiers": [ { "above": 300, "percent": 10 } ],
+                  "deliveryTiers": [ { "upTo": 500, "fee": 30 } ],
+                  "productPromotions": [ { "productId": 1, "minQuantity": 2, "percent": 50 } ],
+                  "locationFees": { "MUNICH": 5, "COLOGNE": 7 }
+                }
+                """.getBytes()), 0);
+        orderService = orderService(false);
+
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Arrays.asList(testProduct1, testProduct2));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Order result = orderService.placeOrder(testOrderItems);
+
+        // 400 less 100 off product 1, then 10% off the rest
+        assertEquals(270.0, result.getOrderCost());
+        assertEquals(130.0, result.getDiscount());
+        // tier fee plus one fee per shipping location
+        assertEquals(42, result.getDeliveryCost());
+    }
+
+    @Test
+    void test_PlaceOrder_SpillsOverToNextLocation_CountsFallbackAllocation() throws Exception {
+        testOrderItems.put(1, 60);
+        testOrderItems.remove(2);
+
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Arrays.asList(testProduct1, new Product(new ProductCK(1, Location.COLOGNE), "Test Product 1", 10_000, 50)));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Order result = orderService.placeOrder(testOrderItems);
+
+        assertEquals(2, result.getOrderProducts().size());
+        verify(productRepository).decrementQuantity(1, Location.MUNICH, 50);
+        verify(productRepository).decrementQuantity(1, Location.COLOGNE, 10);
+        assertEquals(1.0, meterRegistry.get("orders.place.allocation.fallback").counter().count());
+    }
+
+    @Test
+    void test_PlaceOrder_SecondOrderIsServedFromInventoryCache() throws Exception {
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Arrays.asList(testProduct1, testProduct2));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderService.placeOrder(testOrderItems);
+        orderService.placeOrder(testOrderItems);
+
+        assertEquals(46, inventoryCache.get(1).orElseThrow().quantityAt(Location.MUNICH));
+        verify(productRepository, times(1)).findAllByIdsOrderByLocation(anyCollection());
+        verify(productRepository, times(2)).decrementQuantity(1, Location.MUNICH, 2);
+    }
+
+    @Test
+    void test_PlaceOrder_StockChangedBehindCache_EvictsAndThrows() {
+        testOrderItems.remove(2);
+
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Collections.singletonList(testProduct1));
+        when(productRepository.decrementQuantity(1, Location.MUNICH, 2)).thenReturn(0);
+
+        assertThrows(OutOfStockException.class, () -> orderService.placeOrder(testOrderItems));
+
+        verify(orderRepository, never()).save(any(Order.class));
+        verify(transactionManager).rollback(any());
+
+        // the next read has to go back to the database
+        inventoryCache.get(1);
+        verify(productRepository, times(2)).findAllByIdsOrderByLocation(anyCollection());
+    }
+
+    @Test
+    void test_PlaceOrder_WriteBehind_QueuesOrderInsteadOfSaving() throws Exception {
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Arrays.asList(testProduct1, testProduct2));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
+        when(orderWriteBehind.isEnabled()).thenReturn(true);
+        when(orderWriteBehind.nextOrderId()).thenReturn(51);
+
+        Order result = orderService.placeOrder(testOrderItems);
+
+        assertEquals(51, result.getId());
+        verify(orderWriteBehind).enqueue(result);
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void test_PlaceOrder_CompactLines_StoresLinesInOneColumn() throws Exception {
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Arrays.asList(testProduct1, testProduct2));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        orderService = orderService(true);
+
+        Order result = orderService.placeOrder(testOrderItems);
+
+        assertEquals(2, result.getOrderProducts().size());
+        assertNotNull(result.getEncodedLines());
+        // two stock updates and the order, no line rows
+        assertEquals(3.0, meterRegistry.get("orders.place.rows.written").summary().totalAmount());
+
+        // as loaded from the database: only the encoded column, the names come from the catalogue
+        Order stored = orderWithId(1);
+        stored.setEncodedLines(result.getEncodedLines());
+        stored.setOrderProducts(new ArrayList<>());
+        when(orderRepository.findById(1)).thenReturn(Optional.of(stored));
+
+        List<OrderProduct> lines = orderService.getOrderById(1).orElseThrow().getOrderProducts();
+
+        assertEquals(result.getOrderProducts(), lines);
+        assertEquals("Test Product 1", lines.stream().filter(line -> line.getProductId() == 1).findFirst().orElseThrow().getName());
+    }
+
+    @Test
+    void test_PlaceOrder_RetryWithIdempotencyKey_ReturnsFirstOrderWithoutTouchingStock() throws Exception {
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Arrays.asList(testProduct1, testProduct2));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            order.setId(11);
+            return order;
+        });
+
+        Order first = orderService.placeOrder(testOrderItems, "retry-1");
+        Order retry = orderService.placeOrder(new HashMap<>(testOrderItems), "retry-1");
+
+        assertSame(first, retry);
+        verify(productRepository).findAllByIdsOrderByLocation(anyCollection());
+        verify(productRepository, times(2)).decrementQuantity(anyInt(), any(Location.class), anyInt());
+        verify(orderRepository).save(any(Order.class));
+        verify(jdbcTemplate).update(startsWith("insert into order_idempotency_keys"), eq("retry-1"), eq(11), eq(OrderIdempotency.basketDigest(testOrderItems)), any());
+        assertEquals(1, orderAnalytics.totals(null, null).orders());
+        assertEquals(1.0, meterRegistry.get("orders.idempotency.hits").tag("source", "cache").counter().count());
+        assertEquals(1.0, meterRegistry.get("orders.idempotency.misses").counter().count());
+    }
+
+    @Test
+    void test_PlaceOrder_IdempotencyKeyOnlyInDatabase_LoadsStoredOrder() throws Exception {
+        when(idempotencyKeyRepository.findById("retry-1"))
+                .thenReturn(Optional.of(new OrderIdempotencyKey("retry-1", 7, OrderIdempotency.basketDigest(testOrderItems), new Date())));
+        when(orderRepository.findById(7)).thenReturn(Optional.of(orderWithId(7)));
+
+        Order result = orderService.placeOrder(testOrderItems, "retry-1");
+
+        assertEquals(7, result.getId());
+        verifyNoInteractions(productRepository);
+        assertEquals(1.0, meterRegistry.get("orders.idempotency.hits").tag("source", "database").counter().count());
+    }
+
+    @Test
+    void test_PlaceOrder_IdempotencyKeyReusedForOtherBasket_ThrowsInvalidOrder() {
+        when(idempotencyKeyRepository.findById("retry-1"))
+                .thenReturn(Optional.of(new OrderIdempotencyKey("retry-1", 7, OrderIdempotency.basketDigest(testOrderItems), new Date())));
+        when(orderRepository.findById(7)).thenReturn(Optional.of(orderWithId(7)));
+
+        assertThrows(InvalidOrderException.class, () -> orderService.placeOrder(Map.of(1, 5), "retry-1"));
+        // 3 ^ 5 == (1 ^ 2) + (2 ^ 1), the same Map.hashCode() as testOrderItems
+        assertEquals(testOrderItems.hashCode(), Map.of(3, 5).hashCode());
+        assertThrows(InvalidOrderException.class, () -> orderService.placeOrder(Map.of(3, 5), "retry-1"));
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void test_PlaceOrder_IdempotencyKeyOfOrderNotWrittenYet_ReturnsQueuedOrder() throws Exception {
+        when(idempotencyKeyRepository.findById("retry-1"))
+                .thenReturn(Optional.of(new OrderIdempotencyKey("retry-1", 7, OrderIdempotency.basketDigest(testOrderItems), new Date())));
+        when(orderRepository.findById(7)).thenReturn(Optional.empty());
+        when(orderWriteBehind.isEnabled()).thenReturn(true);
+        Order queued = orderWithId(7);
+        when(orderWriteBehind.unwritten(7)).thenReturn(Optional.of(queued));
+
+        Order result = orderService.placeOrder(testOrderItems, "retry-1");
+
+        assertSame(queued, result);
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void test_PlaceOrders_FailuresDoNotAbortTheBatch() {
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Arrays.asList(testProduct1, testProduct2));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
+
+        List<Map<Integer, Integer>> baskets = Arrays.asList(
+                Map.of(1, 30),
+                Map.of(1, 30),    // only 20 left after the first basket
+                Map.of(3, 1),
+                Map.of(2, 0),
+                Map.of(1, 20, 2, 5)
+        );
+
+        List<BulkOrderResultDTO> results = orderService.placeOrders(baskets);
+
+        assertEquals(5, results.size());
+        assertNotNull(results.get(0).order());
+        assertEquals(410, results.get(1).error().status());
+        assertEquals("There is not enough stock of Product with ID: 1, remaining stock: 20", results.get(1).error().message());
+        assertEquals(404, results.get(2).error().status());
+        assertEquals(400, results.get(3).error().status());
+        assertEquals(2, results.get(4).order().getOrderProducts().size());
+
+        // one snapshot load, one net update per product location and one batched save for the whole request
+        verify(productRepository, times(1)).findAllByIdsOrderByLocation(anyCollection());
+        verify(productRepository).decrementQuantity(1, Location.MUNICH, 50);
+        verify(productRepository).decrementQuantity(2, Location.COLOGNE, 5);
+        verify(orderRepository).saveAll(argThat((List<Order> orders) -> orders.size() == 2));
+        assertEquals(0, inventoryCache.get(1).orElseThrow().quantityAt(Location.MUNICH));
+    }
+
+    @Test
+    void test_PlaceOrders_StockChangedBehindCache_FailsWholeBatch() {
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Collections.singletonList(testProduct1));
+        when(productRepository.decrementQuantity(1, Location.MUNICH, 3)).thenReturn(0);
+
+        List<BulkOrderResultDTO> results = orderService.placeOrders(Arrays.asList(Map.of(1, 1), Map.of(1, 2)));
+
+        assertTrue(results.stream().allMatch(result -> result.order() == null && result.error().status() == 410));
+        verify(orderRepository, never()).saveAll(any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void test_PlaceOrder_Sharded_FailedWriteReleasesHeldStock() throws Exception {
+        locationShards = new LocationShards(inventoryCache, meterRegistry, true, 3);
+        orderService = orderService(false);
+
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Arrays.asList(testProduct1, testProduct2));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
+        when(orderRepository.save(any(Order.class)))
+                .thenThrow(new IllegalStateException("connection lost"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        try {
+            assertThrows(IllegalStateException.class, () -> orderService.placeOrder(testOrderItems));
+            verify(transactionManager).rollback(any());
+
+            // every unit held by the failed order is available again, on both shards
+            Order order = orderService.placeOrder(Map.of(1, 50, 2, 50));
+            assertEquals(2, order.getOrderProducts().size());
+            assertEquals(1.0, meterRegistry.get("inventory.shards.aborts").counter().count());
+            verify(productRepository).decrementQuantity(1, Location.MUNICH, 50);
+        } finally {
+            locationShards.shutdown();
+        }
+    }
+
+    @Test
+    void test_PlaceOrders_Sharded_LaterBasketsOnlySeeWhatIsLeft() {
+        locationShards = new LocationShards(inventoryCache, meterRegistry, true, 3);
+        orderService = orderService(false);
+
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection()))
+                .thenReturn(Collections.singletonList(testProduct1));
+        when(productRepository.decrementQuantity(anyInt(), any(Location.class), anyInt())).thenReturn(1);
+
+        try {
+            List<BulkOrderResultDTO> results = orderService.placeOrders(Arrays.asList(Map.of(1, 30), Map.of(1, 30), Map.of(1, 20)));
+
+            assertNotNull(results.get(0).order());
+            assertEquals("There is not enough stock of Product with ID: 1, remaining stock: 20", results.get(1).error().message());
+            assertNotNull(results.get(2).order());
+            verify(productRepository).decrementQuantity(1, Location.MUNICH, 50);
+            verify(orderRepository).saveAll(argThat((List<Order> orders) -> orders.size() == 2));
+        } finally {
+            locationShards.shutdown();
+        }
+    }
+
     @Test
     void test_GetAllOrders_ReturnsAllOrders() {
         List<Order> expectedOrders = Arrays.asList(new Order(), new Order());
-        when(orderRepository.findAll()).thenReturn(expectedOrders);
+        when(orderRepository.findAllWithProducts()).thenReturn(expectedOrders);
 
         List<Order> result = orderService.getAllOrders();
 
         assertEquals(2, result.size());
-        verify(orderRepository).findAll();
+        verify(orderRepository).findAllWithProducts();
     }
 
     @Test
@@ -188,4 +531,93 @@ class OrderServiceImplTest {
         assertTrue(result.isEmpty());
         verify(orderRepository).findById(99);
     }
-}
\ No newline at end of file
+
+    @Test
+    void test_GetOrderById_ReadModelRebuilt_IsAnsweredByProjection() throws InterruptedException {
+        orderReadModel = new OrderReadModel(Optional.of(new InMemoryOrderReadStore()), meterRegistry, 500, 1000);
+        orderService = orderService(false);
+        Order persisted = orderWithId(1);
+        persisted.setTimestamp(new Date());
+        persisted.setOrderProducts(List.of(new OrderProduct(1, 2, "Test Product 1", 20_000, Location.MUNICH)));
+        when(orderRepository.findIdsAfter(eq(0), any(Date.class), any(Date.class), any(Limit.class)))
+                .thenReturn(Collections.singletonList(1));
+        when(orderRepository.findAllWithProductsByIdIn(Collections.singletonList(1)))
+                .thenReturn(Collections.singletonList(persisted));
+
+        orderService.rebuildReadModel();
+
+        assertEquals(persisted.getOrderProducts(), orderService.getOrderById(1).orElseThrow().getOrderProducts());
+        assertEquals(1, orderService.getOrders(null, null, null, 10, ReadConsistency.READ_YOUR_WRITES).orders().size());
+        verify(orderRepository, never()).findById(any());
+        orderReadModel.shutdown();
+    }
+
+    @Test
+    void test_GetOrders_FullPage_ReturnsCursorOfLastOrder() {
+        List<Order> page = Arrays.asList(orderWithId(3), orderWithId(7));
+        when(orderRepository.findIdsAfter(eq(0), any(Date.class), any(Date.class), eq(Limit.of(2))))
+                .thenReturn(Arrays.asList(3, 7));
+        when(orderRepository.findAllWithProductsByIdIn(Arrays.asList(3, 7))).thenReturn(page);
+
+        OrderPageDTO result = orderService.getOrders(null, null, null, 2);
+
+        assertEquals(page, result.orders());
+        assertEquals(7, result.nextCursor());
+    }
+
+    @Test
+    void test_GetOrders_LastPage_HasNoCursor() {
+        when(orderRepository.findIdsAfter(eq(7), any(Date.class), any(Date.class), eq(Limit.of(2))))
+                .thenReturn(Collections.singletonList(9));
+        when(orderRepository.findAllWithProductsByIdIn(Collections.singletonList(9)))
+                .thenReturn(Collections.singletonList(orderWithId(9)));
+
+        OrderPageDTO result = orderService.getOrders(7, null, null, 2);
+
+        assertEquals(1, result.orders().size());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    void test_ForEachOrder_WalksAllChunks() {
+        when(orderRepository.findIdsAfter(eq(0), any(Date.class), any(Date.class), any(Limit.class)))
+                .thenReturn(Arrays.asList(1, 2));
+        when(orderRepository.findIdsAfter(eq(2), any(Date.class), any(Date.class), any(Limit.class)))
+                .thenReturn(Collections.singletonList(3));
+        when(orderRepository.findAllWithProductsByIdIn(anyCollection()))
+                .thenReturn(Arrays.asList(orderWithId(1), orderWithId(2)))
+                .thenReturn(Collections.singletonList(orderWithId(3)));
+
+        List<Integer> visited = new ArrayList<>();
+        orderService.forEachOrder(null, null, order -> visited.add(order.getId()));
+
+        assertEquals(Arrays.asList(1, 2, 3), visited);
+        verify(orderRepository, never()).findAllWithProducts();
+    }
+
+    private OrderServiceImpl orderService(boolean compactLines) {
+        return new OrderServiceImpl(
+                orderRepository,
+                productRepository,
+                new StockReservationEngine(transactionManager, 16),
+                inventoryCache,
+                orderWriteBehind,
+                orderAnalytics,
+                new OrderPlacementMetrics(meterRegistry),
+                new ExactAllocationStrategy(),
+                orderIdempotency,
+                new InventoryLedger(productRepository, inventoryCache, transactionManager, meterRegistry, false, Path.of("ledger"), 100_000, false),
+                pricingEngine,
+                orderReadModel,
+                locationShards,
+                2,
+                compactLines
+        );
+    }
+
+    private Order orderWithId(int id) {
+        Order order = new Order();
+        order.setId(id);
+        return order;
+    }
+}
@@ -0,0 +1,153 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.service.OrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "orders.write-behind.enabled=true",
+                "orders.write-behind.batch-size=16",
+                "spring.jpa.show-sql=false",
+                "logging.level.org.hibernate.SQL=WARN"
+        }
+)
+@AutoConfigureTestDatabase
+class OrderWriteBehindTest {
+
+    @Autowired
+    private OrderServiceImpl orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderWriteBehind orderWriteBehind;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void test_QueuedOrders_AreFlushedOnShutdown_WithIdsDistinctFromJpaIds() throws Exception {
+        List<Integer> queuedIds = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            queuedIds.add(orderService.placeOrder(Map.of(1, 1, 2, 1)).getId());
+        }
+
+        // an order saved through JPA draws its id from the same sequence
+        Order jpaOrder = new Order();
+        jpaOrder.setOrderProducts(List.of());
+        Integer jpaId = orderRepository.save(jpaOrder).getId();
+
+        orderWriteBehind.shutdown();
+
+        Set<Integer> allIds = new HashSet<>(queuedIds);
+        allIds.add(jpaId);
+        assertEquals(41, allIds.size());
+
+        assertEquals(41, jdbcTemplate.queryForObject("select count(*) from orders", Integer.class));
+        assertEquals(80, jdbcTemplate.queryForObject("select count(*) from order_order_products", Integer.class));
+        Order reloaded = orderService.getOrders(queuedIds.get(0) - 1, null, null, 1).orders().get(0);
+        assertEquals(queuedIds.get(0), reloaded.getId());
+        assertEquals(2, reloaded.getOrderProducts().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void test_Enqueue_BatchInsertFailsTwice_IsRetriedUntilWritten() throws Exception {
+        JdbcTemplate failingJdbcTemplate = mock(JdbcTemplate.class);
+        when(failingJdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenReturn(new int[][]{{1}});
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OrderWriteBehind writeBehind = new OrderWriteBehind(failingJdbcTemplate, mock(PlatformTransactionManager.class),
+                mock(EntityManagerFactory.class), meterRegistry, true, 10, 10, 0, true);
+
+        writeBehind.enqueue(order(1));
+        writeBehind.shutdown();
+
+        assertTrue(writeBehind.unwritten(1).isEmpty());
+        assertEquals(2, meterRegistry.counter("orders.write-behind.retries").count());
+        assertEquals(0, meterRegistry.counter("orders.write-behind.failed").count());
+        verify(failingJdbcTemplate, times(3)).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void test_Enqueue_AfterShutdown_IsWrittenOnCallersThread() throws Exception {
+        JdbcTemplate mockJdbcTemplate = mock(JdbcTemplate.class);
+        OrderWriteBehind writeBehind = new OrderWriteBehind(mockJdbcTemplate, mock(PlatformTransactionManager.class),
+                mock(EntityManagerFactory.class), new SimpleMeterRegistry(), true, 10, 10, 0, true);
+        writeBehind.shutdown();
+
+        writeBehind.enqueue(order(2));
+
+        assertTrue(writeBehind.unwritten(2).isEmpty());
+        verify(mockJdbcTemplate).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void test_AnalyticsRebuild_OrderStillQueued_IsCounted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        JdbcTemplate slowJdbcTemplate = mock(JdbcTemplate.class);
+        when(slowJdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    release.await(10, TimeUnit.SECONDS);
+                    return new int[][]{{1}};
+                });
+        OrderWriteBehind writeBehind = new OrderWriteBehind(slowJdbcTemplate, mock(PlatformTransactionManager.class),
+                mock(EntityManagerFactory.class), new SimpleMeterRegistry(), true, 10, 10, 0, true);
+        OrderAnalytics orderAnalytics = new OrderAnalytics(60);
+        AnalyticsServiceImpl analyticsService = new AnalyticsServiceImpl(orderAnalytics, mock(OrderService.class),
+                mock(StockForecaster.class), writeBehind, false);
+
+        // placed before the rebuild, its row is not written until the writer is released
+        Order queued = order(3);
+        writeBehind.enqueue(queued);
+        orderAnalytics.record(queued);
+
+        try {
+            assertEquals(1, analyticsService.rebuild());
+            assertEquals(1, orderAnalytics.totals(null, null).orders());
+        } finally {
+            release.countDown();
+            writeBehind.shutdown();
+        }
+    }
+
+    private static Order order(int id) {
+        Order order = new Order();
+        order.setId(id);
+        order.setTimestamp(new Date());
+        order.setOrderProducts(List.of());
+        return order;
+    }
+}
@@ -0,0 +1,81 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingRulesTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void test_DefaultRules_MatchTheOriginalThresholds() {
+        PricingRules rules = new PricingEngine(new SimpleMeterRegistry(), new ClassPathResource("pricing-rules.json"), 0).rules();
+
+        assertEquals(30, rules.deliveryCost(50_000, 1));
+        assertEquals(0, rules.deliveryCost(50_001, 1));
+        assertEquals(100_000, rules.finalCost(100_000, 100_000));
+        assertEquals(99_000, rules.finalCost(110_000, 110_000));
+        assertEquals(0, rules.lineDiscount(1, 100, 100_000));
+    }
+
+    @Test
+    void test_Compile_PicksTiersByThresholdAndRejectsConflicts() {
+        PricingRules rules = PricingRules.compile(new PricingRulesConfig(
+                List.of(new PricingRulesConfig.DiscountTier(2000, 20), new PricingRulesConfig.DiscountTier(1000, 10)),
+                List.of(new PricingRulesConfig.DeliveryTier(500, 30), new PricingRulesConfig.DeliveryTier(100, 50)),
+                List.of(new PricingRulesConfig.ProductPromotion(7, 3, 25)),
+                Map.of(Location.FRANKFURT, 4)));
+
+        assertEquals(135_000, rules.finalCost(150_000, 150_000));
+        assertEquals(180_000, rules.finalCost(200_000, 200_000));
+        assertEquals(200_000, rules.finalCost(250_000, 250_000));
+        assertEquals(50, rules.deliveryCost(10_000, 0));
+        assertEquals(34, rules.deliveryCost(10_001, 1 << Location.FRANKFURT.ordinal() | 1 << Location.MUNICH.ordinal()));
+        assertEquals(0, rules.lineDiscount(7, 2, 10_000));
+        assertEquals(2_500, rules.lineDiscount(7, 3, 10_000));
+        // a quarter of 3 cents is rounded to the nearest cent
+        assertEquals(1, rules.lineDiscount(7, 3, 3));
+        assertEquals(6, rules.ruleCount());
+
+        assertThrows(IllegalArgumentException.class, () -> PricingRules.compile(new PricingRulesConfig(
+                null, null,
+                List.of(new PricingRulesConfig.ProductPromotion(7, null, 10), new PricingRulesConfig.ProductPromotion(7, 2, 20)),
+                null)));
+        assertThrows(IllegalArgumentException.class, () -> PricingRules.compile(new PricingRulesConfig(
+                List.of(new PricingRulesConfig.DiscountTier(100, 120)), null, null, null)));
+    }
+
+    @Test
+    void test_Reload_SwapsInChangedFileAndKeepsRulesOnError() throws Exception {
+        Path file = directory.resolve("pricing-rules.json");
+        Files.writeString(file, "{\"deliveryTiers\": [ { \"upTo\": 500, \"fee\": 30 } ]}");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // reloaded by hand below
+        PricingEngine engine = new PricingEngine(meterRegistry, new FileSystemResource(file), 0);
+
+        Files.writeString(file, "{\"deliveryTiers\": [ { \"upTo\": 500, \"fee\": 45 } ]}");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        engine.reloadIfModified();
+        assertEquals(45, engine.rules().deliveryCost(10_000, 0));
+
+        Files.writeString(file, "{\"deliveryTiers\": [ { \"upTo\": 500, \"fee\": -1 } ]}");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+        engine.reloadIfModified();
+        assertEquals(45, engine.rules().deliveryCost(10_000, 0));
+        assertEquals(1.0, meterRegistry.get("pricing.rules.reloads").counter().count());
+        assertEquals(1.0, meterRegistry.get("pricing.rules.reload.failures").counter().count());
+    }
+}
@@ -0,0 +1,176 @@
+package ing.assessment.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.dto.CatalogueJsonDTO;
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductServiceImplTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InventoryCache inventoryCache;
+    private ProductServiceImpl productService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(productRepository.findAll()).thenReturn(List.of(
+                new Product(new ProductCK(1, Location.MUNICH), "Test Product 1", 10_000, 50),
+                new Product(new ProductCK(2, Location.COLOGNE), "Test Product 2", 20_000, 50)
+        ));
+        meterRegistry = new SimpleMeterRegistry();
+        inventoryCache = new InventoryCache(productRepository, meterRegistry, 0);
+        productService = new ProductServiceImpl(inventoryCache, new ObjectMapper(), meterRegistry, true, 0);
+    }
+
+    @Test
+    void test_GetAllProductsJson_ReusesBytesUntilStockChanges() {
+        CatalogueJsonDTO first = productService.getAllProductsJson();
+        assertSame(first, productService.getAllProductsJson());
+        assertEquals(first.eTag(), productService.getCatalogueETag());
+
+        inventoryCache.applyCommitted(List.of(new StockDecrement(1, Location.MUNICH, 5)));
+
+        CatalogueJsonDTO second = productService.getAllProductsJson();
+        assertNotEquals(first.eTag(), second.eTag());
+        assertEquals(second.eTag(), productService.getCatalogueETag());
+        assertTrue(new String(second.json()).contains("\"quantity\":45"));
+    }
+
+    @Test
+    void test_GetAllProductsJson_UnchangedWhenNoStockWasTaken() {
+        CatalogueJsonDTO first = productService.getAllProductsJson();
+
+        // a placement that was rolled back commits no decrements
+        inventoryCache.applyCommitted(List.of());
+
+        assertSame(first, productService.getAllProductsJson());
+        assertEquals(first.eTag(), productService.getCatalogueETag());
+        verify(productRepository, times(1)).findAll();
+    }
+
+    @Test
+    void test_GetProductJson_ConcurrentLookupsShareOneLoad() throws Exception {
+        productService.getAllProducts();
+
+        CountDownLatch serializing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger serializations = new AtomicInteger();
+        ObjectMapper slowMapper = new ObjectMapper() {
+            @Override
+            public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+                serializations.incrementAndGet();
+                serializing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.writeValueAsBytes(value);
+            }
+        };
+        productService = new ProductServiceImpl(inventoryCache, slowMapper, meterRegistry, true, 0);
+
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Optional<CatalogueJsonDTO>>> lookups = new ArrayList<>();
+            lookups.add(executor.submit(() -> productService.getProductJson(1)));
+            serializing.await();
+            for (int i = 1; i < callers; i++) {
+                lookups.add(executor.submit(() -> productService.getProductJson(1)));
+            }
+            while (productService.callersInFlight(1) < callers) Thread.onSpinWait();
+            release.countDown();
+
+            CatalogueJsonDTO first = lookups.get(0).get().orElseThrow();
+            for (Future<Optional<CatalogueJsonDTO>> lookup : lookups) {
+                assertSame(first, lookup.get().orElseThrow());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, serializations.get());
+        assertEquals(1, meterRegistry.get("products.lookup.callers").summary().count());
+        assertEquals(callers, meterRegistry.get("products.lookup.callers").summary().totalAmount());
+        assertEquals(0, productService.callersInFlight(1));
+    }
+
+    @Test
+    void test_GetProductJson_MicroCacheServesBodyAcrossStockChanges() {
+        productService = new ProductServiceImpl(inventoryCache, new ObjectMapper(), meterRegistry, true, 60_000);
+        productService.getAllProducts();
+
+        CatalogueJsonDTO first = productService.getProductJson(1).orElseThrow();
+        inventoryCache.applyCommitted(List.of(new StockDecrement(1, Location.MUNICH, 5)));
+
+        // still within the window: the older body is served together with its own, older ETag
+        assertSame(first, productService.getProductJson(1).orElseThrow());
+        assertNotEquals(first.eTag(), productService.getCatalogueETag());
+        assertEquals(1.0, meterRegistry.get("products.lookup.micro-cache.hits").counter().count());
+
+        // without a window every stock change is served right away
+        productService = new ProductServiceImpl(inventoryCache, new ObjectMapper(), meterRegistry, true, 0);
+        assertTrue(new String(productService.getProductJson(1).orElseThrow().json()).contains("\"quantity\":45"));
+    }
+
+    @Test
+    void test_GetProductJson_BoundedInventoryCache_KeepsAsManyProductsJson() {
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> new Product(new ProductCK(id, Location.MUNICH), "Product " + id, 1000, 10)).toList();
+        });
+        inventoryCache = new InventoryCache(productRepository, meterRegistry, 2);
+        productService = new ProductServiceImpl(inventoryCache, new ObjectMapper(), meterRegistry, true, 0);
+
+        for (int id = 1; id <= 5; id++) {
+            productService.getProductJson(id).orElseThrow();
+        }
+
+        // the oldest products made room for the newest
+        assertEquals(2, productService.cachedProducts());
+        assertTrue(productService.getCachedProductJson(1).isEmpty());
+        assertTrue(productService.getCachedProductJson(5).isPresent());
+    }
+
+    @Test
+    void test_GetProductJson_EvictedProduct_IsDroppedFromTheJsonCache() {
+        productService.getAllProducts();
+        productService.getProductJson(1).orElseThrow();
+        productService.getProductJson(2).orElseThrow();
+
+        inventoryCache.evict(1);
+
+        assertEquals(1, productService.cachedProducts());
+        assertTrue(productService.getCachedProductJson(1).isEmpty());
+
+        inventoryCache.evictAll();
+        assertEquals(0, productService.cachedProducts());
+    }
+}
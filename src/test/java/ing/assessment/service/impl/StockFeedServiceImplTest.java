@@ -0,0 +1,137 @@
+package ing.assessment.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockFeedServiceImplTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InventoryCache inventoryCache;
+    private StockFeedServiceImpl stockFeed;
+
+    @BeforeEach
+    void setUp() {
+        when(productRepository.findAll()).thenReturn(List.of(
+                new Product(new ProductCK(1, Location.MUNICH), "Test Product 1", 10_000, 50),
+                new Product(new ProductCK(1, Location.COLOGNE), "Test Product 1", 10_000, 50)
+        ));
+        meterRegistry = new SimpleMeterRegistry();
+        inventoryCache = new InventoryCache(productRepository, meterRegistry, 0);
+        // a window long enough that only the test flushes
+        stockFeed = new StockFeedServiceImpl(inventoryCache, new ObjectMapper(), meterRegistry, 60_000, 60_000, 2, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockFeed.shutdown();
+    }
+
+    @Test
+    void test_Subscribe_SendsSnapshotThenCoalescedDeltas() throws Exception {
+        RecordingSink sink = new RecordingSink(null);
+        stockFeed.subscribe(sink);
+
+        assertEquals("snapshot 0 [{\"productId\":1,\"location\":\"MUNICH\",\"delta\":0,\"quantity\":50},"
+                + "{\"productId\":1,\"location\":\"COLOGNE\",\"delta\":0,\"quantity\":50}]", sink.next());
+
+        inventoryCache.applyCommitted(List.of(new StockDecrement(1, Location.MUNICH, 5)));
+        inventoryCache.applyCommitted(List.of(new StockDecrement(1, Location.MUNICH, 2)));
+        stockFeed.flush();
+
+        assertEquals("stock 1 [{\"productId\":1,\"location\":\"MUNICH\",\"delta\":-7,\"quantity\":43}]", sink.next());
+    }
+
+    @Test
+    void test_SlowSubscriber_IsResyncedFromSnapshotThenDropped() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink(release);
+        stockFeed.subscribe(sink);
+        // the sender is now stuck on the snapshot, anything after it queues up
+        assertEquals("snapshot", sink.next().split(" ")[0]);
+
+        for (int i = 0; i < 3; i++) {
+            inventoryCache.applyCommitted(List.of(new StockDecrement(1, Location.MUNICH, 1)));
+            stockFeed.flush();
+        }
+        // the third event overflowed the buffer of 2, it was replaced by a snapshot
+        assertEquals(2.0, meterRegistry.get("inventory.feed.snapshots").counter().count());
+
+        for (int i = 0; i < 2; i++) {
+            inventoryCache.applyCommitted(List.of(new StockDecrement(1, Location.MUNICH, 1)));
+            stockFeed.flush();
+        }
+        // overflowed again with that snapshot still unsent
+        assertEquals(1.0, meterRegistry.get("inventory.feed.dropped").counter().count());
+        assertEquals(0.0, meterRegistry.get("inventory.feed.subscribers").gauge().value());
+
+        release.countDown();
+        assertTrue(sink.closed.await(5, TimeUnit.SECONDS));
+    }
+
+    private static final class RecordingSink implements StockFeedServiceImpl.Sink {
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch release;
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private RecordingSink(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(String name, long id, String data) {
+            events.add(name + " " + id + " " + data);
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        private String next() throws InterruptedException {
+            String event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "no event was sent");
+            return event;
+        }
+    }
+
+    @Test
+    void test_Subscribe_IsExemptFromTheAsyncTimeout() {
+        SseEmitter emitter = stockFeed.subscribe();
+
+        assertEquals(-1L, emitter.getTimeout());
+    }
+}
@@ -0,0 +1,145 @@
+package ing.assessment.service.impl;
+
+import ing.assessment.db.order.Order;
+import ing.assessment.db.order.OrderProduct;
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.dto.StockOutForecastDTO;
+import ing.assessment.model.Location;
+import ing.assessment.service.OrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockForecasterTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private OrderWriteBehind orderWriteBehind;
+
+    private final List<Order> orders = new ArrayList<>();
+    private final List<Object> events = new ArrayList<>();
+    private StockForecaster stockForecaster;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        InventoryCache inventoryCache = new InventoryCache(productRepository, new SimpleMeterRegistry(), 0);
+        // 24h half-life, low stock within 3 days, chunks of 2 orders
+        stockForecaster = new StockForecaster(orderService, inventoryCache, events::add, orderWriteBehind, new SimpleMeterRegistry(), 0, 24, 3, 2);
+        now = System.currentTimeMillis();
+        when(orderWriteBehind.lowestUnwrittenId()).thenReturn(OptionalInt.empty());
+
+        when(orderService.getPersistedOrdersAfter(anyInt(), any(Date.class), eq(2))).thenAnswer(invocation -> {
+            int afterId = invocation.getArgument(0);
+            return orders.stream().filter(order -> order.getId() > afterId).limit(2).toList();
+        });
+    }
+
+    @Test
+    void test_Run_ReadsOnlyOrdersSinceCheckpoint() {
+        orders.add(order(1, now - 3 * HOUR, line(1, 1, Location.MUNICH)));
+        orders.add(order(2, now - 2 * HOUR, line(1, 1, Location.MUNICH)));
+        orders.add(order(3, now - HOUR, line(1, 1, Location.MUNICH)));
+        stubStock(new Product(new ProductCK(1, Location.MUNICH), "Shoes", 40_000, 1_000));
+
+        assertEquals(3, stockForecaster.run(now));
+        assertEquals(3, stockForecaster.checkpoint());
+
+        orders.add(order(4, now, line(1, 1, Location.MUNICH)));
+        assertEquals(1, stockForecaster.run(now + HOUR));
+        assertEquals(4, stockForecaster.checkpoint());
+        verify(orderService).getPersistedOrdersAfter(eq(3), any(Date.class), eq(2));
+
+        // an order younger than a few seconds may still have a lower id committing, it waits for the next run
+        orders.add(order(5, now + HOUR, line(1, 1, Location.MUNICH)));
+        assertEquals(0, stockForecaster.run(now + HOUR));
+        assertEquals(4, stockForecaster.checkpoint());
+    }
+
+    @Test
+    void test_Run_ForecastsStockOutAndPublishesLowStockOnce() {
+        orders.add(order(1, now - HOUR, line(1, 10, Location.MUNICH), line(2, 1, Location.COLOGNE)));
+        stubStock(new Product(new ProductCK(1, Location.MUNICH), "Shoes", 40_000, 20),
+                new Product(new ProductCK(2, Location.COLOGNE), "Shirt", 10_000, 1_000));
+
+        stockForecaster.run(now);
+
+        List<StockOutForecastDTO> forecasts = stockForecaster.forecast(null, now);
+        assertEquals(2, forecasts.size());
+        StockOutForecastDTO shoes = forecasts.get(0);
+        assertEquals(1, shoes.productId());
+        assertEquals(Location.MUNICH, shoes.location());
+        assertEquals(20, shoes.quantity());
+        // 10 units an hour ago, decayed over a 24h half-life and spread over the five half-lives read on startup
+        assertEquals(6.95, shoes.dailyDemand(), 0.01);
+        assertEquals(2.88, shoes.daysUntilStockOut(), 0.01);
+
+        assertEquals(1, events.size());
+        LowStockEvent event = (LowStockEvent) events.get(0);
+        assertEquals(new ProductCK(1, Location.MUNICH), event.productCk());
+
+        // still low, not published again
+        stockForecaster.run(now + HOUR);
+        assertEquals(1, events.size());
+        assertEquals(1, stockForecaster.forecast(2, now).size());
+    }
+
+    @Test
+    void test_Run_StopsBelowOrderNotWrittenYet() {
+        orders.add(order(1, now - 3 * HOUR, line(1, 1, Location.MUNICH)));
+        orders.add(order(3, now - 2 * HOUR, line(1, 1, Location.MUNICH)));
+        stubStock(new Product(new ProductCK(1, Location.MUNICH), "Shoes", 40_000, 1_000));
+        // order 2 was placed long ago, but write-behind is still retrying its row
+        when(orderWriteBehind.lowestUnwrittenId()).thenReturn(OptionalInt.of(2));
+
+        assertEquals(1, stockForecaster.run(now));
+        assertEquals(1, stockForecaster.checkpoint());
+
+        orders.add(1, order(2, now - 3 * HOUR, line(1, 1, Location.MUNICH)));
+        when(orderWriteBehind.lowestUnwrittenId()).thenReturn(OptionalInt.empty());
+        assertEquals(2, stockForecaster.run(now));
+        assertEquals(3, stockForecaster.checkpoint());
+    }
+
+    private void stubStock(Product... products) {
+        when(productRepository.findAllByIdsOrderByLocation(anyCollection())).thenReturn(Arrays.asList(products));
+    }
+
+    private static Order order(int id, long timestamp, OrderProduct... lines) {
+        Order order = new Order();
+        order.setId(id);
+        order.setTimestamp(new Date(timestamp));
+        order.setOrderProducts(Arrays.asList(lines));
+        return order;
+    }
+
+    private static OrderProduct line(int productId, int quantity, Location location) {
+        return new OrderProduct(productId, quantity, "Product " + productId, quantity * 10_000L, location);
+    }
+}
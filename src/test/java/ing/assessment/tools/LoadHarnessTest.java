@@ -0,0 +1,60 @@
+package ing.assessment.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ing.assessment.db.product.Product;
+import ing.assessment.db.product.ProductCK;
+import ing.assessment.model.Location;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadHarnessTest {
+
+    @Test
+    void test_ParseStock_SumsLocationsOfTheProductsJson() throws Exception {
+        // the harness reads /products without a JSON library, so it has to keep up with the real serialization
+        String products = new ObjectMapper().writeValueAsString(List.of(
+                new Product(new ProductCK(1, Location.MUNICH), "Shoes", 40_000, 50),
+                new Product(new ProductCK(1, Location.COLOGNE), "Shoes", 40_000, 7),
+                new Product(new ProductCK(2, Location.MUNICH), "Shirt \"quantity\":9", 10_000, 3)
+        ));
+
+        assertEquals(Map.of(1, 57L, 2, 3L), LoadHarness.parseStock(products));
+    }
+
+    @Test
+    void test_Histogram_PercentilesWithinOnePercent() {
+        LoadHarness.Histogram histogram = new LoadHarness.Histogram();
+        for (long value = 1; value <= 100_000; value++) histogram.record(value * 1_000);
+
+        assertEquals(100_000, histogram.count());
+        assertEquals(50_000_000, histogram.percentile(0.50), 500_000);
+        assertEquals(99_000_000, histogram.percentile(0.99), 990_000);
+        assertEquals(100_000_000, histogram.percentile(1.0));
+        for (long value : new long[]{0, 255, 256, 511, 512, 123_456_789, Long.MAX_VALUE}) {
+            long upper = LoadHarness.Histogram.upperBound(LoadHarness.Histogram.index(value));
+            assertTrue(upper >= value && upper - value <= value / 128, "bucket of " + value + " ends at " + upper);
+        }
+    }
+
+    @Test
+    void test_ParseOptions() {
+        assertEquals(Arrays.asList(LoadHarness.Operation.PLACE, LoadHarness.Operation.PLACE, LoadHarness.Operation.PRODUCTS),
+                Arrays.asList(LoadHarness.parseMix("place:2, products:1, all:0")));
+        assertThrows(IllegalArgumentException.class, () -> LoadHarness.parseMix("checkout:5"));
+
+        double[] uniform = LoadHarness.zipf(4, 0);
+        assertEquals(0.25, uniform[0], 1e-9);
+        assertEquals(1.0, uniform[3], 1e-9);
+        assertTrue(LoadHarness.zipf(4, 1.5)[0] > 0.5);
+
+        assertEquals(Duration.ofHours(4), LoadHarness.parseDuration("4h"));
+        assertEquals(Duration.ofMillis(500), LoadHarness.parseDuration("500ms"));
+        assertEquals(Duration.ofSeconds(90), LoadHarness.parseDuration("90"));
+    }
+}
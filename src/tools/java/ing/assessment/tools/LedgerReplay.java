@@ -0,0 +1,141 @@
+package ing.assessment.tools;
+
+import ing.assessment.service.impl.LedgerEvent;
+import ing.assessment.service.impl.LedgerFiles;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Re-drives the baskets recorded in an inventory ledger against a running instance, for capacity testing. Every
+ * recorded basket becomes one {@code POST /orders/place}, sent in recorded order and, unless {@code --speed=0},
+ * with the recorded gaps between them divided by the speed factor.
+ * <p>
+ * Only needs the JDK and the compiled classes:
+ * <pre>
+ * java -cp target/classes ing.assessment.tools.LedgerReplay ledger --target=http://localhost:8080 --concurrency=32 --speed=10
+ * </pre>
+ */
+public final class LedgerReplay {
+
+    record Basket(long timestamp, Map<Integer, Integer> lines) {}
+
+    private LedgerReplay() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: LedgerReplay <ledger-directory> [--target=http://localhost:8080] [--concurrency=16] [--speed=1] [--after=<sequence>]");
+            System.exit(2);
+        }
+
+        Path directory = Path.of(args[0]);
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : Arrays.copyOfRange(args, 1, args.length)) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "");
+        }
+        URI target = URI.create(options.getOrDefault("target", "http://localhost:8080") + "/orders/place");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        double speed = Double.parseDouble(options.getOrDefault("speed", "1"));
+        long after = Long.parseLong(options.getOrDefault("after", "0"));
+
+        List<Basket> baskets = readBaskets(directory, after);
+        System.out.printf("Replaying %d baskets from %s against %s, concurrency %d, speed %s%n",
+                baskets.size(), directory, target, concurrency, speed == 0 ? "max" : speed + "x");
+        replay(baskets, target, concurrency, speed);
+    }
+
+    static List<Basket> readBaskets(Path directory, long afterSequence) throws IOException {
+        Map<Long, Basket> baskets = new LinkedHashMap<>();
+
+        LedgerFiles.readEvents(directory, afterSequence, event -> {
+            if (event.type() != LedgerEvent.Type.RESERVED) return;
+            baskets.computeIfAbsent(event.basketId(), id -> new Basket(event.timestamp(), new LinkedHashMap<>()))
+                    .lines()
+                    .put(event.productId(), event.quantity());
+        });
+
+        return new ArrayList<>(baskets.values());
+    }
+
+    private static void replay(List<Basket> baskets, URI target, int concurrency, double speed) throws InterruptedException {
+        if (baskets.isEmpty()) return;
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        Semaphore permits = new Semaphore(concurrency);
+        long[] latencies = new long[baskets.size()];
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        AtomicInteger completed = new AtomicInteger();
+        LongAdder lagNanos = new LongAdder();
+
+        long recordedStart = baskets.get(0).timestamp();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < baskets.size(); i++) {
+            Basket basket = baskets.get(i);
+            if (speed > 0) {
+                long due = start + (long) (TimeUnit.MILLISECONDS.toNanos(basket.timestamp() - recordedStart) / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                else lagNanos.add(-wait);
+            }
+            permits.acquire();
+
+            int index = i;
+            long sent = System.nanoTime();
+            HttpRequest request = HttpRequest.newBuilder(target)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(toJson(basket.lines())))
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                latencies[index] = System.nanoTime() - sent;
+                String outcome = error != null ? error.getClass().getSimpleName() : String.valueOf(response.statusCode());
+                outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+                completed.incrementAndGet();
+                permits.release();
+            });
+        }
+        permits.acquire(concurrency);
+
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        System.out.printf("Sent %d orders in %.1f s, %.0f orders/s, average lag behind the recorded schedule %.1f ms%n",
+                completed.get(), elapsed / 1e9, completed.get() * 1e9 / elapsed,
+                lagNanos.sum() / 1e6 / baskets.size());
+        System.out.printf("Latency p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                latencies[latencies.length - 1] / 1e6);
+        System.out.println("Responses: " + new TreeMap<>(outcomes).entrySet().stream()
+                .map(outcome -> outcome.getKey() + "=" + outcome.getValue().sum())
+                .collect(Collectors.joining(", ")));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    private static String toJson(Map<Integer, Integer> lines) {
+        return lines.entrySet().stream()
+                .map(line -> "\"" + line.getKey() + "\":" + line.getValue())
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+}
@@ -0,0 +1,746 @@
+package ing.assessment.tools;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Load and soak test harness for a running instance. Sends a weighted mix of {@code POST /orders/place},
+ * {@code GET /orders/{id}}, {@code GET /orders/all} and {@code GET /products}, with baskets drawn from a Zipf
+ * distribution over the catalogue, and reports throughput, latency percentiles and errors per exception type.
+ * <ul>
+ *     <li>{@code --model=closed}: {@code --concurrency} users, each sending its next request once the previous one
+ *     has been answered (plus {@code --think-ms})</li>
+ *     <li>{@code --model=open}: Poisson arrivals at {@code --rate} requests per second whatever the response times,
+ *     at most {@code --concurrency} in flight. Latency is measured from when a request was due, so a stalled
+ *     server is not hidden by requests that were never sent</li>
+ *     <li>{@code --soak}: every {@code --check-interval} the load is paused and the stock of every product is
+ *     compared with the initial stock less the units of every order placed, and the heap of the instance is
+ *     sampled. The run fails when stock is not conserved or the heap floor grows by more than
+ *     {@code --max-heap-growth} percent</li>
+ * </ul>
+ * Only needs the JDK and the compiled classes:
+ * <pre>
+ * java -cp target/classes ing.assessment.tools.LoadHarness --write-data=soak-data.sql --products=1000 --stock=1000000
+ * java -cp target/classes ing.assessment.tools.LoadHarness --target=http://localhost:8080 --model=open --rate=500 --duration=5m
+ * </pre>
+ * The stock checks assume this harness is the only client placing orders.
+ */
+public final class LoadHarness {
+
+    enum Operation { PLACE, ORDER, ALL_ORDERS, PRODUCTS }
+
+    private static final Map<String, Operation> MIX_KEYS = Map.of(
+            "place", Operation.PLACE, "order", Operation.ORDER, "all", Operation.ALL_ORDERS, "products", Operation.PRODUCTS);
+
+    // the error titles of ErrorResponseDTO, mapped back to the exception that produced them
+    private static final Map<String, String> ERROR_TYPES = Map.of(
+            "Out of stock", "OutOfStockException",
+            "Product not found", "ProductNotFoundException",
+            "Order not found", "OrderNotFoundException",
+            "Invalid order", "InvalidOrderException",
+            "Internal error", "InternalError");
+
+    private static final Pattern ERROR = Pattern.compile("\"error\":\"([^\"]*)\"");
+    private static final Pattern ORDER_ID = Pattern.compile("^\\{\"id\":(\\d+)");
+    private static final Pattern ORDER_LINE = Pattern.compile("\"productId\":(\\d+),\"quantity\":(\\d+)");
+    private static final Pattern PRODUCT = Pattern.compile("\"productCk\":\\{\"id\":(\\d+),\"location\":\"\\w+\"},.*?\"quantity\":(-?\\d+)");
+    private static final Pattern METRIC_VALUE = Pattern.compile("\"statistic\":\"VALUE\",\"value\":([0-9.E+-]+)");
+
+    private static final int RECENT_ORDERS = 4096;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String target;
+    private final Map<String, String> options;
+    private final Operation[] mix;
+    private final int[] productIds;
+    private final double[] popularity;
+    private final int maxBasket;
+    private final int maxQuantity;
+    private final int allLimit;
+    private final Duration timeout;
+
+    private volatile Map<Operation, Stats> stats = newStats();
+    private volatile Stats window = new Stats();
+
+    // units of every order placed by this run, and of every placement whose outcome is unknown
+    private final Map<Integer, LongAdder> sold = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> uncertain = new ConcurrentHashMap<>();
+    private final AtomicIntegerArray recentOrderIds = new AtomicIntegerArray(RECENT_ORDERS);
+    private final AtomicLong placedOrders = new AtomicLong();
+
+    private LoadHarness(String target, Map<String, String> options, Map<Integer, Long> catalogue) {
+        this.target = target;
+        this.options = options;
+        this.mix = parseMix(options.getOrDefault("mix", "place:60,order:20,all:5,products:15"));
+        this.productIds = catalogue.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        this.popularity = zipf(productIds.length, Double.parseDouble(options.getOrDefault("skew", "1.0")));
+        this.maxBasket = Math.min(Integer.parseInt(options.getOrDefault("max-basket", "3")), productIds.length);
+        this.maxQuantity = Integer.parseInt(options.getOrDefault("max-quantity", "2"));
+        this.allLimit = Integer.parseInt(options.getOrDefault("all-limit", "100"));
+        this.timeout = parseDuration(options.getOrDefault("timeout", "10s"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "");
+        }
+        if (options.containsKey("help")) {
+            System.err.println("Usage: LoadHarness [--target=http://localhost:8080] [--model=closed|open] [--concurrency=32] [--rate=200]"
+                    + " [--think-ms=0] [--duration=60s] [--warmup=10s] [--mix=place:60,order:20,all:5,products:15] [--skew=1.0]"
+                    + " [--max-basket=3] [--max-quantity=2] [--all-limit=100] [--timeout=10s] [--report-interval=10s]"
+                    + " [--soak] [--check-interval=5m] [--max-heap-growth=20]");
+            System.err.println("       LoadHarness --write-data=<file.sql> [--products=1000] [--stock=1000000]");
+            System.exit(2);
+        }
+        if (options.containsKey("write-data")) {
+            writeData(Path.of(options.get("write-data")),
+                    Integer.parseInt(options.getOrDefault("products", "1000")),
+                    Integer.parseInt(options.getOrDefault("stock", "1000000")));
+            return;
+        }
+
+        String target = options.getOrDefault("target", "http://localhost:8080");
+        HttpClient client = HttpClient.newHttpClient();
+        Map<Integer, Long> catalogue = stock(client, target);
+        if (catalogue.isEmpty()) {
+            System.err.println("No products at " + target + "/products");
+            System.exit(1);
+        }
+
+        boolean passed = new LoadHarness(target, options, catalogue).run(catalogue);
+        System.exit(passed ? 0 : 1);
+    }
+
+    // a catalogue large enough for hours of orders, load it with --spring.sql.init.data-locations=file:<file>
+    static void writeData(Path file, int products, int stockPerLocation) throws IOException {
+        String[] names = {"Shoes", "Shirt", "Jeans", "Jacket", "Hat", "Scarf", "Socks", "Belt"};
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            for (int id = 1; id <= products; id++) {
+                for (int location = 0; location < 3; location++) {
+                    out.printf("INSERT INTO product (id, location, name, price_cents, quantity) VALUES (%d, %d, '%s %d', %d, %d);%n",
+                            id, location, names[id % names.length], id, 1_000 + (id * 7_919L) % 99_000, stockPerLocation);
+                }
+            }
+        }
+        System.out.printf("Wrote %d products with %d units per location to %s%n", products, stockPerLocation, file);
+    }
+
+    private boolean run(Map<Integer, Long> initialStock) throws InterruptedException {
+        String model = options.getOrDefault("model", "closed");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+        long thinkMillis = Long.parseLong(options.getOrDefault("think-ms", "0"));
+        Duration duration = parseDuration(options.getOrDefault("duration", "60s"));
+        Duration warmup = parseDuration(options.getOrDefault("warmup", "10s"));
+        Duration reportInterval = parseDuration(options.getOrDefault("report-interval", "10s"));
+        boolean soak = options.containsKey("soak");
+        Duration checkInterval = parseDuration(options.getOrDefault("check-interval", "5m"));
+        double maxHeapGrowth = Double.parseDouble(options.getOrDefault("max-heap-growth", "20"));
+
+        System.out.printf("Load against %s: %s model, %s, %d products, skew %s, mix %s, %s after %s warmup%s%n",
+                target, model,
+                model.equals("open") ? rate + " req/s, at most " + concurrency + " in flight" : concurrency + " users",
+                productIds.length, options.getOrDefault("skew", "1.0"), options.getOrDefault("mix", "place:60,order:20,all:5,products:15"),
+                format(duration), format(warmup), soak ? ", soak checks every " + format(checkInterval) : "");
+
+        // every request holds a permit, a soak check takes all of them to look at a quiescent instance
+        Semaphore permits = new Semaphore(concurrency, true);
+        Load load = model.equals("open")
+                ? new OpenLoad(permits, rate)
+                : new ClosedLoad(permits, concurrency, thinkMillis);
+        load.start();
+
+        long start = System.nanoTime();
+        long warmupEnd = start + warmup.toNanos();
+        long end = warmupEnd + duration.toNanos();
+        long nextReport = start + reportInterval.toNanos();
+        long nextCheck = warmupEnd + checkInterval.toNanos();
+        boolean warm = warmup.isZero();
+        Soak checks = new Soak(initialStock, maxHeapGrowth);
+
+        while (System.nanoTime() < end) {
+            long now = System.nanoTime();
+            long wake = Math.min(end, Math.min(nextReport, soak && warm ? nextCheck : Long.MAX_VALUE));
+            if (!warm) wake = Math.min(wake, warmupEnd);
+            if (wake > now) TimeUnit.NANOSECONDS.sleep(wake - now);
+
+            now = System.nanoTime();
+            if (!warm && now >= warmupEnd) {
+                warm = true;
+                stats = newStats();
+                System.out.println("Warmup done, measuring");
+                if (soak) checks.check(permits, concurrency);
+            }
+            if (soak && warm && now >= nextCheck) {
+                checks.check(permits, concurrency);
+                nextCheck = System.nanoTime() + checkInterval.toNanos();
+            }
+            if (now >= nextReport) {
+                report(now - start, reportInterval);
+                nextReport += reportInterval.toNanos();
+                if (soak) checks.sampleHeap();
+            }
+        }
+
+        long measured = System.nanoTime() - warmupEnd;
+        load.stop();
+        permits.acquire(concurrency);
+        permits.release(concurrency);
+
+        summary(measured);
+        if (!soak) return true;
+
+        checks.check(permits, concurrency);
+        return checks.verdict();
+    }
+
+    // ---- requests
+
+    private record Call(Operation operation, HttpRequest request, Map<Integer, Integer> basket) {}
+
+    private Call nextCall(SplittableRandom random) {
+        Operation operation = mix[random.nextInt(mix.length)];
+        int orderId = 0;
+        if (operation == Operation.ORDER) {
+            int slots = (int) Math.min(placedOrders.get(), RECENT_ORDERS);
+            if (slots > 0) orderId = recentOrderIds.get(random.nextInt(slots));
+            // nothing placed yet, or a slot that is about to be filled
+            if (orderId == 0) operation = Operation.PRODUCTS;
+        }
+
+        return switch (operation) {
+            case PLACE -> {
+                Map<Integer, Integer> basket = basket(random);
+                String json = basket.entrySet().stream()
+                        .map(line -> "\"" + line.getKey() + "\":" + line.getValue())
+                        .collect(Collectors.joining(",", "{", "}"));
+                yield new Call(operation, request("/orders/place")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(json))
+                        .build(), basket);
+            }
+            case ORDER -> new Call(operation, request("/orders/" + orderId).build(), null);
+            case ALL_ORDERS -> new Call(operation, request(allLimit > 0 ? "/orders/all?limit=" + allLimit : "/orders/all").build(), null);
+            case PRODUCTS -> new Call(operation, request("/products").build(), null);
+        };
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(target + path)).timeout(timeout);
+    }
+
+    private Map<Integer, Integer> basket(SplittableRandom random) {
+        int size = 1 + random.nextInt(maxBasket);
+        Map<Integer, Integer> basket = new LinkedHashMap<>();
+
+        // popular products are drawn again and again under a high skew, give up on a distinct one after a few tries
+        for (int attempt = 0; basket.size() < size && attempt < size * 8; attempt++) {
+            int index = Arrays.binarySearch(popularity, random.nextDouble());
+            int productId = productIds[Math.min(index >= 0 ? index : -index - 1, productIds.length - 1)];
+            basket.putIfAbsent(productId, 1 + random.nextInt(maxQuantity));
+        }
+        return basket;
+    }
+
+    private void completed(Call call, long startNanos, HttpResponse<String> response, Throwable error) {
+        long latency = System.nanoTime() - startNanos;
+        String outcome;
+
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            outcome = cause.getClass().getSimpleName();
+            if (call.basket() != null) add(uncertain, call.basket());
+        } else if (response.statusCode() / 100 == 2) {
+            outcome = null;
+            if (call.operation() == Operation.PLACE) placed(response.body());
+        } else {
+            Matcher title = ERROR.matcher(response.body());
+            outcome = title.find() ? ERROR_TYPES.getOrDefault(title.group(1), title.group(1)) : "HTTP " + response.statusCode();
+            // a server error may have happened after the order committed
+            if (call.basket() != null && response.statusCode() >= 500) add(uncertain, call.basket());
+        }
+
+        stats.get(call.operation()).record(latency, outcome);
+        window.record(latency, outcome);
+    }
+
+    private void placed(String order) {
+        Matcher id = ORDER_ID.matcher(order);
+        if (id.find()) {
+            long placed = placedOrders.getAndIncrement();
+            recentOrderIds.set((int) (placed % RECENT_ORDERS), Integer.parseInt(id.group(1)));
+        }
+
+        Matcher line = ORDER_LINE.matcher(order);
+        while (line.find()) {
+            sold.computeIfAbsent(Integer.parseInt(line.group(1)), key -> new LongAdder()).add(Long.parseLong(line.group(2)));
+        }
+    }
+
+    private void rejected(Operation operation, String reason) {
+        stats.get(operation).failed(reason);
+        window.failed(reason);
+    }
+
+    // ---- arrival models
+
+    private interface Load {
+        void start();
+
+        void stop() throws InterruptedException;
+    }
+
+    private final class ClosedLoad implements Load {
+
+        private final Semaphore permits;
+        private final List<Thread> users = new ArrayList<>();
+        private final long thinkMillis;
+        private volatile boolean running = true;
+
+        ClosedLoad(Semaphore permits, int concurrency, long thinkMillis) {
+            this.permits = permits;
+            this.thinkMillis = thinkMillis;
+            for (int i = 0; i < concurrency; i++) {
+                Thread user = new Thread(this::user, "load-user-" + i);
+                user.setDaemon(true);
+                users.add(user);
+            }
+        }
+
+        @Override
+        public void start() {
+            users.forEach(Thread::start);
+        }
+
+        @Override
+        public void stop() throws InterruptedException {
+            running = false;
+            for (Thread user : users) user.join();
+        }
+
+        private void user() {
+            SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+
+            while (running) {
+                Call call = nextCall(random);
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    completed(call, start, client.send(call.request(), HttpResponse.BodyHandlers.ofString()), null);
+                } catch (IOException e) {
+                    completed(call, start, null, e);
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    permits.release();
+                }
+
+                if (thinkMillis > 0) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(thinkMillis));
+            }
+        }
+    }
+
+    private final class OpenLoad implements Load {
+
+        private final Semaphore permits;
+        private final double meanGapNanos;
+        private final Thread scheduler = new Thread(this::schedule, "load-scheduler");
+        private volatile boolean running = true;
+
+        OpenLoad(Semaphore permits, double rate) {
+            this.permits = permits;
+            this.meanGapNanos = 1e9 / rate;
+            scheduler.setDaemon(true);
+        }
+
+        @Override
+        public void start() {
+            scheduler.start();
+        }
+
+        @Override
+        public void stop() throws InterruptedException {
+            running = false;
+            scheduler.join();
+        }
+
+        private boolean acquireNow() {
+            try {
+                return permits.tryAcquire(0, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void schedule() {
+            SplittableRandom random = new SplittableRandom();
+            long due = System.nanoTime();
+
+            while (running) {
+                // exponential gaps between arrivals make a Poisson process
+                due += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+
+                Call call = nextCall(random);
+                // the timed tryAcquire honours the fair ordering, so it cannot overtake a waiting soak check
+                if (!acquireNow()) {
+                    if (permits.hasQueuedThreads()) {
+                        // a soak check is draining the instance, arrivals resume on schedule once it is done
+                        permits.acquireUninterruptibly();
+                        permits.release();
+                        due = System.nanoTime();
+                    } else {
+                        rejected(call.operation(), "ClientOverload");
+                    }
+                    continue;
+                }
+
+                long start = due;
+                client.sendAsync(call.request(), HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                    completed(call, start, response, error);
+                    permits.release();
+                });
+            }
+        }
+    }
+
+    // ---- soak checks
+
+    private final class Soak {
+
+        private final Map<Integer, Long> initialStock;
+        private final double maxHeapGrowth;
+        private final List<long[]> heapFloors = new ArrayList<>();
+        private long heapFloor = Long.MAX_VALUE;
+        private int violations;
+
+        Soak(Map<Integer, Long> initialStock, double maxHeapGrowth) {
+            this.initialStock = initialStock;
+            this.maxHeapGrowth = maxHeapGrowth;
+        }
+
+        // heap use sampled between checks, its lowest value approximates the live data after garbage collection
+        void sampleHeap() {
+            long used = metric("jvm.memory.used?tag=area:heap");
+            if (used > 0) heapFloor = Math.min(heapFloor, used);
+        }
+
+        void check(Semaphore permits, int concurrency) throws InterruptedException {
+            permits.acquire(concurrency);
+            try {
+                checkStock();
+                sampleHeap();
+                if (heapFloor != Long.MAX_VALUE) {
+                    heapFloors.add(new long[]{heapFloor, placedOrders.get()});
+                    System.out.printf("Heap floor %.1f MB after %d orders%n", heapFloor / 1e6, placedOrders.get());
+                }
+                heapFloor = Long.MAX_VALUE;
+            } finally {
+                permits.release(concurrency);
+            }
+        }
+
+        private void checkStock() {
+            Map<Integer, Long> stock;
+            try {
+                stock = stock(client, target);
+            } catch (IOException | InterruptedException e) {
+                System.out.println("Stock check skipped, could not read /products: " + e);
+                return;
+            }
+
+            List<String> problems = new ArrayList<>();
+            initialStock.forEach((productId, initial) -> {
+                long expected = initial - sum(sold, productId);
+                long actual = stock.getOrDefault(productId, 0L);
+                long missing = expected - actual;
+                // orders whose response got lost may or may not have taken their units
+                if (missing < 0 || missing > sum(uncertain, productId) || actual < 0) {
+                    problems.add("product " + productId + " expected " + expected + " actual " + actual);
+                }
+            });
+
+            if (problems.isEmpty()) {
+                System.out.printf("Stock conserved over %d products, %d orders placed%n", initialStock.size(), placedOrders.get());
+            } else {
+                violations++;
+                System.out.println("STOCK NOT CONSERVED: " + String.join("; ", problems.subList(0, Math.min(problems.size(), 10)))
+                        + (problems.size() > 10 ? " and " + (problems.size() - 10) + " more" : ""));
+            }
+        }
+
+        boolean verdict() {
+            boolean heapOk = true;
+            if (heapFloors.size() >= 3) {
+                long[] first = heapFloors.get(0);
+                long[] last = heapFloors.get(heapFloors.size() - 1);
+                double growth = 100.0 * (last[0] - first[0]) / first[0];
+                long orders = last[1] - first[1];
+                System.out.printf("Heap floor %.1f MB -> %.1f MB (%+.1f%%), %s per placed order%n",
+                        first[0] / 1e6, last[0] / 1e6, growth,
+                        orders > 0 ? String.format("%.0f B", (double) (last[0] - first[0]) / orders) : "n/a");
+                heapOk = growth <= maxHeapGrowth;
+                if (!heapOk) System.out.printf("HEAP GREW by more than %s%%%n", maxHeapGrowth);
+            } else {
+                System.out.println("Too few soak checks to judge heap growth");
+            }
+
+            if (violations > 0) System.out.println(violations + " stock checks failed");
+            return heapOk && violations == 0;
+        }
+
+        private long metric(String name) {
+            try {
+                HttpResponse<String> response = client.send(request("/actuator/metrics/" + name).build(), HttpResponse.BodyHandlers.ofString());
+                Matcher value = METRIC_VALUE.matcher(response.body());
+                return response.statusCode() == 200 && value.find() ? (long) Double.parseDouble(value.group(1)) : -1;
+            } catch (IOException e) {
+                return -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+    }
+
+    // ---- reporting
+
+    private void report(long elapsedNanos, Duration interval) {
+        Stats last = window;
+        window = new Stats();
+
+        System.out.printf("%8s  %7.0f req/s  p50 %7.2f ms  p99 %7.2f ms  errors %s%n",
+                format(Duration.ofNanos(elapsedNanos)), last.count() / (interval.toNanos() / 1e9),
+                last.latency.percentile(0.50) / 1e6, last.latency.percentile(0.99) / 1e6, last.errors());
+    }
+
+    private void summary(long measuredNanos) {
+        System.out.printf("%nMeasured %s%n", format(Duration.ofNanos(measuredNanos)));
+        System.out.printf("%-10s %9s %9s %9s %10s %10s %10s %10s  %s%n",
+                "operation", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors by type");
+
+        stats.forEach((operation, stat) -> {
+            if (stat.count() == 0) return;
+            System.out.printf("%-10s %9d %9.1f %8.2f%% %10.2f %10.2f %10.2f %10.2f  %s%n",
+                    operation.name().toLowerCase().replace('_', '-'), stat.count(), stat.count() * 1e9 / measuredNanos,
+                    100.0 * stat.errorCount() / stat.count(),
+                    stat.latency.percentile(0.50) / 1e6, stat.latency.percentile(0.99) / 1e6,
+                    stat.latency.percentile(0.999) / 1e6, stat.latency.max() / 1e6, stat.errors());
+        });
+    }
+
+    private static final class Stats {
+
+        final Histogram latency = new Histogram();
+        final LongAdder requests = new LongAdder();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void record(long latencyNanos, String error) {
+            latency.record(latencyNanos);
+            failed(error);
+        }
+
+        // a request that was never sent has no latency
+        void failed(String error) {
+            requests.increment();
+            if (error != null) errors.computeIfAbsent(error, key -> new LongAdder()).increment();
+        }
+
+        long count() {
+            return requests.sum();
+        }
+
+        long errorCount() {
+            return errors.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+
+        String errors() {
+            if (errors.isEmpty()) return "-";
+            return new TreeMap<>(errors).entrySet().stream()
+                    .map(error -> error.getKey() + "=" + error.getValue().sum())
+                    .collect(Collectors.joining(", "));
+        }
+    }
+
+    /**
+     * Log-linear latency histogram: 128 buckets per power of two keep every percentile within 1% of the recorded
+     * value in constant memory, however long a soak runs.
+     */
+    static final class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 8;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int HALF = SUB_BUCKETS / 2;
+
+        private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF);
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            value = Math.max(value, 0);
+            counts.incrementAndGet(index(value));
+            total.increment();
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        long count() {
+            return total.sum();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        // the upper bound of the bucket holding the percentile, 0 without values
+        long percentile(double percentile) {
+            long rank = Math.max((long) Math.ceil(percentile * count()), 1);
+            long seen = 0;
+
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) return Math.min(upperBound(i), max());
+            }
+            return 0;
+        }
+
+        // values below SUB_BUCKETS are exact, above that the top SUB_BUCKET_BITS bits of a value pick its bucket
+        static int index(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+
+            int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+        }
+
+        static long upperBound(int index) {
+            if (index < SUB_BUCKETS) return index;
+
+            int shift = (index - SUB_BUCKETS) / HALF + 1;
+            long mantissa = (index - SUB_BUCKETS) % HALF + HALF;
+            return ((mantissa + 1) << shift) - 1;
+        }
+    }
+
+    // ---- helpers
+
+    private static Map<Operation, Stats> newStats() {
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) stats.put(operation, new Stats());
+        return stats;
+    }
+
+    // stock per product id over all locations
+    static Map<Integer, Long> stock(HttpClient client, String target) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create(target + "/products")).timeout(Duration.ofSeconds(30)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) throw new IOException("GET /products answered " + response.statusCode());
+
+        return parseStock(response.body());
+    }
+
+    static Map<Integer, Long> parseStock(String products) {
+        Map<Integer, Long> stock = new TreeMap<>();
+        Matcher product = PRODUCT.matcher(products);
+        while (product.find()) {
+            stock.merge(Integer.parseInt(product.group(1)), Long.parseLong(product.group(2)), Long::sum);
+        }
+        return stock;
+    }
+
+    static Operation[] parseMix(String mix) {
+        List<Operation> slots = new ArrayList<>();
+
+        for (String part : mix.split(",")) {
+            String[] weighted = part.trim().split(":");
+            Operation operation = MIX_KEYS.get(weighted[0]);
+            if (operation == null || weighted.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry '" + part + "', expected one of " + MIX_KEYS.keySet() + " with a weight, e.g. place:60");
+            }
+            for (int i = Integer.parseInt(weighted[1]); i > 0; i--) slots.add(operation);
+        }
+        if (slots.isEmpty()) throw new IllegalArgumentException("The mix needs at least one positive weight");
+
+        return slots.toArray(Operation[]::new);
+    }
+
+    // cumulative probabilities of ranks 1..n with probability proportional to 1 / rank^skew, 0 is uniform
+    static double[] zipf(int n, double skew) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            sum += 1 / Math.pow(rank, skew);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) cumulative[i] /= sum;
+        return cumulative;
+    }
+
+    static Duration parseDuration(String value) {
+        Matcher duration = Pattern.compile("(\\d+)(ms|s|m|h|d)?").matcher(value.trim());
+        if (!duration.matches()) throw new IllegalArgumentException("Invalid duration '" + value + "', e.g. 500ms, 30s, 5m, 4h");
+
+        long amount = Long.parseLong(duration.group(1));
+        String unit = duration.group(2) == null ? "s" : duration.group(2);
+        return switch (unit) {
+            case "ms" -> Duration.ofMillis(amount);
+            case "m" -> Duration.ofMinutes(amount);
+            case "h" -> Duration.ofHours(amount);
+            case "d" -> Duration.ofDays(amount);
+            default -> Duration.ofSeconds(amount);
+        };
+    }
+
+    private static String format(Duration duration) {
+        long seconds = duration.toSeconds();
+        if (seconds >= 3600) return String.format("%dh%02dm", seconds / 3600, seconds % 3600 / 60);
+        if (seconds >= 60) return String.format("%dm%02ds", seconds / 60, seconds % 60);
+        return seconds + "s";
+    }
+
+    private static void add(Map<Integer, LongAdder> units, Map<Integer, Integer> basket) {
+        basket.forEach((productId, quantity) -> units.computeIfAbsent(productId, key -> new LongAdder()).add(quantity));
+    }
+
+    private static long sum(Map<Integer, LongAdder> units, int productId) {
+        LongAdder adder = units.get(productId);
+        return adder == null ? 0 : adder.sum();
+    }
+}